@@ -0,0 +1,306 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.batgen.BatGen;
+import org.batgen.DatabaseType;
+import org.batgen.Manifest;
+
+/**
+ * Generates the MyBatis code of the config files in the build, in the same JVM.
+ * 
+ * The config files, the options and the generator version are written to a
+ * stamp file after each generation. When the next build finds the same stamp,
+ * generation is skipped without reading any generated file.
+ * 
+ */
+@Mojo( name = "generate", defaultPhase = LifecyclePhase.GENERATE_SOURCES, threadSafe = true )
+public class GenerateMojo extends AbstractMojo {
+    private static final ConcurrentMap<String, Object> LOCKS = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * The directory with the config files.
+     */
+    @Parameter( property = "batgen.configDirectory", defaultValue = "${project.basedir}/src/main/batgen", required = true )
+    private File         configDirectory;
+
+    /**
+     * Names of the config files to generate, all .txt files in the config
+     * directory by default.
+     */
+    @Parameter
+    private List<String> configFiles = new ArrayList<String>();
+
+    /**
+     * Base package of the generated classes.
+     */
+    @Parameter( property = "batgen.basePackage", required = true )
+    private String       basePackage;
+
+    /**
+     * H2 or ORACLE.
+     */
+    @Parameter( property = "batgen.databaseType", defaultValue = "H2" )
+    private String       databaseType;
+
+    /**
+     * The directory the src/main/java, src/main/resources and src/test trees
+     * are generated in.
+     */
+    @Parameter( property = "batgen.outputDirectory", defaultValue = "${project.basedir}" )
+    private File         outputDirectory;
+
+    @Parameter( property = "batgen.parallel", defaultValue = "false" )
+    private boolean      parallel;
+
+    @Parameter( property = "batgen.incremental", defaultValue = "false" )
+    private boolean      incremental;
+
+    @Parameter( property = "batgen.writeIfChanged", defaultValue = "true" )
+    private boolean      writeIfChanged;
+
+    @Parameter( property = "batgen.modelCache", defaultValue = "false" )
+    private boolean      modelCache;
+
+    /**
+     * Where the JSON metrics report is written, no report by default.
+     */
+    @Parameter( property = "batgen.metricsReport" )
+    private File         metricsReport;
+
+    /**
+     * A generation cache directory that can be shared by several checkouts,
+     * no cache by default.
+     */
+    @Parameter( property = "batgen.generationCache" )
+    private File         generationCache;
+
+    /**
+     * Rows fetched per round trip by the generated streaming selects.
+     */
+    @Parameter( property = "batgen.fetchSize", defaultValue = "1000" )
+    private int          fetchSize;
+
+    /**
+     * Records what the last generation was made from.
+     */
+    @Parameter( defaultValue = "${project.build.directory}/batgen.stamp", required = true )
+    private File         stampFile;
+
+    @Parameter( property = "batgen.skip", defaultValue = "false" )
+    private boolean      skip;
+
+    @Parameter( defaultValue = "${project}", readonly = true, required = true )
+    private MavenProject project;
+
+    public void execute() throws MojoExecutionException {
+        if ( skip ) {
+            getLog().info( "Skipping BatGen." );
+            return;
+        }
+
+        addSourceRoots();
+
+        DatabaseType type;
+        try {
+            type = DatabaseType.valueOf( databaseType.toUpperCase() );
+        }
+        catch ( IllegalArgumentException e ) {
+            throw new MojoExecutionException( "Unknown databaseType " + databaseType + ", expected H2 or ORACLE." );
+        }
+
+        // each run has its own settings, only modules that share an output
+        // directory would replace each other's files
+        synchronized ( getLock() ) {
+            generate( type );
+        }
+    }
+
+    /**
+     * Generates the config files unless the stamp shows the output is up to
+     * date.
+     */
+    private void generate( DatabaseType type ) throws MojoExecutionException {
+        try {
+            BatGen batGen = new BatGen( configDirectory.getPath(), basePackage, type );
+            batGen.setOutputRoot( outputDirectory.getPath() );
+            batGen.setParallel( parallel );
+            batGen.setIncremental( incremental );
+            batGen.setWriteIfChanged( writeIfChanged );
+            batGen.setModelCache( modelCache );
+            batGen.setFetchSize( fetchSize );
+            if ( metricsReport != null ) {
+                batGen.setMetricsReport( metricsReport.getPath() );
+            }
+            if ( generationCache != null ) {
+                batGen.setGenerationCache( generationCache.getPath() );
+            }
+
+            String stamp = createStamp( batGen.getConfigFiles( configFiles ) );
+            if ( stamp.equals( readStamp() ) ) {
+                getLog().info( "BatGen output is up to date." );
+                return;
+            }
+
+            stampFile.delete();
+            batGen.run( configFiles );
+            writeStamp( stamp );
+        }
+        catch ( RuntimeException e ) {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * @return the lock of the output directory.
+     */
+    private Object getLock() throws MojoExecutionException {
+        String dir;
+        try {
+            dir = outputDirectory.getCanonicalPath();
+        }
+        catch ( IOException e ) {
+            throw new MojoExecutionException( "Cannot resolve " + outputDirectory, e );
+        }
+        LOCKS.putIfAbsent( dir, new Object() );
+        return LOCKS.get( dir );
+    }
+
+    /**
+     * Compiles the generated code along with the project when it is not
+     * generated into the project's own source directories.
+     */
+    private void addSourceRoots() {
+        String main = new File( outputDirectory, "src/main/java" ).getPath();
+        if ( !project.getCompileSourceRoots().contains( main ) ) {
+            project.addCompileSourceRoot( main );
+        }
+
+        String test = new File( outputDirectory, "src/test/java" ).getPath();
+        if ( !project.getTestCompileSourceRoots().contains( test ) ) {
+            project.addTestCompileSourceRoot( test );
+        }
+
+        String resources = new File( outputDirectory, "src/main/resources" ).getPath();
+        for ( Resource resource : project.getResources() ) {
+            if ( resources.equals( new File( resource.getDirectory() ).getPath() ) ) {
+                return;
+            }
+        }
+        Resource resource = new Resource();
+        resource.setDirectory( resources );
+        project.addResource( resource );
+    }
+
+    /**
+     * @return one line for the generator, one per option and one per config
+     *         file with the hash of its content.
+     */
+    private String createStamp( List<String> files ) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append( "generator\t" + BatGen.VERSION + "\t" + getGeneratorHash() + "\n" );
+        sb.append( "basePackage\t" + basePackage + "\n" );
+        sb.append( "databaseType\t" + databaseType.toUpperCase() + "\n" );
+        sb.append( "fetchSize\t" + fetchSize + "\n" );
+        sb.append( "outputDirectory\t" + outputDirectory.getAbsolutePath() + "\n" );
+        sb.append( "parallel\t" + parallel + "\n" );
+        sb.append( "incremental\t" + incremental + "\n" );
+        sb.append( "writeIfChanged\t" + writeIfChanged + "\n" );
+        sb.append( "modelCache\t" + modelCache + "\n" );
+        sb.append( "metricsReport\t" + metricsReport + "\n" );
+
+        for ( String file : files ) {
+            sb.append( "config\t" + file + "\t" + Manifest.hash( file ) + "\n" );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the hash of the jar BatGen is loaded from, so a rebuilt
+     *         generator of the same version is noticed as well.
+     */
+    private String getGeneratorHash() {
+        URL location = BatGen.class.getProtectionDomain().getCodeSource().getLocation();
+        if ( location == null || !"file".equals( location.getProtocol() ) ) {
+            return "";
+        }
+
+        try {
+            File jar = new File( location.toURI() );
+            return jar.isFile() ? Manifest.hash( jar.getPath() ) : "";
+        }
+        catch ( Exception e ) {
+            return "";
+        }
+    }
+
+    private String readStamp() {
+        if ( !stampFile.isFile() ) {
+            return null;
+        }
+
+        try {
+            return new String( Files.readAllBytes( stampFile.toPath() ), Charset.forName( "UTF-8" ) );
+        }
+        catch ( IOException e ) {
+            return null;
+        }
+    }
+
+    private void writeStamp( String stamp ) throws MojoExecutionException {
+        stampFile.getParentFile().mkdirs();
+
+        PrintWriter pw = null;
+        try {
+            pw = new PrintWriter( stampFile, "UTF-8" );
+            pw.write( stamp );
+        }
+        catch ( IOException e ) {
+            throw new MojoExecutionException( "Cannot write " + stampFile, e );
+        }
+        finally {
+            if ( pw != null )
+                pw.close();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.maven;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Field;
+
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the stamp file skips a build with the same inputs and that a
+ * changed config file or option generates again.
+ * 
+ */
+public class GenerateMojoTest {
+    private static final String EMPLOYEE = "[Settings]\nCLASS Employee\n\n[Fields]\nLONG(10) employeeKey !\n"
+                                                 + "STRING(132) lastName\n";
+
+    @Rule
+    public TemporaryFolder      folder   = new TemporaryFolder();
+
+    private File                configDirectory;
+    private File                outputDirectory;
+    private File                stampFile;
+    private File                domainFile;
+
+    @Before
+    public void setUp() throws IOException {
+        configDirectory = folder.newFolder( "config" );
+        outputDirectory = folder.newFolder( "out" );
+        stampFile = new File( folder.getRoot(), "target/batgen.stamp" );
+        domainFile = new File( outputDirectory, "src/main/java/org/sample/domain/Employee.java" );
+        write( new File( configDirectory, "employee.txt" ), EMPLOYEE );
+    }
+
+    @Test
+    public void testGeneratesAndWritesStamp() throws Exception {
+        createMojo( "H2" ).execute();
+
+        assertTrue( domainFile.isFile() );
+        assertTrue( stampFile.isFile() );
+    }
+
+    @Test
+    public void testSkipsWhenNothingChanged() throws Exception {
+        createMojo( "H2" ).execute();
+        domainFile.delete();
+
+        createMojo( "H2" ).execute();
+
+        assertFalse( "the stamp should have skipped generation", domainFile.exists() );
+    }
+
+    @Test
+    public void testGeneratesWhenConfigChanged() throws Exception {
+        createMojo( "H2" ).execute();
+        domainFile.delete();
+        write( new File( configDirectory, "employee.txt" ), EMPLOYEE + "DATE hireDate\n" );
+
+        createMojo( "H2" ).execute();
+
+        assertTrue( domainFile.isFile() );
+    }
+
+    @Test
+    public void testGeneratesWhenOptionChanged() throws Exception {
+        createMojo( "H2" ).execute();
+        domainFile.delete();
+
+        createMojo( "ORACLE" ).execute();
+
+        assertTrue( domainFile.isFile() );
+    }
+
+    @Test
+    public void testGeneratesWhenStampMissing() throws Exception {
+        createMojo( "H2" ).execute();
+        domainFile.delete();
+        stampFile.delete();
+
+        createMojo( "H2" ).execute();
+
+        assertTrue( domainFile.isFile() );
+        assertTrue( stampFile.isFile() );
+    }
+
+    /**
+     * @return a mojo set up as Maven would with the defaults of its
+     *         parameters.
+     */
+    private GenerateMojo createMojo( String databaseType ) throws Exception {
+        GenerateMojo mojo = new GenerateMojo();
+        set( mojo, "configDirectory", configDirectory );
+        set( mojo, "basePackage", "org.sample" );
+        set( mojo, "databaseType", databaseType );
+        set( mojo, "outputDirectory", outputDirectory );
+        set( mojo, "writeIfChanged", true );
+        set( mojo, "fetchSize", 1000 );
+        set( mojo, "stampFile", stampFile );
+        set( mojo, "project", new MavenProject() );
+        return mojo;
+    }
+
+    private static void set( Object target, String name, Object value ) throws Exception {
+        Field field = target.getClass().getDeclaredField( name );
+        field.setAccessible( true );
+        field.set( target, value );
+    }
+
+    private static void write( File file, String content ) throws IOException {
+        FileWriter fw = new FileWriter( file );
+        try {
+            fw.write( content );
+        }
+        finally {
+            fw.close();
+        }
+    }
+}
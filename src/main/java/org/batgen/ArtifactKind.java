@@ -0,0 +1,138 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The kinds of files BatGen generates. Each kind declares whether it is built
+ * once for each table or once per run, and the kinds it depends on, either
+ * because the generated code refers to them or because it is built from their
+ * results.
+ * 
+ */
+public enum ArtifactKind {
+    XML( "xml", true ),
+    BO( "bo", true ),
+    DAO( "dao", true ),
+    DOMAIN( "domain", true ),
+    SQL( "sql", true ),
+    TEST_DAO( "testDao", true ),
+    TEST_BO( "testBo", true ),
+    BO_EXCEPTION( "boException", false ),
+    PAGE( "page", false ),
+    DAO_EXCEPTION( "daoException", false ),
+    SESSION_FACTORY( "sessionFactory", false ),
+    MYBATIS_CONFIG( "mybatisConfig", false ),
+    CREATE_TABLES( "aggregateSql", false ),
+    ALTER_TABLES( "foreignKeys", false ),
+    DROP_TABLES( "aggregateSql", false );
+
+    private final String  phase;
+    private final boolean perTable;
+
+    private ArtifactKind( String phase, boolean perTable ) {
+        this.phase = phase;
+        this.perTable = perTable;
+    }
+
+    /**
+     * @return the name of the metrics phase that builds this kind.
+     */
+    public String getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return true if an artifact of this kind is built for each table, false
+     *         if a single one is built for the whole run.
+     */
+    public boolean isPerTable() {
+        return perTable;
+    }
+
+    /**
+     * @return the kinds that are built before this one and that are generated
+     *         along with it.
+     */
+    public Set<ArtifactKind> getDependencies() {
+        switch ( this ) {
+        case XML:
+            return EnumSet.of( DAO, DOMAIN );
+        case BO:
+            return EnumSet.of( DAO, DOMAIN, BO_EXCEPTION, PAGE, SESSION_FACTORY );
+        case DAO:
+            return EnumSet.of( DOMAIN, DAO_EXCEPTION );
+        case TEST_DAO:
+            return EnumSet.of( DAO, SESSION_FACTORY );
+        case TEST_BO:
+            return EnumSet.of( BO );
+        case SESSION_FACTORY:
+            return EnumSet.of( MYBATIS_CONFIG );
+        case MYBATIS_CONFIG:
+            return EnumSet.of( XML );
+        case CREATE_TABLES:
+            return EnumSet.of( SQL );
+        case DROP_TABLES:
+            // the foreign keys are dropped before the tables
+            return EnumSet.of( SQL, ALTER_TABLES );
+        default:
+            return EnumSet.noneOf( ArtifactKind.class );
+        }
+    }
+
+    /**
+     * @param kinds
+     * @return the kinds along with everything they depend on.
+     */
+    public static Set<ArtifactKind> withDependencies( Collection<ArtifactKind> kinds ) {
+        Set<ArtifactKind> all = EnumSet.noneOf( ArtifactKind.class );
+        for ( ArtifactKind kind : kinds ) {
+            addWithDependencies( all, kind );
+        }
+        return all;
+    }
+
+    private static void addWithDependencies( Set<ArtifactKind> all, ArtifactKind kind ) {
+        if ( all.add( kind ) ) {
+            for ( ArtifactKind dependency : kind.getDependencies() ) {
+                addWithDependencies( all, dependency );
+            }
+        }
+    }
+
+    /**
+     * @param name
+     *            a kind in any case, with '-' or '_' between words, e.g.
+     *            "test-dao"
+     * @return the kind
+     * @throws IllegalArgumentException
+     *             if there is no such kind.
+     */
+    public static ArtifactKind fromName( String name ) {
+        return valueOf( name.trim().toUpperCase().replace( '-', '_' ) );
+    }
+}
@@ -0,0 +1,258 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.batgen.generators.GenUtil;
+import org.batgen.generators.OutputContext;
+
+/**
+ * Builds the artifacts of a run in the order of their dependencies. Per-table
+ * kinds get one artifact for each table, the other kinds a single artifact
+ * that is built exactly once. On a worker pool every artifact starts as soon
+ * as the artifacts it depends on are done, so independent artifacts are built
+ * at the same time.
+ * 
+ */
+public class ArtifactScheduler {
+
+    /**
+     * Builds a single artifact.
+     */
+    public interface Builder {
+        /**
+         * @param kind
+         * @param table
+         *            the table of a per-table kind, or null
+         * @return the paths of the files written
+         */
+        List<String> build( ArtifactKind kind, Table table );
+    }
+
+    /**
+     * An artifact to build, with the artifacts waiting for it.
+     */
+    public static class Artifact {
+        private final ArtifactKind   kind;
+        private final Table          table;
+        private final int            index;
+        private final List<Artifact> dependents = new ArrayList<Artifact>();
+        private int                  waiting;
+        private List<String>         paths      = Collections.emptyList();
+
+        private Artifact( ArtifactKind kind, Table table, int index ) {
+            this.kind = kind;
+            this.table = table;
+            this.index = index;
+        }
+
+        public ArtifactKind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the table of a per-table artifact, or null.
+         */
+        public Table getTable() {
+            return table;
+        }
+
+        /**
+         * @return the files written by the artifact, empty before it is
+         *         built.
+         */
+        public List<String> getPaths() {
+            return paths;
+        }
+    }
+
+    private final Builder        builder;
+    private final List<Artifact> artifacts = new ArrayList<Artifact>();
+
+    /**
+     * @param kinds
+     *            the kinds to build, including the kinds they depend on
+     * @param tables
+     *            the tables to build the per-table kinds for
+     * @param builder
+     */
+    public ArtifactScheduler( Set<ArtifactKind> kinds, List<Table> tables, Builder builder ) {
+        this.builder = builder;
+
+        List<Map<ArtifactKind, Artifact>> perTable = new ArrayList<Map<ArtifactKind, Artifact>>();
+        for ( Table table : tables ) {
+            Map<ArtifactKind, Artifact> own = new EnumMap<ArtifactKind, Artifact>( ArtifactKind.class );
+            for ( ArtifactKind kind : kinds ) {
+                if ( kind.isPerTable() ) {
+                    own.put( kind, add( kind, table ) );
+                }
+            }
+            perTable.add( own );
+        }
+
+        Map<ArtifactKind, Artifact> shared = new EnumMap<ArtifactKind, Artifact>( ArtifactKind.class );
+        for ( ArtifactKind kind : kinds ) {
+            if ( !kind.isPerTable() ) {
+                shared.put( kind, add( kind, null ) );
+            }
+        }
+
+        for ( int i = 0; i < tables.size(); i++ ) {
+            for ( Artifact artifact : perTable.get( i ).values() ) {
+                for ( ArtifactKind dependency : artifact.kind.getDependencies() ) {
+                    Map<ArtifactKind, Artifact> from = dependency.isPerTable() ? perTable.get( i ) : shared;
+                    link( from.get( dependency ), artifact );
+                }
+            }
+        }
+        for ( Artifact artifact : shared.values() ) {
+            for ( ArtifactKind dependency : artifact.kind.getDependencies() ) {
+                if ( !dependency.isPerTable() ) {
+                    link( shared.get( dependency ), artifact );
+                    continue;
+                }
+                // built from the artifacts of all tables
+                for ( Map<ArtifactKind, Artifact> own : perTable ) {
+                    link( own.get( dependency ), artifact );
+                }
+            }
+        }
+    }
+
+    private Artifact add( ArtifactKind kind, Table table ) {
+        Artifact artifact = new Artifact( kind, table, artifacts.size() );
+        artifacts.add( artifact );
+        return artifact;
+    }
+
+    private static void link( Artifact dependency, Artifact dependent ) {
+        if ( dependency == null ) {
+            throw new IllegalArgumentException( dependent.kind + " depends on " + dependent.kind.getDependencies()
+                    + ", which must be built as well." );
+        }
+        dependency.dependents.add( dependent );
+        dependent.waiting++;
+    }
+
+    /**
+     * @return all artifacts, those of each table in table order and then the
+     *         ones built once, each group in the order of the kinds.
+     */
+    public List<Artifact> getArtifacts() {
+        return artifacts;
+    }
+
+    /**
+     * Builds the artifacts one after another on the calling thread. Of the
+     * artifacts that are ready, the first in the order of getArtifacts() is
+     * built next.
+     */
+    public void run() {
+        PriorityQueue<Integer> ready = new PriorityQueue<Integer>();
+        for ( Artifact artifact : artifacts ) {
+            if ( artifact.waiting == 0 ) {
+                ready.add( artifact.index );
+            }
+        }
+
+        while ( !ready.isEmpty() ) {
+            Artifact artifact = artifacts.get( ready.poll() );
+            artifact.paths = builder.build( artifact.kind, artifact.table );
+            for ( Artifact dependent : artifact.dependents ) {
+                if ( --dependent.waiting == 0 ) {
+                    ready.add( dependent.index );
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the artifacts on a worker pool, each one as soon as the artifacts
+     * it depends on are done. The workers write through the output context of
+     * the calling thread. The first failure is rethrown unchanged.
+     * 
+     * @param executor
+     */
+    public void run( ExecutorService executor ) {
+        OutputContext context = GenUtil.getContext();
+        CompletionService<Artifact> done = new ExecutorCompletionService<Artifact>( executor );
+        int pending = 0;
+
+        for ( Artifact artifact : artifacts ) {
+            if ( artifact.waiting == 0 ) {
+                submit( done, artifact, context );
+                pending++;
+            }
+        }
+
+        // only this thread counts down, the workers just build
+        while ( pending > 0 ) {
+            Artifact artifact = BatGen.getResult( take( done ) );
+            pending--;
+            for ( Artifact dependent : artifact.dependents ) {
+                if ( --dependent.waiting == 0 ) {
+                    submit( done, dependent, context );
+                    pending++;
+                }
+            }
+        }
+    }
+
+    private void submit( CompletionService<Artifact> done, final Artifact artifact, final OutputContext context ) {
+        done.submit( new Callable<Artifact>() {
+            public Artifact call() {
+                GenUtil.setContext( context );
+                try {
+                    artifact.paths = builder.build( artifact.kind, artifact.table );
+                    return artifact;
+                }
+                finally {
+                    GenUtil.setContext( null );
+                }
+            }
+        } );
+    }
+
+    private static Future<Artifact> take( CompletionService<Artifact> done ) {
+        try {
+            return done.take();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        }
+    }
+}
@@ -24,16 +24,40 @@ F * The MIT License (MIT)
 package org.batgen;
 
 import java.io.File;
+import java.io.PrintStream;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.batgen.generators.BoGenerator;
+import org.batgen.generators.CodeWriter;
 import org.batgen.generators.DaoGenerator;
 import org.batgen.generators.DomainGenerator;
+import org.batgen.generators.ExistingOutputIndex;
 import org.batgen.generators.ForeignKeyGenerator;
+import org.batgen.generators.GenUtil;
+import org.batgen.generators.Generator;
+import org.batgen.generators.ImportGenerator;
 import org.batgen.generators.MybatisConfigGenerator;
+import org.batgen.generators.OutputContext;
+import org.batgen.generators.OutputSink;
 import org.batgen.generators.SessionFactoryGenerator;
+import org.batgen.generators.SqlAggregator;
 import org.batgen.generators.SqlGenerator;
 import org.batgen.generators.TestBoGenerator;
 import org.batgen.generators.TestDaoGenerator;
@@ -44,13 +68,36 @@ import org.batgen.generators.XmlGenerator;
  * 
  */
 public class BatGen {
+    public static final String VERSION = "1.0.0-RC2";
+
+    private static final String GENERATOR_VERSION = generatorVersion();
+
     private String       basePkg;
     private String       configPath;
+    private String       outputRoot;
 
     private DatabaseType databaseType;
 
-    private boolean      allFiles;
+    private boolean      parallel;
+    private boolean      incremental;
+    private boolean      writeIfChanged;
+    private boolean      useModelCache;
     private int          fileCount;
+    private int          skipCount;
+    private String       metricsReport;
+    private String       cacheDirectory;
+    private int          fetchSize = XmlGenerator.DEFAULT_FETCH_SIZE;
+
+    private Manifest        manifest;
+    private Metrics         metrics = new Metrics( false );
+    private ModelCache      modelCache;
+    private GenerationCache generationCache;
+    private Manifest        previousManifest;
+    private SqlAggregator   aggregator;
+    private PrintStream     console = System.out;
+    private OutputSink      outputSink;
+
+    private Set<ArtifactKind> artifactKinds = EnumSet.allOf( ArtifactKind.class );
 
     /**
      * Initializes the code generator.
@@ -84,11 +131,158 @@ public class BatGen {
         this( path, pkg, DatabaseType.H2 );
     }
 
+    /**
+     * Initializes the code generator for generate( Schema ) and generate( Map
+     * ), which don't read a config directory.
+     * 
+     * @param basePkg
+     *            Base package name.
+     * @param databaseType
+     */
+    public BatGen( String basePkg, DatabaseType databaseType ) {
+        this.basePkg = basePkg;
+        this.databaseType = databaseType;
+    }
+
+    /**
+     * Sets the directory the generated files and BatGen's own files are
+     * written to. By default this is the working directory.
+     * 
+     * @param outputRoot
+     */
+    public void setOutputRoot( String outputRoot ) {
+        this.outputRoot = outputRoot;
+    }
+
+    /**
+     * Sends the generated files to a sink instead of writing them below the
+     * output root. The files below the output root are still read for their
+     * protected code. Pass null to write to disk again.
+     * 
+     * @param sink
+     */
+    public void setOutputSink( OutputSink sink ) {
+        this.outputSink = sink;
+    }
+
+    /**
+     * Parses and generates the tables on a pool of worker threads, one per
+     * available processor. The generated files are the same as in sequential
+     * mode.
+     * 
+     * @param parallel
+     */
+    public void setParallel( boolean parallel ) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Skips the tables whose config file and generated files are unchanged
+     * since the last run, based on the manifest kept in the output directory.
+     * The files generated from all tables are recomputed whenever any table
+     * changes or the set of tables changes.
+     * 
+     * @param incremental
+     */
+    public void setIncremental( boolean incremental ) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Leaves generated files untouched when their content did not change, so
+     * their modification time is kept and incremental compilers don't rebuild
+     * them.
+     * 
+     * @param writeIfChanged
+     */
+    public void setWriteIfChanged( boolean writeIfChanged ) {
+        this.writeIfChanged = writeIfChanged;
+    }
+
+    /**
+     * Keeps a binary snapshot of the parsed tables in the output directory.
+     * Config files whose content is the same as when they were last parsed are
+     * loaded from it instead of being parsed again.
+     * 
+     * @param useModelCache
+     */
+    public void setModelCache( boolean useModelCache ) {
+        this.useModelCache = useModelCache;
+    }
+
+    /**
+     * Keeps the files generated for each table in a content-addressed cache
+     * directory, which can be shared by several checkouts. A table whose
+     * model, options and protected code match an entry gets its files from
+     * the cache instead of from the generators. The files built from all
+     * tables are always generated.
+     * 
+     * @param directory
+     *            the cache directory, or null for no cache
+     */
+    public void setGenerationCache( String directory ) {
+        this.cacheDirectory = directory;
+    }
+
+    /**
+     * Measures the time, allocation and file I/O of parsing, of each generator
+     * for each table and of the files built from all tables, and writes a JSON
+     * summary with per-table and per-generator totals and the slowest tables
+     * at the end of the run.
+     * 
+     * @param fileName
+     *            where to write the report, or null for no report
+     */
+    public void setMetricsReport( String fileName ) {
+        this.metricsReport = fileName;
+    }
+
+    /**
+     * Sets how many rows the generated streaming selects fetch from the
+     * database per round trip, XmlGenerator.DEFAULT_FETCH_SIZE by default.
+     * 
+     * @param fetchSize
+     * @throws IllegalArgumentException
+     *             if it is less than 1.
+     */
+    public void setFetchSize( int fetchSize ) {
+        if ( fetchSize < 1 ) {
+            throw new IllegalArgumentException( "The fetch size must be at least 1." );
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Generates only the given kinds of files, along with the kinds they
+     * depend on. All kinds are generated by default.
+     * 
+     * @param kinds
+     *            the kinds to generate, or null for all
+     */
+    public void setArtifacts( Collection<ArtifactKind> kinds ) {
+        if ( kinds == null ) {
+            artifactKinds = EnumSet.allOf( ArtifactKind.class );
+        }
+        else {
+            artifactKinds = ArtifactKind.withDependencies( kinds );
+        }
+    }
+
+    /**
+     * Sets where the progress of a run is printed, System.out by default.
+     * 
+     * @param console
+     */
+    public void setConsole( PrintStream console ) {
+        this.console = console;
+    }
+
     /**
      * Performs the code generation.
      * 
      */
     public void run() {
+        checkConfigPath();
 
         System.out.println( "Press [Enter] to process all config files or "
                 + "enter a comma separate list of config files.\n\n" + "Available Files: \n\n" + getList() + "\n\n" );
@@ -97,43 +291,141 @@ public class BatGen {
         String userInput = scan.nextLine();
 
         if ( userInput.isEmpty() ) {
-            allFiles = true;
+            run( new ArrayList<String>() );
         }
         else {
-            allFiles = false;
+            run( Arrays.asList( userInput.split( "," ) ) );
         }
+        scan.close();
+    }
 
-        File file = new File( "sql/_CreateTables.sql" );
-        if ( file.isFile() )
-            file.delete();
+    /**
+     * Performs the code generation for the given config files, without asking
+     * for them.
+     * 
+     * @param configNames
+     *            names of config files in the config directory, or an empty
+     *            list for all .txt files in it.
+     */
+    public void run( List<String> configNames ) {
+        processFiles( getConfigFiles( configNames ), null );
+    }
 
-        file = new File( "sql/_DropTables.sql" );
-        if ( file.isFile() )
-            file.delete();
+    /**
+     * Regenerates the tables of the changed config files only. All config
+     * files are still read, so the files built from all tables stay complete.
+     * In incremental mode the manifest decides which tables are regenerated.
+     * 
+     * @param configNames
+     *            as for run( List )
+     * @param changedNames
+     *            names of the config files that changed
+     */
+    public void runChanged( List<String> configNames, Collection<String> changedNames ) {
+        Set<String> changed = new HashSet<String>();
+        for ( String name : changedNames ) {
+            changed.add( addPathToFile( name.trim() ) );
+        }
+        processFiles( getConfigFiles( configNames ), changed );
+    }
 
-        File[] files = new File( configPath ).listFiles();
+    /**
+     * Checks the config files without writing anything. All files are parsed
+     * on all processors and the index fields and foreign keys are resolved
+     * across all tables. Every error is printed with its file, line and column,
+     * rather than stopping at the first one. The caller prints the summary.
+     * 
+     * @param configNames
+     *            as for run( List )
+     * @return the errors found, empty when the config files are valid
+     */
+    public List<Diagnostic> validate( List<String> configNames ) {
+        List<Diagnostic> diagnostics = new Validator().validate( getConfigFiles( configNames ) );
+        for ( Diagnostic diagnostic : diagnostics ) {
+            console.println( diagnostic );
+        }
+        return diagnostics;
+    }
 
-        ArrayList<String> fileList = new ArrayList<String>();
+    /**
+     * Generates the tables of a schema that was built in memory, without
+     * reading any config file. All tables are generated, the manifest and the
+     * model cache are not used.
+     * 
+     * @param schema
+     *            tables that are set up as by the Parser
+     */
+    public void generate( Schema schema ) {
+        OutputContext previous = enterContext();
+        try {
+            startRun();
+            generateSchema( schema );
+        }
+        finally {
+            exitContext( previous );
+        }
+    }
+
+    /**
+     * Parses config files from readers and generates their tables, without
+     * reading the config directory.
+     * 
+     * @param configs
+     *            the content of each config file by the name used in error
+     *            messages. The tables are generated in the order of the map.
+     */
+    public void generate( Map<String, Reader> configs ) {
+        OutputContext previous = enterContext();
+        try {
+            startRun();
+            Parser parser = new Parser();
+            Schema schema = new Schema();
+            for ( Map.Entry<String, Reader> config : configs.entrySet() ) {
+                Metrics.Phase phase = metrics.start( "parse" );
+                Table table = parser.parse( config.getKey(), config.getValue() );
+                metrics.stop( phase, table.getDomName() );
+                schema.addTable( table );
+            }
+            generateSchema( schema );
+        }
+        finally {
+            exitContext( previous );
+        }
+    }
 
-        if ( allFiles ) {
+    /**
+     * @param configNames
+     *            as for run( List )
+     * @return the paths of the named config files, or of all .txt files in
+     *         the config directory if no names are given.
+     */
+    public List<String> getConfigFiles( List<String> configNames ) {
+        checkConfigPath();
+        List<String> fileList = new ArrayList<String>();
+
+        if ( configNames.isEmpty() ) {
+            File[] files = new File( configPath ).listFiles();
+            // the listing order differs between file systems
+            Arrays.sort( files );
             for ( int i = 0; i < files.length; i++ ) {
                 if ( files[i].toString().contains( ".txt" ) ) {
                     fileList.add( files[i].toString() );
                 }
             }
-
         }
         else {
-
-            // call parse with a subset of available files in this directory
-            String[] inputFiles = userInput.split( "," );
-            for ( int i = 0; i < inputFiles.length; i++ ) {
-                fileList.add( addPathToFile( inputFiles[i].trim() ) );
+            // a subset of available files in this directory
+            for ( String name : configNames ) {
+                fileList.add( addPathToFile( name.trim() ) );
             }
+        }
+        return fileList;
+    }
 
+    private void checkConfigPath() {
+        if ( configPath == null ) {
+            throw new IllegalStateException( "No config directory was given, use generate() instead." );
         }
-        processFiles( fileList );
-        scan.close();
     }
 
     /**
@@ -159,96 +451,571 @@ public class BatGen {
      * 
      * @param files
      *            - string[] consisting of a file name at each index
+     * @param changed
+     *            - the files whose tables are generated, or null for all
      */
-    private void processFiles( List<String> files ) {
-        Parser parser = new Parser();
-        Table table = null;
-        List<String> classNames = new ArrayList<String>();
+    private void processFiles( List<String> files, Set<String> changed ) {
+        OutputContext previous = enterContext();
+        try {
+            startRun();
+            generateFiles( files, changed );
+        }
+        finally {
+            exitContext( previous );
+        }
+    }
 
-        for ( String file : files ) {
-            table = parser.parse( file );
-            table.setPackage( basePkg );
-            if ( classNames.contains( table.getDomName() ) ) {
-                throw new IllegalArgumentException( "This class name is used multiple times, " + table.getDomName() );
+    /**
+     * Gives the current thread an output context of its own for the run, so
+     * runs for other projects can go on in the same JVM at the same time.
+     * 
+     * @return the previous context, to be restored after the run
+     */
+    private OutputContext enterContext() {
+        OutputContext previous = GenUtil.getContext();
+        OutputContext context = new OutputContext();
+        context.setOutputSink( outputSink != null ? outputSink : previous.getOutputSink() );
+        GenUtil.setContext( context );
+        return previous;
+    }
+
+    /**
+     * Drops whatever a failed run left staged and restores the previous
+     * context.
+     */
+    private void exitContext( OutputContext previous ) {
+        GenUtil.discardStaged();
+        GenUtil.setContext( previous );
+    }
+
+    private void startRun() {
+        // nothing replaces the previous output before the run has succeeded
+        GenUtil.setStaged( true );
+        GenUtil.setWriteIfChanged( writeIfChanged );
+        GenUtil.setOutputRoot( outputRoot == null ? null : new File( outputRoot ) );
+        GenUtil.resetCounts();
+        // the cache stores what the generators wrote
+        GenUtil.setCapture( cacheDirectory != null );
+        generationCache = cacheDirectory == null ? null : new GenerationCache( cacheDirectory, getOptions() );
+        metrics = new Metrics( metricsReport != null );
+        fileCount = 0;
+        skipCount = 0;
+    }
+
+    /**
+     * Generates the tables of the config files.
+     */
+    private void generateFiles( List<String> files, Set<String> changed ) {
+        Schema schema = new Schema();
+        Set<String> upToDate = new HashSet<String>();
+        Metrics.Phase phase;
+
+        if ( incremental ) {
+            phase = metrics.start( "manifest" );
+            manifest = new Manifest( getManifestVersion() );
+            for ( String file : files ) {
+                manifest.addConfig( file );
+            }
+
+            // without the generator's hash no previous output can be trusted
+            previousManifest = GENERATOR_VERSION == null ? null
+                    : Manifest.read( GenUtil.toFile( Manifest.FILE_NAME ).getPath() );
+            boolean isUpToDate = manifest.isUpToDate( previousManifest );
+            if ( !isUpToDate ) {
+                for ( String file : files ) {
+                    if ( manifest.isUpToDate( previousManifest, file ) ) {
+                        upToDate.add( file );
+                    }
+                }
+            }
+            metrics.stop( phase, null );
+
+            if ( isUpToDate ) {
+                console.println( "All generated files are up to date." );
+                writeMetrics();
+                console.println( "\nDone." );
+                return;
+            }
+        }
+        else if ( changed != null ) {
+            for ( String file : files ) {
+                if ( !changed.contains( file ) ) {
+                    upToDate.add( file );
+                }
+            }
+        }
+
+        // kept between runs, its entries are only used for unchanged content
+        if ( !useModelCache ) {
+            modelCache = null;
+        }
+        else if ( modelCache == null ) {
+            modelCache = ModelCache.read( GenUtil.toFile( ModelCache.FILE_NAME ).getPath() );
+        }
+        else {
+            modelCache.resetCounts();
+        }
+
+        // when only a few tables change, their files are read as they are needed
+        beginOutput( changed == null );
+
+        ExecutorService executor = createExecutor();
+        List<String> paths;
+        try {
+            parseFiles( files, schema, executor );
+
+            List<Table> tables = new ArrayList<Table>();
+            List<String> generated = new ArrayList<String>();
+            for ( int i = 0; i < files.size(); i++ ) {
+                Table table = schema.getTables().get( i );
+                if ( upToDate.contains( files.get( i ) ) ) {
+                    skipTable( files.get( i ), table );
+                }
+                else {
+                    tables.add( table );
+                    generated.add( files.get( i ) );
+                }
+            }
+
+            paths = generateArtifacts( schema, tables, generated, executor );
+        }
+        finally {
+            shutdown( executor );
+        }
+
+        if ( incremental ) {
+            phase = metrics.start( "manifest" );
+            manifest.addSchemaOutputs( paths );
+            for ( String orphan : manifest.merge( previousManifest ) ) {
+                GenUtil.deleteFile( orphan );
             }
-            classNames.add( table.getDomName() );
-            generateAll( table );
+            metrics.stop( phase, null );
         }
 
-        ForeignKeyGenerator foreignKey = new ForeignKeyGenerator( Parser.getForeignKeyList(), Parser.getTableMap() );
-        foreignKey.createForeignKeys();
+        commitOutput();
 
-        SessionFactoryGenerator sfg = new SessionFactoryGenerator( basePkg );
-        printPath( sfg.createSession() );
+        if ( incremental ) {
+            phase = metrics.start( "manifest" );
+            manifest.write( GenUtil.toFile( Manifest.FILE_NAME ).getPath() );
+            metrics.stop( phase, null );
+        }
 
-        MybatisConfigGenerator mcg = new MybatisConfigGenerator( classNames, basePkg, databaseType );
-        printPath( mcg.createConfiguration() );
+        if ( incremental || changed != null ) {
+            console.println( "\n" + skipCount + " unchanged tables skipped." );
+        }
 
-        printPath( "sql/_CreateTables.sql" );
-        printPath( "sql/_AlterTables.sql" );
-        printPath( "sql/_DropTables.sql" );
+        if ( modelCache != null ) {
+            modelCache.write( GenUtil.toFile( ModelCache.FILE_NAME ).getPath() );
+            console.println( "\n" + modelCache.getCounts() );
+        }
 
-        System.out.println( "\nDone." );
+        endRun();
     }
 
-    protected String getList() {
-        StringBuilder fileList = new StringBuilder();
-        File[] files = new File( configPath ).listFiles();
+    /**
+     * Generates all tables of a schema that is already complete.
+     */
+    private void generateSchema( Schema schema ) {
+        List<Table> tables = schema.getTables();
+        for ( Table table : tables ) {
+            table.setPackage( basePkg );
+        }
 
-        fileList.append( "     " );
-        for ( int i = 0; i < files.length; i++ ) {
-            if ( files[i].getName().contains( ".txt" ) ) {
-                fileList.append( files[i].getName() );
-                if ( i < ( files.length - 1 ) ) {
-                    fileList.append( ", " );
+        beginOutput( true );
+
+        ExecutorService executor = createExecutor();
+        try {
+            generateArtifacts( schema, tables, null, executor );
+        }
+        finally {
+            shutdown( executor );
+        }
+
+        commitOutput();
+        endRun();
+    }
+
+    /**
+     * Reads what the previous run left behind for its protected code and
+     * imports, and starts collecting the aggregate files.
+     * 
+     * @param scan
+     *            whether to read all files up front, in parallel, instead of
+     *            as they are needed
+     */
+    private void beginOutput( boolean scan ) {
+        Metrics.Phase phase = metrics.start( "scanOutput" );
+        ExistingOutputIndex outputIndex = new ExistingOutputIndex();
+        if ( scan ) {
+            outputIndex.scan( getOutputDirs() );
+        }
+        GenUtil.setOutputIndex( outputIndex );
+        metrics.stop( phase, null );
+
+        // every table adds to the aggregate files, which are written at the end
+        aggregator = new SqlAggregator();
+    }
+
+    /**
+     * Builds the selected artifacts of the tables and the files built from all
+     * tables, in the order of their dependencies, and prints their paths in
+     * table order.
+     * 
+     * @param schema
+     *            all tables, including those that are not generated
+     * @param tables
+     *            the tables to generate
+     * @param files
+     *            the config file of each table, or null when there are none
+     * @param executor
+     *            the worker pool, or null to build on this thread
+     * @return the paths of the files built from all tables
+     */
+    private List<String> generateArtifacts( final Schema schema, List<Table> tables, List<String> files,
+            ExecutorService executor ) {
+        ArtifactScheduler scheduler = new ArtifactScheduler( artifactKinds, tables, new ArtifactScheduler.Builder() {
+            public List<String> build( ArtifactKind kind, Table table ) {
+                String name = table == null ? null : table.getDomName();
+                Metrics.Phase phase = metrics.start( kind.getPhase() );
+                Object event = FlightEvents.beginGenerate( kind.getPhase(), name );
+                List<String> paths = table == null ? null : loadCached( kind, table );
+                boolean cached = paths != null;
+                try {
+                    if ( paths == null ) {
+                        String path = buildArtifact( schema, kind, table );
+                        paths = path == null ? Collections.<String> emptyList() : Collections.singletonList( path );
+                        if ( table != null && generationCache != null ) {
+                            generationCache.store( kind, table, paths );
+                        }
+                    }
                 }
-                if ( i % 5 == 0 && i != 0 ) {
-                    fileList.append( "\n     " );
+                finally {
+                    FlightEvents.endGenerate( event, paths == null ? Collections.<String> emptyList() : paths,
+                            cached );
                 }
+                metrics.stop( phase, name );
+                return paths;
             }
+        } );
 
+        if ( executor != null ) {
+            scheduler.run( executor );
         }
+        else {
+            scheduler.run();
+        }
+        GenUtil.setOutputIndex( null );
 
-        return fileList.toString();
+        Map<Table, List<String>> tablePaths = new IdentityHashMap<Table, List<String>>();
+        List<String> paths = new ArrayList<String>();
+        for ( Table table : tables ) {
+            tablePaths.put( table, new ArrayList<String>() );
+        }
+        for ( ArtifactScheduler.Artifact artifact : scheduler.getArtifacts() ) {
+            for ( String path : artifact.getPaths() ) {
+                printPath( path );
+            }
+            if ( artifact.getTable() != null ) {
+                tablePaths.get( artifact.getTable() ).addAll( artifact.getPaths() );
+            }
+            else {
+                paths.addAll( artifact.getPaths() );
+            }
+        }
+
+        if ( files != null ) {
+            for ( int i = 0; i < tables.size(); i++ ) {
+                recordOutputs( files.get( i ), tablePaths.get( tables.get( i ) ) );
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * @return the files of a per-table artifact written from the generation
+     *         cache, or null if it must be generated.
+     */
+    private List<String> loadCached( ArtifactKind kind, Table table ) {
+        if ( generationCache == null ) {
+            return null;
+        }
+        List<String> paths = generationCache.load( kind, table );
+        if ( paths != null && kind == ArtifactKind.SQL ) {
+            // the aggregate sql files still need the statements of the table
+            new SqlGenerator( table ).appendAggregates( aggregator );
+        }
+        return paths;
     }
 
     /**
-     * This method calls the appropriate generators for BO's, XMLs, DAOs,
-     * Domains, SQL and session factory, along with all relevant tests.
+     * Calls the generator of an artifact.
      * 
+     * @param schema
+     * @param kind
      * @param table
+     *            the table of a per-table kind, or null
+     * @return the path of the generated file, or null if none was written
      */
-    protected void generateAll( Table table ) {
+    private String buildArtifact( Schema schema, ArtifactKind kind, Table table ) {
+        switch ( kind ) {
+        case XML:
+            return new XmlGenerator( table, databaseType, fetchSize ).createXml();
+        case BO:
+            return new BoGenerator( table ).createBo();
+        case DAO:
+            return new DaoGenerator( table ).createDao();
+        case DOMAIN:
+            return new DomainGenerator( table ).createDomain();
+        case SQL:
+            SqlGenerator sql = new SqlGenerator( table );
+            String path = sql.createTableSql();
+            sql.appendAggregates( aggregator );
+            return path;
+        case TEST_DAO:
+            return new TestDaoGenerator( table ).createTestDao();
+        case TEST_BO:
+            return new TestBoGenerator( table ).createTestBo();
+        case BO_EXCEPTION:
+            return BoGenerator.createBoException( basePkg );
+        case PAGE:
+            return BoGenerator.createPage( basePkg );
+        case DAO_EXCEPTION:
+            return DaoGenerator.createDaoException( basePkg );
+        case SESSION_FACTORY:
+            return new SessionFactoryGenerator( basePkg ).createSession();
+        case MYBATIS_CONFIG:
+            return new MybatisConfigGenerator( schema.getClassNames(), basePkg, databaseType ).createConfiguration();
+        case CREATE_TABLES:
+            return aggregator.writeCreateTables( schema.getTables(), schema.getForeignKeyList() );
+        case ALTER_TABLES:
+            return new ForeignKeyGenerator( schema ).createForeignKeys( aggregator );
+        case DROP_TABLES:
+            return aggregator.writeDropTables( schema.getTables(), schema.getForeignKeyList() );
+        default:
+            throw new IllegalArgumentException( "No generator for " + kind );
+        }
+    }
 
-        XmlGenerator xml = new XmlGenerator( table, databaseType );
-        printPath( xml.createXml() );
+    /**
+     * Replaces the previous output with the files of the run, once all of
+     * them were generated.
+     */
+    private void commitOutput() {
+        Metrics.Phase phase = metrics.start( "commit" );
+        GenUtil.commitStaged();
+        metrics.stop( phase, null );
+    }
 
-        BoGenerator bo = new BoGenerator( table );
-        printPath( bo.createBo() );
+    private void endRun() {
+        if ( generationCache != null ) {
+            console.println( "\n" + generationCache.getCounts() );
+        }
+        console.println( "\n" + GenUtil.getCounts() );
+        writeMetrics();
+        console.println( "\nDone." );
+    }
 
-        DaoGenerator dao = new DaoGenerator( table );
-        printPath( dao.createDao() );
+    private void writeMetrics() {
+        if ( metricsReport != null ) {
+            metrics.writeReport( metricsReport );
+            console.println( "\nMetrics written to " + metricsReport );
+        }
+    }
 
-        DomainGenerator domain = new DomainGenerator( table );
-        printPath( domain.createDomain() );
+    /**
+     * @return the directories the generated files are written to.
+     */
+    private List<String> getOutputDirs() {
+        String pkgPath = basePkg.replace( ".", "/" );
+        List<String> dirs = new ArrayList<String>();
+
+        dirs.add( "src/main/java/" + pkgPath );
+        dirs.add( "src/main/resources/" + pkgPath );
+        dirs.add( "src/test/java/" + pkgPath );
+        dirs.add( SqlGenerator.PREFIX );
+        return dirs;
+    }
 
-        SqlGenerator sql = new SqlGenerator( table );
-        printPath( sql.createSql() );
+    /**
+     * @return the options that change the content of the generated files.
+     */
+    private String getOptions() {
+        String options = basePkg + " " + databaseType;
+        if ( fetchSize != XmlGenerator.DEFAULT_FETCH_SIZE ) {
+            options += " fetchSize=" + fetchSize;
+        }
+        return options;
+    }
 
-        TestDaoGenerator testDao = new TestDaoGenerator( table );
-        printPath( testDao.createTestDao() );
+    /**
+     * @return the version of the manifest, which changes with the generator's
+     *         code and the options that change the output.
+     */
+    private String getManifestVersion() {
+        String version = VERSION + " " + GENERATOR_VERSION + " " + getOptions();
+        if ( !artifactKinds.equals( EnumSet.allOf( ArtifactKind.class ) ) ) {
+            version += " " + artifactKinds;
+        }
+        return version;
+    }
+
+    /**
+     * @return the hash of BatGen's version and the classes that read the model
+     *         and write the files, or null if they can't be read.
+     */
+    private static String generatorVersion() {
+        return ModelCache.hashClasses( BatGen.class, ArtifactKind.class, ArtifactScheduler.class, Schema.class,
+                Parser.class, Tokenizer.class, Token.class, Table.class, Column.class, LengthColumn.class,
+                DoubleColumn.class, BlobColumn.class, VirtualStringColumn.class, IndexNode.class, ForeignNode.class,
+                FieldType.class, Generator.class, XmlGenerator.class, BoGenerator.class, DaoGenerator.class,
+                DomainGenerator.class, SqlGenerator.class, TestDaoGenerator.class, TestBoGenerator.class,
+                ImportGenerator.class, ForeignKeyGenerator.class, MybatisConfigGenerator.class,
+                SessionFactoryGenerator.class, SqlAggregator.class, CodeWriter.class, GenUtil.class );
+    }
 
-        TestBoGenerator testBo = new TestBoGenerator( table );
-        printPath( testBo.createTestBo() );
+    /**
+     * Leaves the files of an unchanged table as they are. The table still
+     * contributes to the aggregate sql files.
+     */
+    private void skipTable( String file, Table table ) {
+        new SqlGenerator( table ).appendAggregates( aggregator );
+        if ( incremental ) {
+            manifest.copyOutputs( previousManifest, file );
+        }
+        skipCount++;
+    }
+
+    /**
+     * Parses a config file, or loads it from the model cache when enabled.
+     */
+    private Table parse( Parser parser, String file ) {
+        Metrics.Phase phase = metrics.start( "parse" );
+        Table table = modelCache != null ? modelCache.parse( parser, file ) : parser.parse( file );
+        metrics.stop( phase, table.getDomName() );
+        return table;
+    }
+
+    private void recordOutputs( String file, List<String> paths ) {
+        if ( incremental ) {
+            Metrics.Phase phase = metrics.start( "manifest" );
+            manifest.addOutputs( file, paths );
+            metrics.stop( phase, null );
+        }
+    }
+
+    /**
+     * Parses all files into the schema, in file order, on the worker pool when
+     * there is one.
+     * 
+     * @param files
+     * @param schema
+     *            receives the parsed tables
+     * @param executor
+     *            the worker pool, or null to parse on this thread
+     */
+    private void parseFiles( List<String> files, Schema schema, ExecutorService executor ) {
+        if ( executor == null ) {
+            Parser parser = new Parser();
+            for ( String file : files ) {
+                Table table = parse( parser, file );
+                table.setPackage( basePkg );
+                schema.addTable( table );
+            }
+            return;
+        }
+
+        List<Future<Table>> parsed = new ArrayList<Future<Table>>();
+        for ( final String file : files ) {
+            parsed.add( executor.submit( new Callable<Table>() {
+                public Table call() {
+                    return parse( new Parser(), file );
+                }
+            } ) );
+        }
+
+        for ( Future<Table> future : parsed ) {
+            Table table = getResult( future );
+            table.setPackage( basePkg );
+            schema.addTable( table );
+        }
+    }
+
+    /**
+     * @return a pool with a worker for each available processor in parallel
+     *         mode, otherwise null.
+     */
+    private ExecutorService createExecutor() {
+        if ( !parallel ) {
+            return null;
+        }
+        return Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+    }
 
+    /**
+     * Stops the tasks that haven't started and waits for the running ones, so
+     * none of them writes after a failed run has discarded its files.
+     */
+    private static void shutdown( ExecutorService executor ) {
+        if ( executor == null ) {
+            return;
+        }
+
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination( 1, TimeUnit.MINUTES );
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for a task and rethrows its failure unchanged, so errors read the
+     * same as in sequential mode.
+     */
+    static <T> T getResult( Future<T> future ) {
+        try {
+            return future.get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        }
+        catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException( e.getCause() );
+        }
+    }
+
+    protected String getList() {
+        StringBuilder fileList = new StringBuilder();
+        File[] files = new File( configPath ).listFiles();
+
+        fileList.append( "     " );
+        for ( int i = 0; i < files.length; i++ ) {
+            if ( files[i].getName().contains( ".txt" ) ) {
+                fileList.append( files[i].getName() );
+                if ( i < ( files.length - 1 ) ) {
+                    fileList.append( ", " );
+                }
+                if ( i % 5 == 0 && i != 0 ) {
+                    fileList.append( "\n     " );
+                }
+            }
+
+        }
+
+        return fileList.toString();
     }
 
     private void printPath( String file ) {
         fileCount++;
         if ( file == null ) {
-            System.out.println( fileCount + ". MyBatis configuration already exists." );
+            console.println( fileCount + ". MyBatis configuration already exists." );
             return;
         }
-        System.out.println( fileCount + ". " + file );
+        console.println( fileCount + ". " + file );
     }
 }
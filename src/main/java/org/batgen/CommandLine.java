@@ -0,0 +1,422 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs BatGen from the command line without asking for input, so it can be
+ * scripted or called from a build. With --watch it keeps running and
+ * regenerates the tables whose config file is saved. With --daemon the run is
+ * handed to a running Daemon, which saves the JVM startup. With --validate the
+ * config files are only checked and every error is printed.
+ * 
+ */
+public class CommandLine {
+    private static final String USAGE        = "Usage: java org.batgen.CommandLine [options] <config dir> <package> [config files]\n"
+            + "\n"
+            + "Config files are names in the config directory, all .txt files by default.\n"
+            + "\n"
+            + "Options:\n"
+            + "  --database <H2|ORACLE>  the database type, H2 by default\n"
+            + "  --output <dir>          where to write the generated files, the working directory by default\n"
+            + "  --parallel              parse and generate on all processors\n"
+            + "  --incremental           only regenerate the tables whose config file or output changed\n"
+            + "  --write-if-changed      leave files with unchanged content untouched\n"
+            + "  --model-cache           load unchanged config files from a snapshot of the parsed tables\n"
+            + "  --cache <dir>           copy the files of tables generated before from this shared cache directory\n"
+            + "  --metrics <file>        write a JSON report of where the time went\n"
+            + "  --artifacts <kinds>     only generate these kinds and the kinds they depend on, e.g. dao,test-dao\n"
+            + "  --fetch-size <rows>     rows fetched per round trip by the streaming selects, 1000 by default\n"
+            + "  --watch                 keep running and regenerate the tables whose config file changes\n"
+            + "  --validate              only check the config files and print every error, without writing anything\n"
+            + "  --daemon <port>         run on the BatGen daemon listening on this port";
+
+    private DatabaseType        databaseType = DatabaseType.H2;
+    private String              outputRoot;
+    private String              metricsReport;
+    private String              cacheDirectory;
+    private List<ArtifactKind>  artifacts;
+    private Integer             fetchSize;
+    private boolean             parallel;
+    private boolean             incremental;
+    private boolean             writeIfChanged;
+    private boolean             modelCache;
+    private boolean             watch;
+    private boolean             validate;
+    private Integer             daemonPort;
+    private List<String>        arguments    = new ArrayList<String>();
+
+    public static void main( String[] args ) {
+        CommandLine commandLine = new CommandLine();
+
+        try {
+            commandLine.parse( args );
+        }
+        catch ( IllegalArgumentException e ) {
+            System.err.println( e.getMessage() + "\n\n" + USAGE );
+            System.exit( 2 );
+        }
+
+        try {
+            commandLine.run();
+        }
+        catch ( Exception e ) {
+            System.err.println( e.getMessage() );
+            System.exit( 1 );
+        }
+    }
+
+    /**
+     * Reads the options and arguments.
+     * 
+     * @param args
+     * @throws IllegalArgumentException
+     *             if they are not valid.
+     */
+    void parse( String[] args ) {
+        for ( int i = 0; i < args.length; i++ ) {
+            String arg = args[i];
+
+            if ( arg.equals( "--database" ) ) {
+                String value = getValue( args, ++i, arg );
+                try {
+                    databaseType = DatabaseType.valueOf( value.toUpperCase() );
+                }
+                catch ( IllegalArgumentException e ) {
+                    throw new IllegalArgumentException( "Unknown database type " + value + "." );
+                }
+            }
+            else if ( arg.equals( "--output" ) ) {
+                outputRoot = getValue( args, ++i, arg );
+            }
+            else if ( arg.equals( "--metrics" ) ) {
+                metricsReport = getValue( args, ++i, arg );
+            }
+            else if ( arg.equals( "--cache" ) ) {
+                cacheDirectory = getValue( args, ++i, arg );
+            }
+            else if ( arg.equals( "--artifacts" ) ) {
+                artifacts = parseArtifacts( getValue( args, ++i, arg ) );
+            }
+            else if ( arg.equals( "--fetch-size" ) ) {
+                String value = getValue( args, ++i, arg );
+                try {
+                    fetchSize = Integer.valueOf( value );
+                }
+                catch ( NumberFormatException e ) {
+                    throw new IllegalArgumentException( "Invalid fetch size " + value + "." );
+                }
+                if ( fetchSize < 1 ) {
+                    throw new IllegalArgumentException( "Invalid fetch size " + value + "." );
+                }
+            }
+            else if ( arg.equals( "--parallel" ) ) {
+                parallel = true;
+            }
+            else if ( arg.equals( "--incremental" ) ) {
+                incremental = true;
+            }
+            else if ( arg.equals( "--write-if-changed" ) ) {
+                writeIfChanged = true;
+            }
+            else if ( arg.equals( "--model-cache" ) ) {
+                modelCache = true;
+            }
+            else if ( arg.equals( "--watch" ) ) {
+                watch = true;
+            }
+            else if ( arg.equals( "--validate" ) ) {
+                validate = true;
+            }
+            else if ( arg.equals( "--daemon" ) ) {
+                String value = getValue( args, ++i, arg );
+                try {
+                    daemonPort = Integer.valueOf( value );
+                }
+                catch ( NumberFormatException e ) {
+                    throw new IllegalArgumentException( "Invalid port " + value + "." );
+                }
+            }
+            else if ( arg.startsWith( "--" ) ) {
+                throw new IllegalArgumentException( "Unknown option " + arg + "." );
+            }
+            else {
+                arguments.add( arg );
+            }
+        }
+
+        if ( arguments.size() < 2 ) {
+            throw new IllegalArgumentException( "The config directory and the package are required." );
+        }
+        if ( watch && daemonPort != null ) {
+            throw new IllegalArgumentException( "--watch can't be combined with --daemon." );
+        }
+        if ( watch && validate ) {
+            throw new IllegalArgumentException( "--watch can't be combined with --validate." );
+        }
+    }
+
+    private static String getValue( String[] args, int i, String option ) {
+        if ( i >= args.length ) {
+            throw new IllegalArgumentException( "Missing value for " + option + "." );
+        }
+        return args[i];
+    }
+
+    /**
+     * Generates the config files once and, with --watch, then keeps
+     * regenerating the ones that change.
+     */
+    void run() throws IOException {
+        if ( daemonPort != null ) {
+            runOnDaemon();
+            return;
+        }
+
+        BatGen batGen = createBatGen();
+        if ( watch ) {
+            new ConfigWatcher( batGen, arguments.get( 0 ), getConfigNames() ).watch();
+        }
+        else {
+            run( batGen );
+        }
+    }
+
+    /**
+     * Generates the config files once, or with --validate only checks them.
+     * 
+     * @param batGen
+     *            a BatGen from createBatGen()
+     * @throws IllegalStateException
+     *             if the validation found errors.
+     */
+    void run( BatGen batGen ) {
+        if ( validate ) {
+            int errors = batGen.validate( getConfigNames() ).size();
+            if ( errors > 0 ) {
+                throw new IllegalStateException( "\nThe config files have " + errors + ( errors == 1 ? " error." : " errors." ) );
+            }
+            System.out.println( "No errors found." );
+        }
+        else {
+            batGen.run( getConfigNames() );
+        }
+    }
+
+    /**
+     * @return a BatGen set up with the options.
+     */
+    BatGen createBatGen() {
+        BatGen batGen = new BatGen( arguments.get( 0 ), arguments.get( 1 ), databaseType );
+        batGen.setOutputRoot( outputRoot );
+        batGen.setMetricsReport( metricsReport );
+        batGen.setArtifacts( artifacts );
+        if ( fetchSize != null ) {
+            batGen.setFetchSize( fetchSize );
+        }
+        batGen.setGenerationCache( cacheDirectory );
+        batGen.setParallel( parallel );
+        batGen.setIncremental( incremental );
+        batGen.setWriteIfChanged( writeIfChanged );
+        // a watching JVM keeps the parsed tables, so only changed files are parsed again
+        batGen.setModelCache( modelCache || watch );
+        return batGen;
+    }
+
+    /**
+     * @param value
+     *            comma separated kinds, e.g. "dao,test-dao"
+     * @return the kinds
+     * @throws IllegalArgumentException
+     *             if a kind is unknown.
+     */
+    private static List<ArtifactKind> parseArtifacts( String value ) {
+        List<ArtifactKind> kinds = new ArrayList<ArtifactKind>();
+        for ( String name : value.split( "," ) ) {
+            try {
+                kinds.add( ArtifactKind.fromName( name ) );
+            }
+            catch ( IllegalArgumentException e ) {
+                throw new IllegalArgumentException( "Unknown artifact " + name.trim() + ", expected one of "
+                        + Arrays.toString( ArtifactKind.values() ) + "." );
+            }
+        }
+        return kinds;
+    }
+
+    private static String join( List<ArtifactKind> kinds ) {
+        StringBuilder sb = new StringBuilder();
+        for ( ArtifactKind kind : kinds ) {
+            if ( sb.length() > 0 ) {
+                sb.append( ',' );
+            }
+            sb.append( kind.name() );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the config files to process, or an empty list for all.
+     */
+    List<String> getConfigNames() {
+        // config files can be given separately or as a comma separated list
+        List<String> configNames = new ArrayList<String>();
+        for ( String arg : arguments.subList( 2, arguments.size() ) ) {
+            for ( String name : arg.split( "," ) ) {
+                if ( !name.trim().isEmpty() ) {
+                    configNames.add( name.trim() );
+                }
+            }
+        }
+        return configNames;
+    }
+
+    /**
+     * @return the output directory, or null for the working directory.
+     */
+    String getOutputRoot() {
+        return outputRoot;
+    }
+
+    String getConfigPath() {
+        return arguments.get( 0 );
+    }
+
+    /**
+     * @return everything createBatGen() sets up, so a BatGen is only reused
+     *         for a run with the same settings.
+     */
+    String getSettings() {
+        return databaseType + " " + outputRoot + " " + metricsReport + " " + cacheDirectory + " " + artifacts + " "
+                + fetchSize + " " + parallel + " " + incremental + " " + writeIfChanged + " " + modelCache + " "
+                + arguments.subList( 0, 2 );
+    }
+
+    boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * Sends the run to the daemon and prints its progress. The last line of
+     * the answer tells whether the run succeeded.
+     */
+    private void runOnDaemon() throws IOException {
+        File tokenFile = Daemon.getTokenFile( Daemon.getTokenDirectory(), daemonPort );
+        if ( !tokenFile.isFile() ) {
+            throw new IOException( "No daemon of this user runs on port " + daemonPort + ", " + tokenFile
+                    + " is missing." );
+        }
+        String token = new String( Files.readAllBytes( tokenFile.toPath() ), "UTF-8" ).trim();
+
+        Socket socket = new Socket( InetAddress.getLoopbackAddress(), daemonPort );
+
+        try {
+            PrintStream out = new PrintStream( socket.getOutputStream(), true, "UTF-8" );
+            out.println( token );
+            for ( String arg : getDaemonArguments() ) {
+                out.println( arg );
+            }
+            out.println();
+
+            BufferedReader in = new BufferedReader( new InputStreamReader( socket.getInputStream(), "UTF-8" ) );
+            String status = null;
+            String line = in.readLine();
+            while ( line != null ) {
+                if ( status != null ) {
+                    System.out.println( status );
+                }
+                status = line;
+                line = in.readLine();
+            }
+
+            if ( status == null ) {
+                throw new IOException( "The daemon closed the connection without an answer." );
+            }
+            if ( !status.equals( Daemon.OK ) ) {
+                throw new IOException( status.substring( status.indexOf( ' ' ) + 1 ) );
+            }
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * @return the options and arguments for the daemon. Paths are made
+     *         absolute, as the daemon has its own working directory.
+     */
+    private List<String> getDaemonArguments() {
+        List<String> args = new ArrayList<String>();
+
+        args.add( "--database" );
+        args.add( databaseType.name() );
+        args.add( "--output" );
+        args.add( new File( outputRoot == null ? "." : outputRoot ).getAbsolutePath() );
+        if ( metricsReport != null ) {
+            args.add( "--metrics" );
+            args.add( new File( metricsReport ).getAbsolutePath() );
+        }
+        if ( cacheDirectory != null ) {
+            args.add( "--cache" );
+            args.add( new File( cacheDirectory ).getAbsolutePath() );
+        }
+        if ( artifacts != null ) {
+            args.add( "--artifacts" );
+            args.add( join( artifacts ) );
+        }
+        if ( fetchSize != null ) {
+            args.add( "--fetch-size" );
+            args.add( fetchSize.toString() );
+        }
+        if ( parallel ) {
+            args.add( "--parallel" );
+        }
+        if ( incremental ) {
+            args.add( "--incremental" );
+        }
+        if ( writeIfChanged ) {
+            args.add( "--write-if-changed" );
+        }
+        if ( modelCache ) {
+            args.add( "--model-cache" );
+        }
+        if ( validate ) {
+            args.add( "--validate" );
+        }
+        args.add( new File( arguments.get( 0 ) ).getAbsolutePath() );
+        args.addAll( arguments.subList( 1, arguments.size() ) );
+        return args;
+    }
+}
@@ -0,0 +1,180 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the config directory and regenerates the tables whose config file
+ * was saved. Events are collected until none arrived for DEBOUNCE_MILLIS, so
+ * an editor that writes a file in several steps causes a single run.
+ * 
+ */
+public class ConfigWatcher {
+    public static final long   DEBOUNCE_MILLIS = 200;
+
+    private final BatGen       batGen;
+    private final String       configPath;
+    private final List<String> configNames;
+    private boolean            fullRunPending;
+
+    /**
+     * @param batGen
+     *            the generator, with its options set
+     * @param configPath
+     *            the config directory of batGen
+     * @param configNames
+     *            the config files to watch, or an empty list for all .txt
+     *            files.
+     */
+    public ConfigWatcher( BatGen batGen, String configPath, List<String> configNames ) {
+        this.batGen = batGen;
+        this.configPath = configPath;
+        this.configNames = configNames;
+    }
+
+    /**
+     * Generates all config files once, then regenerates the changed ones until
+     * the thread is interrupted or the config directory is removed. A run that
+     * fails, e.g. on a syntax error, is reported and its files are retried
+     * with the next change.
+     * 
+     * @throws IOException
+     *             if the directory can't be watched
+     */
+    public void watch() throws IOException {
+        Path dir = Paths.get( configPath );
+        WatchService service = dir.getFileSystem().newWatchService();
+        Set<String> pending = new TreeSet<String>();
+
+        try {
+            dir.register( service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE );
+            fullRunPending = true;
+            regenerate( pending );
+            System.out.println( "\nWatching " + configPath + " for changes." );
+
+            while ( true ) {
+                WatchKey key = service.take();
+                boolean valid = collect( key, pending );
+
+                key = service.poll( DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS );
+                while ( key != null ) {
+                    valid &= collect( key, pending );
+                    key = service.poll( DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS );
+                }
+
+                if ( fullRunPending || !pending.isEmpty() ) {
+                    regenerate( pending );
+                }
+                if ( !valid ) {
+                    System.out.println( configPath + " is no longer available." );
+                    return;
+                }
+            }
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            service.close();
+        }
+    }
+
+    /**
+     * Runs all config files if the last full run failed, otherwise only the
+     * pending ones.
+     */
+    private void regenerate( Set<String> pending ) {
+        try {
+            if ( fullRunPending ) {
+                batGen.run( configNames );
+                fullRunPending = false;
+            }
+            else {
+                System.out.println( "\nChanged: " + pending );
+                batGen.runChanged( configNames, pending );
+            }
+            pending.clear();
+        }
+        catch ( RuntimeException e ) {
+            System.out.println( e.getMessage() );
+            System.out.println( "\nWaiting for the next change." );
+        }
+    }
+
+    /**
+     * Adds the names of the changed config files to pending.
+     * 
+     * @return false if the directory can no longer be watched.
+     */
+    private boolean collect( WatchKey key, Set<String> pending ) {
+        for ( WatchEvent<?> event : key.pollEvents() ) {
+            if ( event.kind() == OVERFLOW ) {
+                // events were lost, regenerate everything
+                addAll( pending );
+                continue;
+            }
+
+            String name = ( (Path) event.context() ).getFileName().toString();
+            if ( isConfigFile( name ) ) {
+                pending.add( name );
+            }
+        }
+        return key.reset();
+    }
+
+    private void addAll( Set<String> pending ) {
+        File[] files = new File( configPath ).listFiles();
+        if ( files == null ) {
+            return;
+        }
+        for ( File file : files ) {
+            if ( isConfigFile( file.getName() ) ) {
+                pending.add( file.getName() );
+            }
+        }
+    }
+
+    private boolean isConfigFile( String name ) {
+        if ( configNames.isEmpty() ) {
+            return name.endsWith( ".txt" );
+        }
+        return configNames.contains( name );
+    }
+}
@@ -0,0 +1,363 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps one warm JVM that runs BatGen for any number of projects, so a run
+ * doesn't pay for the JVM startup and the JIT warm-up each time. It listens on
+ * a port of the loopback interface only.
+ * 
+ * A request is the daemon's token, followed by the command line of a run, one
+ * argument per line, and an empty line. The answer is the progress of the run,
+ * followed by a last line with OK or ERROR and the message. "CommandLine
+ * --daemon <port>" sends such a request.
+
+ * The token is a random value the daemon writes at startup to a file only its
+ * owner can read, in ~/.batgen, so other users of the machine can't send
+ * requests. A request without it, including a shutdown, is rejected. Paths are resolved against the working directory of the
+ * daemon, so clients send absolute paths.
+ * 
+ * Each run has its own schema and output state, and runs for different output
+ * directories go on at the same time. Runs for the same output directory wait
+ * for each other. With --model-cache the parsed tables of a project are kept
+ * between its runs, for the last MAX_PROJECTS projects.
+ * 
+ */
+public class Daemon {
+    public static final int     DEFAULT_PORT = 7431;
+    public static final String  OK           = "OK";
+    public static final String  ERROR        = "ERROR";
+    public static final String  SHUTDOWN     = "--shutdown";
+
+    private static final int    MAX_PROJECTS = 16;
+
+    private static final String USAGE        = "Usage: java org.batgen.Daemon [--port <port>]\n"
+            + "\n"
+            + "Send runs with: java org.batgen.CommandLine --daemon <port> [options] <config dir> <package>";
+
+    private final ServerSocket                  server;
+    private final File                          tokenFile;
+    private final String                        token;
+    private final ExecutorService               executor     = Executors.newCachedThreadPool();
+    private final ConcurrentMap<String, Object> locks        = new ConcurrentHashMap<String, Object>();
+    // the projects by output and config directory, least recently used first
+    private final Map<String, Project>          projects     = new LinkedHashMap<String, Project>( 16, 0.75f, true );
+
+    /**
+     * @param port
+     *            the port to listen on, or 0 for any free port
+     * @throws IOException
+     *             if the port can't be opened or the token can't be written
+     */
+    public Daemon( int port ) throws IOException {
+        this( port, getTokenDirectory() );
+    }
+
+    /**
+     * @param port
+     *            the port to listen on, or 0 for any free port
+     * @param tokenDirectory
+     *            where the token file is written
+     * @throws IOException
+     *             if the port can't be opened or the token can't be written
+     */
+    public Daemon( int port, File tokenDirectory ) throws IOException {
+        server = new ServerSocket( port, 50, InetAddress.getLoopbackAddress() );
+        tokenFile = getTokenFile( tokenDirectory, getPort() );
+
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes( bytes );
+        StringBuilder sb = new StringBuilder();
+        for ( byte b : bytes ) {
+            sb.append( String.format( "%02x", b ) );
+        }
+        token = sb.toString();
+
+        try {
+            writeToken();
+        }
+        catch ( IOException e ) {
+            server.close();
+            throw e;
+        }
+    }
+
+    public static void main( String[] args ) {
+        int port = DEFAULT_PORT;
+
+        try {
+            if ( args.length == 2 && args[0].equals( "--port" ) ) {
+                port = Integer.parseInt( args[1] );
+            }
+            else if ( args.length != 0 ) {
+                throw new IllegalArgumentException( "Unknown arguments." );
+            }
+        }
+        catch ( IllegalArgumentException e ) {
+            System.err.println( e.getMessage() + "\n\n" + USAGE );
+            System.exit( 2 );
+        }
+
+        try {
+            Daemon daemon = new Daemon( port );
+            System.out.println( "BatGen daemon listening on port " + daemon.getPort() + "." );
+            daemon.serve();
+        }
+        catch ( IOException e ) {
+            System.err.println( e.getMessage() );
+            System.exit( 1 );
+        }
+    }
+
+    /**
+     * @return the port the daemon listens on.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accepts requests until shutdown() is called or a shutdown request
+     * arrives. Each request is handled on its own thread.
+     */
+    public void serve() throws IOException {
+        try {
+            while ( true ) {
+                final Socket socket;
+                try {
+                    socket = server.accept();
+                }
+                catch ( SocketException e ) {
+                    if ( server.isClosed() ) {
+                        break;
+                    }
+                    throw e;
+                }
+
+                executor.execute( new Runnable() {
+                    public void run() {
+                        handle( socket );
+                    }
+                } );
+            }
+        }
+        finally {
+            // lets the runs in progress finish
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting requests.
+     */
+    public void shutdown() {
+        try {
+            server.close();
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+        tokenFile.delete();
+    }
+
+    /**
+     * @return the directory of the token files, ~/.batgen.
+     */
+    static File getTokenDirectory() {
+        return new File( System.getProperty( "user.home" ), ".batgen" );
+    }
+
+    /**
+     * @return the file with the token of the daemon on a port.
+     */
+    static File getTokenFile( File tokenDirectory, int port ) {
+        return new File( tokenDirectory, "daemon-" + port + ".token" );
+    }
+
+    /**
+     * Writes the token to a new file that only the owner can read, in a
+     * directory only the owner can enter.
+     */
+    private void writeToken() throws IOException {
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains( "posix" );
+        Path dir = tokenFile.getParentFile().toPath();
+        Path file = tokenFile.toPath();
+
+        Files.createDirectories( dir );
+        Files.deleteIfExists( file );
+        if ( posix ) {
+            Files.setPosixFilePermissions( dir, PosixFilePermissions.fromString( "rwx------" ) );
+            Files.createFile( file,
+                    PosixFilePermissions.asFileAttribute( PosixFilePermissions.fromString( "rw-------" ) ) );
+        }
+        else {
+            Files.createFile( file );
+            tokenFile.setReadable( false, false );
+            tokenFile.setReadable( true, true );
+            tokenFile.setWritable( false, false );
+            tokenFile.setWritable( true, true );
+        }
+        Files.write( file, token.getBytes( Charset.forName( "UTF-8" ) ) );
+    }
+
+    /**
+     * @return whether a line is the token, compared in constant time.
+     */
+    private boolean isToken( String line ) {
+        Charset utf8 = Charset.forName( "UTF-8" );
+        return line != null && MessageDigest.isEqual( token.getBytes( utf8 ), line.getBytes( utf8 ) );
+    }
+
+    private void handle( Socket socket ) {
+        try {
+            BufferedReader in = new BufferedReader( new InputStreamReader( socket.getInputStream(), "UTF-8" ) );
+            PrintStream out = new PrintStream( socket.getOutputStream(), true, "UTF-8" );
+
+            if ( !isToken( in.readLine() ) ) {
+                out.println( ERROR + " The request has no valid token, see " + tokenFile + "." );
+                return;
+            }
+
+            List<String> args = new ArrayList<String>();
+            String line = in.readLine();
+            while ( line != null && !line.isEmpty() ) {
+                args.add( line );
+                line = in.readLine();
+            }
+
+            try {
+                if ( args.size() == 1 && args.get( 0 ).equals( SHUTDOWN ) ) {
+                    shutdown();
+                }
+                else {
+                    run( args, out );
+                }
+                out.println( OK );
+            }
+            catch ( Exception e ) {
+                out.println( ERROR + " " + ( e.getMessage() != null ? e.getMessage() : e.toString() ) );
+            }
+        }
+        catch ( IOException e ) {
+            // the client went away, there is no one left to tell
+        }
+        finally {
+            try {
+                socket.close();
+            }
+            catch ( IOException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Runs BatGen for a request. Requests for the same project with the same
+     * settings reuse the BatGen of the first one, so its model cache is kept
+     * between them.
+     */
+    private void run( List<String> args, PrintStream out ) throws IOException {
+        CommandLine commandLine = new CommandLine();
+        commandLine.parse( args.toArray( new String[args.size()] ) );
+        if ( commandLine.isWatch() ) {
+            throw new IllegalArgumentException( "--watch is not supported by the daemon." );
+        }
+
+        String outputRoot = commandLine.getOutputRoot();
+        String dir = new File( outputRoot == null ? "." : outputRoot ).getCanonicalPath();
+        BatGen batGen = getBatGen( dir, commandLine );
+
+        // runs for the same directory would overwrite each other's files
+        locks.putIfAbsent( dir, new Object() );
+
+        synchronized ( locks.get( dir ) ) {
+            batGen.setConsole( out );
+            commandLine.run( batGen );
+        }
+    }
+
+    /**
+     * @return the BatGen of the project, made again when the settings changed.
+     *         The least recently used project is dropped once there are more
+     *         than MAX_PROJECTS.
+     */
+    private BatGen getBatGen( String dir, CommandLine commandLine ) throws IOException {
+        String key = dir + File.pathSeparator + new File( commandLine.getConfigPath() ).getCanonicalPath();
+        String settings = commandLine.getSettings();
+
+        synchronized ( projects ) {
+            Project project = projects.get( key );
+            if ( project == null || !project.settings.equals( settings ) ) {
+                project = new Project( settings, commandLine.createBatGen() );
+                projects.put( key, project );
+            }
+
+            Iterator<Project> it = projects.values().iterator();
+            while ( projects.size() > MAX_PROJECTS ) {
+                it.next();
+                it.remove();
+            }
+            return project.batGen;
+        }
+    }
+
+    /**
+     * A BatGen and the settings it was made with.
+     */
+    private static class Project {
+        private final String settings;
+        private final BatGen batGen;
+
+        private Project( String settings, BatGen batGen ) {
+            this.settings = settings;
+            this.batGen = batGen;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+/**
+ * An error in a config file, found by BatGen.validate(). Prints as
+ * "file:line:column: message", which editors and build tools can link to.
+ * 
+ */
+public class Diagnostic {
+    private final String fileName;
+    private final int    line;
+    private final int    col;
+    private final String message;
+
+    /**
+     * @param fileName
+     * @param line
+     *            the line of the error, starting at 1
+     * @param col
+     *            the column of the error, starting at 1, or 0 for the whole
+     *            line
+     * @param message
+     */
+    public Diagnostic( String fileName, int line, int col, String message ) {
+        this.fileName = fileName;
+        this.line = line;
+        this.col = col;
+        this.message = message;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String toString() {
+        return fileName + ":" + line + ":" + col + ": " + message;
+    }
+}
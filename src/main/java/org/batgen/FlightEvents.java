@@ -0,0 +1,200 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events for parsing, the generators, the reads of the
+ * imports and protected code of the previous output and the writes of the
+ * generated files, so slow tables can be looked at along with the CPU and
+ * allocation samples of a recording. The events have the table, the file and
+ * the size as fields and are in the BatGen category.
+ * 
+ * Each begin method returns the event to pass to its end method, or null when
+ * the event isn't recorded. On JVMs without JFR and when no recording has the
+ * event enabled, nothing is allocated or measured. The JFR events themselves
+ * are in JfrEvents, which is only loaded when the JVM has JFR, so this class
+ * still runs on Java 7.
+ * 
+ */
+public class FlightEvents {
+    private static final FlightEvents EVENTS = create();
+
+    /**
+     * Starts the event of parsing a config file.
+     * 
+     * @param configFile
+     * @return the event for endParse(), or null
+     */
+    public static Object beginParse( String configFile ) {
+        return EVENTS.startParse( configFile );
+    }
+
+    /**
+     * @param event
+     *            the result of beginParse(), may be null
+     * @param table
+     *            the class name of the parsed table, or null
+     */
+    public static void endParse( Object event, String table ) {
+        if ( event != null ) {
+            EVENTS.finishParse( event, table );
+        }
+    }
+
+    /**
+     * Starts the event of building an artifact. The reads and writes on this
+     * thread until endGenerate() are counted for it and get its table.
+     * 
+     * @param artifact
+     *            the kind of artifact
+     * @param table
+     *            the class name of the table, or null
+     * @return the event for endGenerate(), or null
+     */
+    public static Object beginGenerate( String artifact, String table ) {
+        return EVENTS.startGenerate( artifact, table );
+    }
+
+    /**
+     * @param event
+     *            the result of beginGenerate(), may be null
+     * @param paths
+     *            the files written
+     * @param cached
+     *            whether the files came from the generation cache
+     */
+    public static void endGenerate( Object event, List<String> paths, boolean cached ) {
+        if ( event != null ) {
+            EVENTS.finishGenerate( event, paths, cached );
+        }
+    }
+
+    /**
+     * Starts the event of looking up the imports and protected code of a
+     * previously generated file.
+     * 
+     * @param path
+     * @return the event for endRead(), or null
+     */
+    public static Object beginRead( String path ) {
+        return EVENTS.startRead( path );
+    }
+
+    /**
+     * @param event
+     *            the result of beginRead(), may be null
+     * @param importLines
+     * @param protectedLines
+     */
+    public static void endRead( Object event, List<String> importLines, List<String> protectedLines ) {
+        if ( event != null ) {
+            EVENTS.finishRead( event, importLines, protectedLines );
+        }
+    }
+
+    /**
+     * Starts the event of writing a generated file, which lasts until the
+     * file is complete.
+     * 
+     * @param path
+     * @return the event for endWrite(), or null
+     */
+    public static Object beginWrite( String path ) {
+        return EVENTS.startWrite( path );
+    }
+
+    /**
+     * @param event
+     *            the result of beginWrite(), may be null
+     * @param bytes
+     *            the size of the file
+     */
+    public static void endWrite( Object event, long bytes ) {
+        if ( event != null ) {
+            EVENTS.finishWrite( event, bytes );
+        }
+    }
+
+    Object startParse( String configFile ) {
+        return null;
+    }
+
+    void finishParse( Object event, String table ) {
+    }
+
+    Object startGenerate( String artifact, String table ) {
+        return null;
+    }
+
+    void finishGenerate( Object event, List<String> paths, boolean cached ) {
+    }
+
+    Object startRead( String path ) {
+        return null;
+    }
+
+    void finishRead( Object event, List<String> importLines, List<String> protectedLines ) {
+    }
+
+    Object startWrite( String path ) {
+        return null;
+    }
+
+    void finishWrite( Object event, long bytes ) {
+    }
+
+    /**
+     * @return the JFR events if the JVM has JFR, otherwise events that are
+     *         never recorded.
+     */
+    private static FlightEvents create() {
+        try {
+            Class.forName( "jdk.jfr.Event" );
+            return (FlightEvents) Class.forName( "org.batgen.JfrEvents" ).getDeclaredConstructor()
+                    .newInstance();
+        }
+        catch ( ClassNotFoundException e ) {
+            // a JVM without JFR
+        }
+        catch ( LinkageError e ) {
+            // a JVM without JFR
+        }
+        catch ( InstantiationException e ) {
+            throw new IllegalStateException( e );
+        }
+        catch ( IllegalAccessException e ) {
+            throw new IllegalStateException( e );
+        }
+        catch ( NoSuchMethodException e ) {
+            throw new IllegalStateException( e );
+        }
+        catch ( InvocationTargetException e ) {
+            throw new IllegalStateException( e.getCause() );
+        }
+        return new FlightEvents();
+    }
+}
@@ -5,6 +5,8 @@ public class ForeignNode {
     private String fromField;
     private String toTable;
     private String toField;
+    private int line;
+    private int col;
 
     public ForeignNode(String fromTable, String fromField, String toTable, String toField){
         this.setFromTable( fromTable );
@@ -13,6 +15,29 @@ public class ForeignNode {
         this.setToField( toField );
     }
 
+    /**
+     * Sets where the foreign key is in the config file, for diagnostics.
+     * 
+     * @param line
+     * @param col
+     */
+    public void setPosition( int line, int col ) {
+        this.line = line;
+        this.col = col;
+    }
+
+    /**
+     * @return the line of the foreign key in the config file, or 0 when it
+     *         was not parsed from one.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
     public String getFromTable() {
         return fromTable;
     }
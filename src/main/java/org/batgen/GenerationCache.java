@@ -0,0 +1,388 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.batgen.generators.BoGenerator;
+import org.batgen.generators.CodeWriter;
+import org.batgen.generators.DaoGenerator;
+import org.batgen.generators.DomainGenerator;
+import org.batgen.generators.ExistingOutput;
+import org.batgen.generators.GenUtil;
+import org.batgen.generators.Generator;
+import org.batgen.generators.ImportGenerator;
+import org.batgen.generators.SqlGenerator;
+import org.batgen.generators.TestBoGenerator;
+import org.batgen.generators.TestDaoGenerator;
+import org.batgen.generators.XmlGenerator;
+
+/**
+ * A content-addressed cache of the files generated for a table, kept in a
+ * directory that can be shared by several checkouts, e.g. on a mounted volume.
+ * 
+ * Each artifact has one entry file, named by the hash of the artifact kind,
+ * the table model, the options and the generator version, the hash of
+ * BatGen's version and the generator and model classes. Since the generators
+ * keep the imports and protected code of the previous output, the content also
+ * depends on what the files had before. So an entry holds the paths of the
+ * files and a few variants of their content, each for the hash of such a
+ * state, the most recent first. A hit costs a single read. Entries are written
+ * to a temporary file that is then renamed, so concurrent runs never see half
+ * an entry. When two runs add a variant at the same time, one of them is lost,
+ * which only costs a miss later.
+ * 
+ */
+public class GenerationCache {
+    private static final String      GENERATOR_VERSION = generatorVersion();
+    private static final Charset     UTF_8             = Charset.forName( "UTF-8" );
+    private static final int         MAGIC             = 0x42474743;
+    private static final int         MAX_VARIANTS      = 4;
+
+    private final File               directory;
+    private final String             options;
+    private final Map<Table, String> tableHashes       = new ConcurrentHashMap<Table, String>();
+    private final AtomicInteger      hits              = new AtomicInteger();
+    private final AtomicInteger      misses            = new AtomicInteger();
+
+    /**
+     * @param directory
+     *            where the cache is kept, created when missing
+     * @param options
+     *            the options that change the generated files
+     */
+    public GenerationCache( String directory, String options ) {
+        this.directory = new File( directory );
+        this.options = options;
+    }
+
+    /**
+     * Writes the files of an artifact from the cache, through GenUtil like the
+     * generators do.
+     * 
+     * @param kind
+     *            a per-table kind
+     * @param table
+     * @return the paths of the files written, or null if the cache has no
+     *         matching entry and the artifact must be generated.
+     */
+    public List<String> load( ArtifactKind kind, Table table ) {
+        File file = getFile( kind, table );
+        Entry entry = file == null ? null : Entry.read( file );
+        List<String> contents = entry == null ? null : entry.variants.get( getState( entry.paths ) );
+        if ( contents == null ) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        for ( int i = 0; i < entry.paths.size(); i++ ) {
+            GenUtil.writeToFile( entry.paths.get( i ), contents.get( i ) );
+            // already in the cache, don't keep it for store()
+            GenUtil.takeCaptured( entry.paths.get( i ) );
+        }
+        hits.incrementAndGet();
+        return entry.paths;
+    }
+
+    /**
+     * Adds the files of an artifact that was just generated. Their content is
+     * taken from what GenUtil captured while they were written. Failures are
+     * printed and otherwise ignored, as the files were generated anyway.
+     * 
+     * @param kind
+     *            a per-table kind
+     * @param table
+     * @param paths
+     *            the files the artifact wrote
+     */
+    public void store( ArtifactKind kind, Table table, List<String> paths ) {
+        File file = getFile( kind, table );
+        if ( file == null ) {
+            return;
+        }
+
+        List<String> contents = new ArrayList<String>();
+        for ( String path : paths ) {
+            String content = GenUtil.takeCaptured( path );
+            if ( content == null ) {
+                return;
+            }
+            contents.add( content );
+        }
+
+        Entry entry = Entry.read( file );
+        if ( entry == null || !entry.paths.equals( paths ) ) {
+            entry = new Entry( paths );
+        }
+        entry.add( getState( paths ), contents );
+
+        try {
+            entry.write( file );
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return a summary of how many artifacts were loaded and generated.
+     */
+    public String getCounts() {
+        return hits.get() + " files loaded from the generation cache, " + misses.get() + " generated.";
+    }
+
+    /**
+     * @return the entry file of an artifact, or null if the generator version
+     *         is unknown. The entries are spread over 256 directories by the
+     *         first two characters of their key.
+     */
+    private File getFile( ArtifactKind kind, Table table ) {
+        if ( GENERATOR_VERSION == null ) {
+            return null;
+        }
+
+        String tableHash = tableHashes.get( table );
+        if ( tableHash == null ) {
+            tableHash = toHex( digest().digest( ModelCache.encode( table ) ) );
+            tableHashes.put( table, tableHash );
+        }
+
+        MessageDigest md = digest();
+        md.update( ( GENERATOR_VERSION + "\n" + options + "\n" + kind.name() + "\n" + tableHash ).getBytes( UTF_8 ) );
+        String key = toHex( md.digest() );
+        return new File( new File( directory, key.substring( 0, 2 ) ), key.substring( 2 ) );
+    }
+
+    /**
+     * @return the hash of the imports and protected code that the files have
+     *         below the output root, which the generators keep.
+     */
+    private static String getState( List<String> paths ) {
+        MessageDigest md = digest();
+        for ( String path : paths ) {
+            ExistingOutput existing = GenUtil.getExistingOutput( path );
+            md.update( ( path + "\0" ).getBytes( UTF_8 ) );
+            for ( String line : existing.getImportLines() ) {
+                md.update( ( line + "\n" ).getBytes( UTF_8 ) );
+            }
+            md.update( (byte) 0 );
+            for ( String line : existing.getProtectedLines() ) {
+                md.update( line.getBytes( UTF_8 ) );
+            }
+            md.update( (byte) 0 );
+        }
+        return toHex( md.digest() );
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static String toHex( byte[] bytes ) {
+        StringBuilder sb = new StringBuilder();
+        for ( byte b : bytes ) {
+            sb.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) );
+            sb.append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the hash of BatGen's version and the classes that make up the
+     *         per-table generators and the model, or null if they can't be
+     *         read.
+     */
+    private static String generatorVersion() {
+        return ModelCache.hashClasses( Generator.class, XmlGenerator.class, BoGenerator.class, DaoGenerator.class,
+                DomainGenerator.class, SqlGenerator.class, TestDaoGenerator.class, TestBoGenerator.class,
+                ImportGenerator.class, CodeWriter.class, GenUtil.class, Table.class, Column.class,
+                LengthColumn.class, DoubleColumn.class, BlobColumn.class, VirtualStringColumn.class,
+                IndexNode.class, ForeignNode.class, FieldType.class, ModelCache.class, GenerationCache.class );
+    }
+
+    /**
+     * The paths of the files of an artifact and their content for each state
+     * of the previous output.
+     */
+    private static class Entry {
+        private final List<String>              paths;
+        private final Map<String, List<String>> variants = new LinkedHashMap<String, List<String>>();
+
+        private Entry( List<String> paths ) {
+            this.paths = paths;
+        }
+
+        /**
+         * Makes the content the first variant, dropping the oldest ones.
+         */
+        private void add( String state, List<String> contents ) {
+            Map<String, List<String>> previous = new LinkedHashMap<String, List<String>>( variants );
+            variants.clear();
+            variants.put( state, contents );
+            for ( Map.Entry<String, List<String>> variant : previous.entrySet() ) {
+                if ( variants.size() < MAX_VARIANTS && !variants.containsKey( variant.getKey() ) ) {
+                    variants.put( variant.getKey(), variant.getValue() );
+                }
+            }
+        }
+
+        /**
+         * @return the entry, or null if it is missing or can't be read.
+         */
+        private static Entry read( File file ) {
+            byte[] bytes;
+            long startTime = System.nanoTime();
+            try {
+                bytes = Files.readAllBytes( file.toPath() );
+            }
+            catch ( IOException e ) {
+                // not in the cache
+                return null;
+            }
+            Metrics.fileRead( bytes.length, System.nanoTime() - startTime );
+
+            // the checksum of everything before it comes last
+            int length = bytes.length - 8;
+            if ( length < 12 || ByteBuffer.wrap( bytes, length, 8 ).getLong() != checksum( bytes, length ) ) {
+                return null;
+            }
+
+            try {
+                DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes, 0, length ) );
+                if ( in.readInt() != MAGIC ) {
+                    return null;
+                }
+
+                List<String> paths = new ArrayList<String>();
+                int count = in.readInt();
+                for ( int i = 0; i < count; i++ ) {
+                    paths.add( readString( in ) );
+                }
+
+                Entry entry = new Entry( paths );
+                int variants = in.readInt();
+                for ( int i = 0; i < variants; i++ ) {
+                    String state = readString( in );
+                    List<String> contents = new ArrayList<String>();
+                    for ( int j = 0; j < count; j++ ) {
+                        contents.add( readString( in ) );
+                    }
+                    entry.variants.put( state, contents );
+                }
+                return entry;
+            }
+            catch ( IOException e ) {
+                // not written by this version, as if it was missing
+                return null;
+            }
+        }
+
+        /**
+         * Writes a temporary file next to file and renames it, so readers see
+         * either the whole entry or the previous one.
+         */
+        private void write( File file ) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream( bytes );
+            out.writeInt( MAGIC );
+            out.writeInt( paths.size() );
+            for ( String path : paths ) {
+                writeString( out, path );
+            }
+            out.writeInt( variants.size() );
+            for ( Map.Entry<String, List<String>> variant : variants.entrySet() ) {
+                writeString( out, variant.getKey() );
+                for ( String content : variant.getValue() ) {
+                    writeString( out, content );
+                }
+            }
+            out.writeLong( checksum( bytes.toByteArray(), bytes.size() ) );
+            out.close();
+
+            File dir = file.getParentFile();
+            if ( !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory() ) {
+                throw new IOException( "Cannot create " + dir );
+            }
+
+            long startTime = System.nanoTime();
+            File tempFile = File.createTempFile( ".batgen", ".tmp", dir );
+            try {
+                Files.write( tempFile.toPath(), bytes.toByteArray() );
+                Files.move( tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE );
+                tempFile = null;
+            }
+            finally {
+                if ( tempFile != null ) {
+                    tempFile.delete();
+                }
+            }
+            Metrics.fileWritten( bytes.size(), System.nanoTime() - startTime );
+        }
+
+        private static long checksum( byte[] bytes, int length ) {
+            CRC32 crc = new CRC32();
+            crc.update( bytes, 0, length );
+            return crc.getValue();
+        }
+
+        private static void writeString( DataOutputStream out, String value ) throws IOException {
+            byte[] bytes = value.getBytes( UTF_8 );
+            out.writeInt( bytes.length );
+            out.write( bytes );
+        }
+
+        private static String readString( DataInputStream in ) throws IOException {
+            int length = in.readInt();
+            if ( length < 0 || length > in.available() ) {
+                throw new IOException( "Corrupt cache entry." );
+            }
+            byte[] bytes = new byte[length];
+            in.readFully( bytes );
+            return new String( bytes, UTF_8 );
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.io.File;
+import java.util.List;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The FlightEvents as JFR events. Only loaded on JVMs that have JFR. An event
+ * is only filled in when a recording has it enabled.
+ * 
+ */
+class JfrEvents extends FlightEvents {
+    private static final ThreadLocal<GenerateEvent> CURRENT = new ThreadLocal<GenerateEvent>();
+
+    @Name( "org.batgen.Parse" )
+    @Label( "Parse Config File" )
+    @Category( "BatGen" )
+    @Description( "Tokenizing and parsing a config file" )
+    static class ParseEvent extends Event {
+        @Label( "Config File" )
+        String configFile;
+
+        @Label( "Table" )
+        String table;
+
+        @Label( "Size" )
+        @DataAmount
+        long   size;
+    }
+
+    @Name( "org.batgen.Generate" )
+    @Label( "Generate Artifact" )
+    @Category( "BatGen" )
+    @Description( "Building an artifact, by its generator or from the generation cache" )
+    static class GenerateEvent extends Event {
+        @Label( "Artifact" )
+        String  artifact;
+
+        @Label( "Table" )
+        String  table;
+
+        @Label( "Path" )
+        String  path;
+
+        @Label( "Size" )
+        @Description( "The size of the files written" )
+        @DataAmount
+        long    size;
+
+        @Label( "Cached" )
+        boolean cached;
+    }
+
+    @Name( "org.batgen.ReadProtected" )
+    @Label( "Read Protected Code" )
+    @Category( "BatGen" )
+    @Description( "Looking up the imports and protected code of a previously generated file" )
+    static class ReadEvent extends Event {
+        @Label( "Table" )
+        String table;
+
+        @Label( "Path" )
+        String path;
+
+        @Label( "Size" )
+        @Description( "The size of the imports and protected code" )
+        @DataAmount
+        long   size;
+    }
+
+    @Name( "org.batgen.Write" )
+    @Label( "Write Generated File" )
+    @Category( "BatGen" )
+    @Description( "Writing a generated file, from opening it until it is complete" )
+    static class WriteEvent extends Event {
+        @Label( "Table" )
+        String table;
+
+        @Label( "Path" )
+        String path;
+
+        @Label( "Size" )
+        @DataAmount
+        long   size;
+    }
+
+    @Override
+    Object startParse( String configFile ) {
+        ParseEvent event = new ParseEvent();
+        if ( !event.isEnabled() ) {
+            return null;
+        }
+        event.configFile = configFile;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void finishParse( Object event, String table ) {
+        ParseEvent parse = (ParseEvent) event;
+        parse.end();
+        parse.table = table;
+        // 0 for configs that were given as readers
+        parse.size = new File( parse.configFile ).length();
+        parse.commit();
+    }
+
+    @Override
+    Object startGenerate( String artifact, String table ) {
+        GenerateEvent event = new GenerateEvent();
+        if ( !event.isEnabled() ) {
+            return null;
+        }
+        event.artifact = artifact;
+        event.table = table;
+        event.begin();
+        CURRENT.set( event );
+        return event;
+    }
+
+    @Override
+    void finishGenerate( Object event, List<String> paths, boolean cached ) {
+        GenerateEvent generate = (GenerateEvent) event;
+        generate.end();
+        CURRENT.remove();
+        StringBuilder sb = new StringBuilder();
+        for ( String path : paths ) {
+            sb.append( sb.length() == 0 ? "" : ", " ).append( path );
+        }
+        generate.path = sb.toString();
+        generate.cached = cached;
+        generate.commit();
+    }
+
+    @Override
+    Object startRead( String path ) {
+        ReadEvent event = new ReadEvent();
+        if ( !event.isEnabled() ) {
+            return null;
+        }
+        event.path = path;
+        event.table = getTable();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void finishRead( Object event, List<String> importLines, List<String> protectedLines ) {
+        ReadEvent read = (ReadEvent) event;
+        read.end();
+        for ( String line : importLines ) {
+            read.size += line.length() + 1;
+        }
+        for ( String line : protectedLines ) {
+            read.size += line.length();
+        }
+        read.commit();
+    }
+
+    @Override
+    Object startWrite( String path ) {
+        WriteEvent event = new WriteEvent();
+        if ( !event.isEnabled() ) {
+            return null;
+        }
+        event.path = path;
+        event.table = getTable();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void finishWrite( Object event, long bytes ) {
+        WriteEvent write = (WriteEvent) event;
+        write.end();
+        write.size = bytes;
+        write.commit();
+
+        GenerateEvent generate = CURRENT.get();
+        if ( generate != null ) {
+            generate.size += bytes;
+        }
+    }
+
+    /**
+     * @return the table of the artifact built on this thread, or null.
+     */
+    private static String getTable() {
+        GenerateEvent generate = CURRENT.get();
+        return generate != null ? generate.table : null;
+    }
+}
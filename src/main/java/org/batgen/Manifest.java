@@ -0,0 +1,405 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.batgen.generators.GenUtil;
+
+/**
+ * Records the inputs and outputs of a generation run so that a later run can
+ * skip the tables whose config file, generator version and generated files are
+ * all unchanged.
+ * 
+ * The manifest is a plain text file with one tab separated entry per line. The
+ * output lines following a config line belong to that config file, the output
+ * lines following the schema line are the files generated from all tables.
+ * 
+ */
+public class Manifest {
+    public static final String                       FILE_NAME     = ".batgen-manifest";
+
+    private static final String                      VERSION       = "version";
+    private static final String                      SCHEMA        = "schema";
+    private static final String                      CONFIG        = "config";
+    private static final String                      OUTPUT        = "output";
+
+    private String                                   version;
+    private String                                   schemaHash;
+    private List<String>                             runConfigs    = new ArrayList<String>();
+    private TreeMap<String, String>                  configHashes  = new TreeMap<String, String>();
+    private TreeMap<String, TreeMap<String, String>> outputs       = new TreeMap<String, TreeMap<String, String>>();
+    private TreeMap<String, String>                  schemaOutputs = new TreeMap<String, String>();
+
+    /**
+     * @param version
+     *            the generator version and every option that changes the
+     *            generated files.
+     */
+    public Manifest( String version ) {
+        this.version = version;
+    }
+
+    /**
+     * Adds a config file of the current run and records its hash.
+     * 
+     * @param configFile
+     */
+    public void addConfig( String configFile ) {
+        runConfigs.add( configFile );
+        configHashes.put( configFile, hash( configFile ) );
+        schemaHash = null;
+    }
+
+    /**
+     * Records the files generated from a config file.
+     * 
+     * @param configFile
+     * @param paths
+     */
+    public void addOutputs( String configFile, List<String> paths ) {
+        outputs.put( configFile, hashAll( paths ) );
+    }
+
+    /**
+     * Records the files generated from all tables together.
+     * 
+     * @param paths
+     */
+    public void addSchemaOutputs( List<String> paths ) {
+        schemaOutputs = hashAll( paths );
+    }
+
+    /**
+     * Keeps the outputs of a config file that was not regenerated.
+     * 
+     * @param previous
+     * @param configFile
+     */
+    public void copyOutputs( Manifest previous, String configFile ) {
+        outputs.put( configFile, previous.outputs.get( configFile ) );
+    }
+
+    /**
+     * Keeps the entries of config files that were not part of this run, so a
+     * run over a subset of the files does not invalidate the others. Entries of
+     * config files that no longer exist are dropped.
+     * 
+     * @param previous
+     * @return the generated files of the config files that no longer exist,
+     *         limited to the files that are still exactly as generated.
+     */
+    public List<String> merge( Manifest previous ) {
+        List<String> orphans = new ArrayList<String>();
+
+        if ( previous == null ) {
+            return orphans;
+        }
+        for ( Map.Entry<String, String> entry : previous.configHashes.entrySet() ) {
+            String configFile = entry.getKey();
+            Map<String, String> paths = previous.outputs.get( configFile );
+            if ( configHashes.containsKey( configFile ) || paths == null ) {
+                continue;
+            }
+
+            if ( !new File( configFile ).isFile() ) {
+                for ( Map.Entry<String, String> path : paths.entrySet() ) {
+                    if ( path.getValue().equals( hashOutput( path.getKey() ) ) && !isGenerated( path.getKey() ) ) {
+                        orphans.add( path.getKey() );
+                    }
+                }
+            }
+            else if ( version.equals( previous.version ) ) {
+                configHashes.put( configFile, entry.getValue() );
+                outputs.put( configFile, previous.outputs.get( configFile ) );
+            }
+        }
+        return orphans;
+    }
+
+    /**
+     * @return true if the file was generated by this run.
+     */
+    private boolean isGenerated( String path ) {
+        if ( schemaOutputs.containsKey( path ) ) {
+            return true;
+        }
+        for ( Map<String, String> paths : outputs.values() ) {
+            if ( paths != null && paths.containsKey( path ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the previous run generated this config file with the
+     *         same content and version, and none of its generated files were
+     *         changed or removed since.
+     */
+    public boolean isUpToDate( Manifest previous, String configFile ) {
+        if ( previous == null || !version.equals( previous.version ) ) {
+            return false;
+        }
+
+        String hash = configHashes.get( configFile );
+        if ( hash == null || !hash.equals( previous.configHashes.get( configFile ) ) ) {
+            return false;
+        }
+
+        return isIntact( previous.outputs.get( configFile ) );
+    }
+
+    /**
+     * @return true if every config file of this run is up to date and the
+     *         previous run had the same set of files, so the files generated
+     *         from all tables are up to date as well.
+     */
+    public boolean isUpToDate( Manifest previous ) {
+        if ( previous == null || !getSchemaHash().equals( previous.schemaHash ) ) {
+            return false;
+        }
+
+        for ( String configFile : runConfigs ) {
+            if ( !isUpToDate( previous, configFile ) ) {
+                return false;
+            }
+        }
+
+        return isIntact( previous.schemaOutputs );
+    }
+
+    /**
+     * Reads a manifest written by a previous run.
+     * 
+     * @param fileName
+     * @return the manifest, or null if there is none.
+     */
+    public static Manifest read( String fileName ) {
+        Manifest manifest = null;
+        BufferedReader br = null;
+
+        try {
+            br = new BufferedReader( new FileReader( fileName ) );
+            TreeMap<String, String> current = null;
+            String line = br.readLine();
+
+            while ( line != null ) {
+                String[] parts = line.split( "\t" );
+
+                if ( parts.length == 2 && VERSION.equals( parts[0] ) ) {
+                    manifest = new Manifest( parts[1] );
+                }
+                else if ( manifest == null ) {
+                    // not a manifest we know how to read
+                    return null;
+                }
+                else if ( parts.length == 2 && SCHEMA.equals( parts[0] ) ) {
+                    manifest.schemaHash = parts[1];
+                    current = manifest.schemaOutputs;
+                }
+                else if ( parts.length == 3 && CONFIG.equals( parts[0] ) ) {
+                    manifest.configHashes.put( parts[1], parts[2] );
+                    current = new TreeMap<String, String>();
+                    manifest.outputs.put( parts[1], current );
+                }
+                else if ( parts.length == 3 && OUTPUT.equals( parts[0] ) && current != null ) {
+                    current.put( parts[1], parts[2] );
+                }
+                line = br.readLine();
+            }
+        }
+        catch ( FileNotFoundException e ) {
+            // Ignored, there was no previous run.
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+            return null;
+        }
+        finally {
+            close( br );
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest, sorted by path so the file is stable between runs.
+     * 
+     * @param fileName
+     */
+    public void write( String fileName ) {
+        try {
+            PrintWriter pw = new PrintWriter( fileName );
+
+            pw.print( VERSION + "\t" + version + "\n" );
+            pw.print( SCHEMA + "\t" + getSchemaHash() + "\n" );
+            writeOutputs( pw, schemaOutputs );
+
+            for ( Map.Entry<String, String> entry : configHashes.entrySet() ) {
+                pw.print( CONFIG + "\t" + entry.getKey() + "\t" + entry.getValue() + "\n" );
+                writeOutputs( pw, outputs.get( entry.getKey() ) );
+            }
+            pw.close();
+        }
+        catch ( FileNotFoundException e ) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeOutputs( PrintWriter pw, Map<String, String> paths ) {
+        if ( paths == null ) {
+            return;
+        }
+        for ( Map.Entry<String, String> entry : paths.entrySet() ) {
+            if ( entry.getValue() == null ) {
+                entry.setValue( hashOutput( entry.getKey() ) );
+            }
+            pw.print( OUTPUT + "\t" + entry.getKey() + "\t" + entry.getValue() + "\n" );
+        }
+    }
+
+    /**
+     * The schema hash covers the generator version and the ordered list of
+     * config files with their hashes. It changes whenever a table is added,
+     * removed, reordered or edited.
+     */
+    private String getSchemaHash() {
+        if ( schemaHash == null ) {
+            StringBuilder sb = new StringBuilder( version );
+            for ( String configFile : runConfigs ) {
+                sb.append( "\n" ).append( configFile ).append( "\t" ).append( configHashes.get( configFile ) );
+            }
+            schemaHash = toHex( digest().digest( sb.toString().getBytes() ) );
+        }
+        return schemaHash;
+    }
+
+    private static boolean isIntact( Map<String, String> paths ) {
+        if ( paths == null || paths.isEmpty() ) {
+            return false;
+        }
+        for ( Map.Entry<String, String> entry : paths.entrySet() ) {
+            if ( !entry.getValue().equals( hashOutput( entry.getKey() ) ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The files are hashed when the manifest is written, once they have
+     * replaced the previous output.
+     */
+    private static TreeMap<String, String> hashAll( List<String> paths ) {
+        TreeMap<String, String> hashes = new TreeMap<String, String>();
+        for ( String path : paths ) {
+            hashes.put( path, null );
+        }
+        return hashes;
+    }
+
+    /**
+     * @return the hash of a generated file, which is relative to the output
+     *         root.
+     */
+    private static String hashOutput( String path ) {
+        return hash( GenUtil.toFile( path ).getPath() );
+    }
+
+    /**
+     * @return the SHA-1 of the content of the file as hex, or an empty string
+     *         if the file can't be read.
+     */
+    public static String hash( String fileName ) {
+        MessageDigest md = digest();
+        InputStream in = null;
+        long startTime = System.nanoTime();
+        long length = 0;
+
+        try {
+            in = new FileInputStream( new File( fileName ) );
+            byte[] buffer = new byte[8192];
+            int count = in.read( buffer );
+            while ( count != -1 ) {
+                md.update( buffer, 0, count );
+                length += count;
+                count = in.read( buffer );
+            }
+        }
+        catch ( IOException e ) {
+            return "";
+        }
+        finally {
+            close( in );
+        }
+
+        Metrics.fileRead( length, System.nanoTime() - startTime );
+        return toHex( md.digest() );
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static String toHex( byte[] bytes ) {
+        StringBuilder sb = new StringBuilder();
+        for ( byte b : bytes ) {
+            sb.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) );
+            sb.append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return sb.toString();
+    }
+
+    private static void close( Closeable closeable ) {
+        if ( closeable == null ) {
+            return;
+        }
+        try {
+            closeable.close();
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wall time, allocation and file I/O of the phases of a generation run: parsing
+ * each file, each generator for each table, the foreign keys and the files
+ * built from all tables. File reads and writes are counted for the phase that
+ * is running on the current thread. At the end of the run the phases are
+ * summed up per phase and per table in a JSON report.
+ * 
+ */
+public class Metrics {
+    /**
+     * How many tables are listed in the slowestTables section of the report.
+     */
+    public static final int                                 SLOWEST_TABLES = 10;
+
+    private static final ThreadLocal<Phase>                 CURRENT        = new ThreadLocal<Phase>();
+    private static final com.sun.management.ThreadMXBean    ALLOCATION     = allocationBean();
+
+    private final boolean                                   enabled;
+    private final long                                      startTime      = System.nanoTime();
+    private final List<Phase>                               phases         = new ArrayList<Phase>();
+
+    /**
+     * @param enabled
+     *            when false, nothing is measured and start() returns null.
+     */
+    public Metrics( boolean enabled ) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts measuring a phase on the current thread. File reads and writes on
+     * this thread are counted for it until stop().
+     * 
+     * @param name
+     *            the phase, e.g. "parse" or the generator
+     * @return the phase to pass to stop(), or null if metrics are disabled
+     */
+    public Phase start( String name ) {
+        if ( !enabled ) {
+            return null;
+        }
+
+        Phase phase = new Phase( name, CURRENT.get() );
+        CURRENT.set( phase );
+        return phase;
+    }
+
+    /**
+     * Stops measuring a phase. Must be called on the thread that started it.
+     * 
+     * @param phase
+     *            the result of start(), may be null
+     * @param table
+     *            the class name of the table the phase worked on, or null
+     */
+    public void stop( Phase phase, String table ) {
+        if ( phase == null ) {
+            return;
+        }
+
+        phase.stop( table );
+        if ( phase.parent != null ) {
+            CURRENT.set( phase.parent );
+        }
+        else {
+            CURRENT.remove();
+        }
+
+        synchronized ( phases ) {
+            phases.add( phase );
+        }
+    }
+
+    /**
+     * @return the phase measured on the current thread, or null.
+     */
+    public static Phase current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Counts the file I/O of the current thread for a phase started on another
+     * thread, e.g. by a worker of that phase. Undone with detach().
+     * 
+     * @param phase
+     *            may be null
+     */
+    public static void attach( Phase phase ) {
+        if ( phase != null ) {
+            CURRENT.set( phase );
+        }
+    }
+
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Counts a file read for the phase running on the current thread.
+     * 
+     * @param bytes
+     * @param nanos
+     *            the time spent reading, or 0 if the read is part of other work
+     */
+    public static void fileRead( long bytes, long nanos ) {
+        Phase phase = CURRENT.get();
+        if ( phase != null ) {
+            phase.filesRead.incrementAndGet();
+            phase.bytesRead.addAndGet( bytes );
+            phase.ioNanos.addAndGet( nanos );
+        }
+    }
+
+    /**
+     * Counts a file written for the phase running on the current thread.
+     * 
+     * @param bytes
+     * @param nanos
+     *            the time spent writing the file out
+     */
+    public static void fileWritten( long bytes, long nanos ) {
+        Phase phase = CURRENT.get();
+        if ( phase != null ) {
+            phase.filesWritten.incrementAndGet();
+            phase.bytesWritten.addAndGet( bytes );
+            phase.ioNanos.addAndGet( nanos );
+        }
+    }
+
+    /**
+     * Writes the JSON report of all phases stopped so far.
+     * 
+     * @param fileName
+     */
+    public void writeReport( String fileName ) {
+        PrintWriter pw = null;
+        try {
+            pw = new PrintWriter( fileName );
+            pw.write( toJson() );
+        }
+        catch ( FileNotFoundException e ) {
+            throw new RuntimeException( "Cannot write metrics to " + fileName, e );
+        }
+        finally {
+            if ( pw != null )
+                pw.close();
+        }
+    }
+
+    /**
+     * @return the report: the totals of the run, the totals per phase, the
+     *         phases of each table and the slowest tables.
+     */
+    public String toJson() {
+        long wallTime = System.nanoTime() - startTime;
+        Totals total = new Totals();
+        Map<String, Totals> byPhase = new LinkedHashMap<String, Totals>();
+        Map<String, Totals> byTable = new TreeMap<String, Totals>();
+        Map<String, Map<String, Totals>> tablePhases = new TreeMap<String, Map<String, Totals>>();
+
+        synchronized ( phases ) {
+            for ( Phase phase : phases ) {
+                total.add( phase );
+                get( byPhase, phase.name ).add( phase );
+
+                if ( phase.table != null ) {
+                    get( byTable, phase.table ).add( phase );
+
+                    Map<String, Totals> map = tablePhases.get( phase.table );
+                    if ( map == null ) {
+                        map = new LinkedHashMap<String, Totals>();
+                        tablePhases.put( phase.table, map );
+                    }
+                    get( map, phase.name ).add( phase );
+                }
+            }
+        }
+
+        List<Map.Entry<String, Totals>> slowest = new ArrayList<Map.Entry<String, Totals>>( byTable.entrySet() );
+        Collections.sort( slowest, new Comparator<Map.Entry<String, Totals>>() {
+            public int compare( Map.Entry<String, Totals> a, Map.Entry<String, Totals> b ) {
+                return Long.compare( b.getValue().nanos, a.getValue().nanos );
+            }
+        } );
+
+        StringBuilder sb = new StringBuilder();
+        sb.append( "{\n" );
+        sb.append( "  \"version\": " + quote( BatGen.VERSION ) + ",\n" );
+        sb.append( "  \"wallMillis\": " + millis( wallTime ) + ",\n" );
+        sb.append( "  \"allocationMeasured\": " + ( ALLOCATION != null ) + ",\n" );
+        sb.append( "  \"total\": " );
+        total.appendTo( sb );
+        sb.append( ",\n" );
+
+        sb.append( "  \"phases\": {" );
+        appendAll( sb, byPhase, "    " );
+        sb.append( "},\n" );
+
+        sb.append( "  \"tables\": {" );
+        String separator = "\n";
+        for ( Map.Entry<String, Map<String, Totals>> entry : tablePhases.entrySet() ) {
+            sb.append( separator + "    " + quote( entry.getKey() ) + ": {\n" );
+            sb.append( "      \"total\": " );
+            byTable.get( entry.getKey() ).appendTo( sb );
+            sb.append( ",\n      \"phases\": {" );
+            appendAll( sb, entry.getValue(), "        " );
+            sb.append( "}\n    }" );
+            separator = ",\n";
+        }
+        sb.append( tablePhases.isEmpty() ? "},\n" : "\n  },\n" );
+
+        sb.append( "  \"slowestTables\": [" );
+        separator = "\n";
+        for ( int i = 0; i < slowest.size() && i < SLOWEST_TABLES; i++ ) {
+            Map.Entry<String, Totals> entry = slowest.get( i );
+            sb.append( separator + "    { \"table\": " + quote( entry.getKey() ) + ", \"millis\": "
+                    + millis( entry.getValue().nanos ) + " }" );
+            separator = ",\n";
+        }
+        sb.append( slowest.isEmpty() ? "]\n" : "\n  ]\n" );
+        sb.append( "}\n" );
+
+        return sb.toString();
+    }
+
+    private static void appendAll( StringBuilder sb, Map<String, Totals> totals, String indent ) {
+        String separator = "\n";
+        for ( Map.Entry<String, Totals> entry : totals.entrySet() ) {
+            sb.append( separator + indent + quote( entry.getKey() ) + ": " );
+            entry.getValue().appendTo( sb );
+            separator = ",\n";
+        }
+        if ( !totals.isEmpty() ) {
+            sb.append( "\n" + indent.substring( 2 ) );
+        }
+    }
+
+    private static Totals get( Map<String, Totals> map, String key ) {
+        Totals totals = map.get( key );
+        if ( totals == null ) {
+            totals = new Totals();
+            map.put( key, totals );
+        }
+        return totals;
+    }
+
+    private static String millis( long nanos ) {
+        return String.format( Locale.ROOT, "%.3f", nanos / 1000000.0 );
+    }
+
+    private static String quote( String value ) {
+        StringBuilder sb = new StringBuilder( "\"" );
+        for ( int i = 0; i < value.length(); i++ ) {
+            char c = value.charAt( i );
+            if ( c == '"' || c == '\\' ) {
+                sb.append( '\\' ).append( c );
+            }
+            else if ( c < ' ' ) {
+                sb.append( String.format( "\\u%04x", (int) c ) );
+            }
+            else {
+                sb.append( c );
+            }
+        }
+        return sb.append( '"' ).toString();
+    }
+
+    /**
+     * @return the bean reporting the bytes allocated per thread, or null if
+     *         this JVM doesn't expose it.
+     */
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            Object bean = ManagementFactory.getThreadMXBean();
+            if ( bean instanceof com.sun.management.ThreadMXBean ) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                if ( threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ) {
+                    return threads;
+                }
+            }
+        }
+        catch ( LinkageError e ) {
+            // not a HotSpot compatible JVM
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        if ( ALLOCATION == null ) {
+            return 0;
+        }
+        return ALLOCATION.getThreadAllocatedBytes( Thread.currentThread().getId() );
+    }
+
+    /**
+     * One measured phase. Returned by start() and passed back to stop().
+     */
+    public static class Phase {
+        private final String     name;
+        private final Phase      parent;
+        private final long       startTime;
+        private final long       startAllocated;
+        private String           table;
+        private long             nanos;
+        private long             allocated;
+
+        private final AtomicLong bytesRead    = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+        private final AtomicLong filesRead    = new AtomicLong();
+        private final AtomicLong filesWritten = new AtomicLong();
+        private final AtomicLong ioNanos      = new AtomicLong();
+
+        private Phase( String name, Phase parent ) {
+            this.name = name;
+            this.parent = parent;
+            startAllocated = allocatedBytes();
+            startTime = System.nanoTime();
+        }
+
+        private void stop( String table ) {
+            nanos = System.nanoTime() - startTime;
+            allocated = allocatedBytes() - startAllocated;
+            this.table = table;
+        }
+    }
+
+    /**
+     * The sum of a number of phases.
+     */
+    private static class Totals {
+        private int  count;
+        private long nanos;
+        private long allocated;
+        private long bytesRead;
+        private long bytesWritten;
+        private long filesRead;
+        private long filesWritten;
+        private long ioNanos;
+
+        private void add( Phase phase ) {
+            count++;
+            nanos += phase.nanos;
+            allocated += phase.allocated;
+            bytesRead += phase.bytesRead.get();
+            bytesWritten += phase.bytesWritten.get();
+            filesRead += phase.filesRead.get();
+            filesWritten += phase.filesWritten.get();
+            ioNanos += phase.ioNanos.get();
+        }
+
+        private void appendTo( StringBuilder sb ) {
+            sb.append( "{ \"count\": " + count );
+            sb.append( ", \"millis\": " + millis( nanos ) );
+            if ( ALLOCATION != null ) {
+                sb.append( ", \"allocatedBytes\": " + allocated );
+            }
+            sb.append( ", \"filesRead\": " + filesRead );
+            sb.append( ", \"bytesRead\": " + bytesRead );
+            sb.append( ", \"filesWritten\": " + filesWritten );
+            sb.append( ", \"bytesWritten\": " + bytesWritten );
+            sb.append( ", \"ioMillis\": " + millis( ioNanos ) + " }" );
+        }
+    }
+}
@@ -0,0 +1,550 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * A binary snapshot of the parsed tables, so that config files that did not
+ * change are loaded instead of tokenized and parsed again.
+ * 
+ * Each entry holds the SHA-1 of the config file it was parsed from and is only
+ * used for a file with exactly that content. The whole snapshot belongs to one
+ * parser version, the hash of the parser and model classes, and is ignored
+ * when that changes. A config file is read once and both hashed and parsed
+ * from the same bytes, so an entry always matches the content it was parsed
+ * from.
+ * 
+ */
+public class ModelCache {
+    public static final String       FILE_NAME      = ".batgen-model";
+
+    private static final int         MAGIC          = 0x4247534d;
+    private static final String      PARSER_VERSION = parserVersion();
+
+    private static final byte        COLUMN         = 0;
+    private static final byte        LENGTH         = 1;
+    private static final byte        DOUBLE         = 2;
+    private static final byte        BLOB           = 3;
+    private static final byte        VIRTUAL        = 4;
+
+    private static final int         KEY            = 1;
+    private static final int         REQUIRED       = 2;
+    private static final int         NO_SEQUENCE    = 4;
+    private static final int         SEARCH_ID      = 8;
+    private static final int         SYS_TIMESTAMP  = 16;
+
+    private final Map<String, Entry> entries        = new ConcurrentHashMap<String, Entry>();
+    private final AtomicInteger      hits           = new AtomicInteger();
+    private final AtomicInteger      misses         = new AtomicInteger();
+
+    /**
+     * Reads a snapshot. A missing or unreadable snapshot, or one written by a
+     * different parser version, gives an empty cache.
+     * 
+     * @param fileName
+     * @return the cache, never null
+     */
+    public static ModelCache read( String fileName ) {
+        ModelCache cache = new ModelCache();
+        if ( PARSER_VERSION == null || !new File( fileName ).isFile() ) {
+            return cache;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream( new BufferedInputStream( new FileInputStream( fileName ) ) );
+            if ( in.readInt() != MAGIC || !PARSER_VERSION.equals( in.readUTF() ) ) {
+                return cache;
+            }
+
+            Map<String, Entry> entries = new TreeMap<String, Entry>();
+            int count = in.readInt();
+            for ( int i = 0; i < count; i++ ) {
+                String configFile = in.readUTF();
+                byte[] hash = readBytes( in );
+                byte[] model = readBytes( in );
+                if ( in.readLong() != checksum( model ) ) {
+                    return cache;
+                }
+                entries.put( configFile, new Entry( hash, model ) );
+            }
+            cache.entries.putAll( entries );
+        }
+        catch ( IOException e ) {
+            // start over with an empty cache
+        }
+        finally {
+            close( in );
+        }
+
+        return cache;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file that then replaces fileName.
+     * Entries of config files that no longer exist are dropped. Nothing is
+     * written if the parser version is unknown.
+     * 
+     * @param fileName
+     */
+    public void write( String fileName ) {
+        if ( PARSER_VERSION == null ) {
+            return;
+        }
+
+        File file = new File( fileName ).getAbsoluteFile();
+        File tempFile = null;
+        DataOutputStream out = null;
+        try {
+            tempFile = File.createTempFile( ".batgen", ".tmp", file.getParentFile() );
+            out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ) ) );
+            out.writeInt( MAGIC );
+            out.writeUTF( PARSER_VERSION );
+
+            Map<String, Entry> sorted = new TreeMap<String, Entry>();
+            for ( Map.Entry<String, Entry> entry : entries.entrySet() ) {
+                if ( new File( entry.getKey() ).isFile() ) {
+                    sorted.put( entry.getKey(), entry.getValue() );
+                }
+            }
+            out.writeInt( sorted.size() );
+            for ( Map.Entry<String, Entry> entry : sorted.entrySet() ) {
+                out.writeUTF( entry.getKey() );
+                writeBytes( out, entry.getValue().hash );
+                writeBytes( out, entry.getValue().model );
+                out.writeLong( checksum( entry.getValue().model ) );
+            }
+            out.close();
+            out = null;
+
+            Files.move( tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            tempFile = null;
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+        finally {
+            close( out );
+            if ( tempFile != null ) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the table of a config file, from the snapshot if the file has
+     * the same content as when it was last parsed, otherwise from the parser.
+     * Safe to call from several threads, each with its own parser.
+     * 
+     * @param parser
+     * @param configFile
+     * @return a new table, the caller may change it
+     */
+    public Table parse( Parser parser, String configFile ) {
+        byte[] content = readFile( configFile );
+        if ( content == null || PARSER_VERSION == null ) {
+            return parser.parse( configFile );
+        }
+
+        byte[] hash = sha1( content );
+        Entry entry = entries.get( configFile );
+        if ( entry != null && Arrays.equals( entry.hash, hash ) ) {
+            try {
+                Table table = decode( entry.model );
+                hits.incrementAndGet();
+                return table;
+            }
+            catch ( IOException e ) {
+                // not a snapshot we can read, parse the file
+            }
+        }
+
+        Table table = parser.parse( configFile, new InputStreamReader( new ByteArrayInputStream( content ),
+                Charset.defaultCharset() ) );
+        entries.put( configFile, new Entry( hash, encode( table ) ) );
+        misses.incrementAndGet();
+        return table;
+    }
+
+    /**
+     * Resets the counts of loaded and parsed tables.
+     */
+    public void resetCounts() {
+        hits.set( 0 );
+        misses.set( 0 );
+    }
+
+    /**
+     * @return a summary of how many tables were loaded and parsed.
+     */
+    public String getCounts() {
+        return hits.get() + " tables loaded from the model cache, " + misses.get() + " parsed.";
+    }
+
+    private static byte[] readFile( String fileName ) {
+        long startTime = System.nanoTime();
+        try {
+            byte[] content = Files.readAllBytes( new File( fileName ).toPath() );
+            Metrics.fileRead( content.length, System.nanoTime() - startTime );
+            return content;
+        }
+        catch ( IOException e ) {
+            // let the parser report it
+            return null;
+        }
+    }
+
+    static byte[] encode( Table table ) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+
+        try {
+            writeString( out, table.getComment() );
+            writeString( out, table.getDomName() );
+            writeString( out, table.getTableName() );
+
+            List<Column> columns = table.getColumns();
+            out.writeInt( columns.size() );
+            for ( Column column : columns ) {
+                writeColumn( out, column );
+            }
+
+            out.writeInt( table.getIndexList().size() );
+            for ( IndexNode index : table.getIndexList() ) {
+                writeString( out, index.getIndexName() );
+                out.writeInt( index.getColumnList().size() );
+                for ( Column column : index.getColumnList() ) {
+                    out.writeInt( indexOf( columns, column ) );
+                }
+            }
+
+            out.writeInt( table.getForeignKeyList().size() );
+            for ( ForeignNode node : table.getForeignKeyList() ) {
+                writeString( out, node.getFromTable() );
+                writeString( out, node.getFromField() );
+                writeString( out, node.getToTable() );
+                writeString( out, node.getToField() );
+            }
+        }
+        catch ( IOException e ) {
+            throw new IllegalStateException( e );
+        }
+
+        return bytes.toByteArray();
+    }
+
+    static Table decode( byte[] model ) throws IOException {
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( model ) );
+        Table table = new Table();
+
+        table.setComment( readString( in ) );
+        table.setDomName( readString( in ) );
+        table.setTableName( readString( in ) );
+
+        int count = in.readInt();
+        for ( int i = 0; i < count; i++ ) {
+            table.addColumn( readColumn( in ) );
+        }
+
+        count = in.readInt();
+        for ( int i = 0; i < count; i++ ) {
+            String indexName = readString( in );
+            List<Column> columns = new ArrayList<Column>();
+            int size = in.readInt();
+            for ( int j = 0; j < size; j++ ) {
+                columns.add( table.getColumn( in.readInt() ) );
+            }
+            table.addIndex( new IndexNode( indexName, columns ) );
+        }
+
+        count = in.readInt();
+        for ( int i = 0; i < count; i++ ) {
+            table.addForeignKey( new ForeignNode( readString( in ), readString( in ), readString( in ),
+                    readString( in ) ) );
+        }
+
+        // the key is already first, this only rebuilds the search list
+        table.setup();
+        return table;
+    }
+
+    private static void writeColumn( DataOutputStream out, Column column ) throws IOException {
+        if ( column instanceof DoubleColumn ) {
+            out.writeByte( DOUBLE );
+        }
+        else if ( column instanceof BlobColumn ) {
+            out.writeByte( BLOB );
+        }
+        else if ( column instanceof LengthColumn ) {
+            out.writeByte( LENGTH );
+        }
+        else if ( column instanceof VirtualStringColumn ) {
+            out.writeByte( VIRTUAL );
+        }
+        else {
+            out.writeByte( COLUMN );
+        }
+
+        writeString( out, column.getType().name() );
+        writeString( out, column.getFldName() );
+        writeString( out, column.getColName() );
+        writeString( out, column.getComments() );
+
+        int flags = 0;
+        flags |= column.isKey() ? KEY : 0;
+        flags |= column.isRequired() ? REQUIRED : 0;
+        flags |= column.isSequenceDisabled() ? NO_SEQUENCE : 0;
+        flags |= column.isSearchId() ? SEARCH_ID : 0;
+        flags |= column.isSysTimestamp() ? SYS_TIMESTAMP : 0;
+        out.writeByte( flags );
+
+        if ( column instanceof LengthColumn ) {
+            writeString( out, ( (LengthColumn) column ).getColLen() );
+        }
+        if ( column instanceof DoubleColumn ) {
+            writeString( out, ( (DoubleColumn) column ).getPrecision() );
+        }
+        if ( column instanceof VirtualStringColumn ) {
+            writeString( out, ( (VirtualStringColumn) column ).getColLen() );
+            writeString( out, ( (VirtualStringColumn) column ).getSqlCommand() );
+        }
+    }
+
+    private static Column readColumn( DataInputStream in ) throws IOException {
+        byte kind = in.readByte();
+        Column column;
+
+        if ( kind == DOUBLE ) {
+            column = new DoubleColumn();
+        }
+        else if ( kind == BLOB ) {
+            column = new BlobColumn();
+        }
+        else if ( kind == LENGTH ) {
+            column = new LengthColumn();
+        }
+        else if ( kind == VIRTUAL ) {
+            column = new VirtualStringColumn();
+        }
+        else if ( kind == COLUMN ) {
+            column = new Column();
+        }
+        else {
+            throw new IOException( "Unknown column kind " + kind );
+        }
+
+        try {
+            column.setType( FieldType.valueOf( readString( in ) ) );
+        }
+        catch ( IllegalArgumentException e ) {
+            throw new IOException( e );
+        }
+        column.setFldName( readString( in ) );
+        column.setColName( readString( in ) );
+        column.setComment( readString( in ) );
+
+        int flags = in.readByte();
+        if ( ( flags & KEY ) != 0 )
+            column.setKey();
+        if ( ( flags & REQUIRED ) != 0 )
+            column.setRequired();
+        if ( ( flags & NO_SEQUENCE ) != 0 )
+            column.setSequenceDisabled();
+        if ( ( flags & SEARCH_ID ) != 0 )
+            column.setSearchId();
+        if ( ( flags & SYS_TIMESTAMP ) != 0 )
+            column.setSysTimestamp();
+
+        if ( column instanceof LengthColumn ) {
+            ( (LengthColumn) column ).setColLen( readString( in ) );
+        }
+        if ( column instanceof DoubleColumn ) {
+            ( (DoubleColumn) column ).setPrecision( readString( in ) );
+        }
+        if ( column instanceof VirtualStringColumn ) {
+            ( (VirtualStringColumn) column ).setColLen( readString( in ) );
+            ( (VirtualStringColumn) column ).setSqlCommand( readString( in ) );
+        }
+        return column;
+    }
+
+    private static int indexOf( List<Column> columns, Column column ) {
+        for ( int i = 0; i < columns.size(); i++ ) {
+            if ( columns.get( i ) == column ) {
+                return i;
+            }
+        }
+        throw new IllegalStateException( "Index column " + column.getFldName() + " is not in its table." );
+    }
+
+    /**
+     * Strings are written as their UTF-8 length and bytes, -1 for null, so
+     * long comments have no length limit.
+     */
+    private static void writeString( DataOutputStream out, String value ) throws IOException {
+        if ( value == null ) {
+            out.writeInt( -1 );
+        }
+        else {
+            writeBytes( out, value.getBytes( "UTF-8" ) );
+        }
+    }
+
+    private static String readString( DataInputStream in ) throws IOException {
+        byte[] bytes = readBytes( in );
+        return bytes == null ? null : new String( bytes, "UTF-8" );
+    }
+
+    private static void writeBytes( DataOutputStream out, byte[] bytes ) throws IOException {
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    private static byte[] readBytes( DataInputStream in ) throws IOException {
+        int length = in.readInt();
+        if ( length == -1 ) {
+            return null;
+        }
+        if ( length < 0 || length > in.available() ) {
+            throw new IOException( "Corrupt model cache." );
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully( bytes );
+        return bytes;
+    }
+
+    private static long checksum( byte[] bytes ) {
+        CRC32 crc = new CRC32();
+        crc.update( bytes );
+        return crc.getValue();
+    }
+
+    private static byte[] sha1( byte[] bytes ) {
+        try {
+            return MessageDigest.getInstance( "SHA-1" ).digest( bytes );
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * @return the hash of BatGen's version and the classes that make up the
+     *         parser and the model, or null if they can't be read.
+     */
+    private static String parserVersion() {
+        return hashClasses( Parser.class, Tokenizer.class, Token.class, Table.class, Column.class,
+                LengthColumn.class, DoubleColumn.class, BlobColumn.class, VirtualStringColumn.class,
+                IndexNode.class, ForeignNode.class, FieldType.class, ModelCache.class );
+    }
+
+    /**
+     * @return the hash of BatGen's version and the bytecode of the classes, or
+     *         null if they can't be read.
+     */
+    static String hashClasses( Class<?>... classes ) {
+        try {
+            MessageDigest md = MessageDigest.getInstance( "SHA-1" );
+            md.update( BatGen.VERSION.getBytes( "UTF-8" ) );
+
+            for ( Class<?> type : classes ) {
+                String name = type.getName();
+                InputStream in = type.getResourceAsStream( name.substring( name.lastIndexOf( '.' ) + 1 ) + ".class" );
+                if ( in == null ) {
+                    return null;
+                }
+                try {
+                    byte[] buffer = new byte[8192];
+                    int count = in.read( buffer );
+                    while ( count != -1 ) {
+                        md.update( buffer, 0, count );
+                        count = in.read( buffer );
+                    }
+                }
+                finally {
+                    close( in );
+                }
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for ( byte b : md.digest() ) {
+                sb.append( String.format( "%02x", b ) );
+            }
+            return sb.toString();
+        }
+        catch ( IOException e ) {
+            return null;
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            return null;
+        }
+    }
+
+    private static void close( Closeable closeable ) {
+        try {
+            if ( closeable != null )
+                closeable.close();
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class Entry {
+        private final byte[] hash;
+        private final byte[] model;
+
+        private Entry( byte[] hash, byte[] model ) {
+            this.hash = hash;
+            this.model = model;
+        }
+    }
+}
@@ -29,25 +29,34 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.Reader;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.regex.Pattern;
 
 /**
  * A reusable parser class. You can instantiate once and run parse() on multiple
- * files.
+ * files. A parser keeps no state across files, the tables it returns are
+ * collected into a Schema by the caller. Separate instances may be used from
+ * separate threads.
  */
 public class Parser {
-    private static HashMap<String, Table> tableMap       = new HashMap<String, Table>();
-    private static ArrayList<ForeignNode>      foreignKeyList = new ArrayList<ForeignNode>();
-    private List<Column>                  indexList      = new ArrayList<Column>();
+    private List<Column>     indexList = new ArrayList<Column>();
 
-    private String                        fileName;
+    private String           fileName;
 
-    private Table                         table;
-    private Tokenizer                     tokenizer;
+    private Table            table;
+    private Tokenizer        tokenizer;
+    private Token            lastToken;
 
-    private boolean                       fStop;
+    private List<Diagnostic> diagnostics;
+    private int              diagnosticLine;
+
+    /**
+     * Thrown in place of the IllegalArgumentException of an error when
+     * diagnostics are collected, to leave the rest of the line.
+     */
+    private static class SkipLineException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
 
     /**
      * Initialize - initializes all global variables - this function must reset
@@ -56,16 +65,17 @@ public class Parser {
      * 
      * @param fileName
      *            the file to parse.
+     * @param br
+     *            the content of the file.
      */
-    private void initialize( String fileName ) {
+    private void initialize( String fileName, BufferedReader br ) {
 
         this.fileName = fileName;
         table = new Table();
+        lastToken = null;
+        diagnosticLine = 0;
 
-        BufferedReader br = getBufferedReader( fileName );
         tokenizer = new Tokenizer( br );
-
-        fStop = false;
     }
 
     /**
@@ -75,64 +85,146 @@ public class Parser {
      * @return table
      */
     public Table parse( String fileName ) {
+        this.fileName = fileName;
+        BufferedReader br = getBufferedReader( fileName );
+
+        // read while tokenizing, so the time is part of the parse
+        Metrics.fileRead( new File( fileName ).length(), 0 );
+        return parse( fileName, br );
+    }
+
+    /**
+     * Parse the content of a file, collecting its errors instead of stopping
+     * at the first one. After an error the parser goes on with the next line,
+     * each line reports at most one error.
+     * 
+     * @param fileName
+     *            the name used in the diagnostics
+     * @param reader
+     *            the content of the file
+     * @param diagnostics
+     *            receives the errors
+     * @return the table as far as it could be parsed
+     */
+    public Table parse( String fileName, Reader reader, List<Diagnostic> diagnostics ) {
+        this.diagnostics = diagnostics;
+        try {
+            return parse( fileName, reader );
+        }
+        finally {
+            this.diagnostics = null;
+        }
+    }
+
+    /**
+     * Parse the content of a file that was already read.
+     * 
+     * @param fileName
+     *            the name used in error messages
+     * @param reader
+     *            the content of the file
+     * @return table
+     */
+    public Table parse( String fileName, Reader reader ) {
+        Object event = FlightEvents.beginParse( fileName );
+        try {
+            return parseTable( fileName, reader );
+        }
+        finally {
+            FlightEvents.endParse( event, table != null ? table.getDomName() : null );
+        }
+    }
+
+    private Table parseTable( String fileName, Reader reader ) {
         boolean classSettings = false;
         boolean indexesSetting = false;
         boolean foreignSettings = false;
 
         this.fileName = fileName;
-        initialize( fileName );
+        if ( reader instanceof BufferedReader ) {
+            initialize( fileName, (BufferedReader) reader );
+        }
+        else {
+            initialize( fileName, new BufferedReader( reader ) );
+        }
 
         Token token = getNextToken();
 
         while ( token != null ) {
-            if ( isNewLine( token ) ) {
-                // do nothing
-            }
-            else if ( token.isComment() ) {
-                table.setComment( token.getValue() );
-            }
-            else if ( token.equals( "[Settings]" ) ) {
-                classSettings = true;
-                foreignSettings = false;
-                indexesSetting = false;
-            }
-            else if ( token.equals( "[Fields]" ) ) {
-                classSettings = false;
-                foreignSettings = false;
-                indexesSetting = false;
-            }
-            else if ( token.equals( "[Indexes]" ) ) {
-                indexesSetting = true;
-                foreignSettings = false;
-                classSettings = false;
-            }
-            else if ( token.equals( "[ForeignKeys]" ) ) {
-                foreignSettings = true;
-                classSettings = false;
-                indexesSetting = false;
-            }
-            else if ( classSettings ) {
-                parseSettings( token );
-                if ( fStop )
-                    return table;
-            }
-            else if ( indexesSetting ) {
-                parseIndexes( token );
-            }
-            else if ( foreignSettings ) {
-                parseForeignKeys( token );
+            try {
+                if ( isNewLine( token ) ) {
+                    // do nothing
+                }
+                else if ( token.isComment() ) {
+                    table.setComment( token.getValue() );
+                }
+                else if ( token.equals( "[Settings]" ) ) {
+                    classSettings = true;
+                    foreignSettings = false;
+                    indexesSetting = false;
+                }
+                else if ( token.equals( "[Fields]" ) ) {
+                    classSettings = false;
+                    foreignSettings = false;
+                    indexesSetting = false;
+                }
+                else if ( token.equals( "[Indexes]" ) ) {
+                    indexesSetting = true;
+                    foreignSettings = false;
+                    classSettings = false;
+                }
+                else if ( token.equals( "[ForeignKeys]" ) ) {
+                    foreignSettings = true;
+                    classSettings = false;
+                    indexesSetting = false;
+                }
+                else if ( classSettings ) {
+                    parseSettings( token );
+                }
+                else if ( indexesSetting ) {
+                    parseIndexes( token );
+                }
+                else if ( foreignSettings ) {
+                    parseForeignKeys( token );
+                }
+                else {
+                    parseFields( token );
+                }
             }
-            else {
-                parseFields( token );
+            catch ( RuntimeException e ) {
+                recover( e );
             }
             token = getNextToken();
         }
 
+        if ( table.getDomName() == null ) {
+            report( "Expecting a CLASS in the [Settings] section." );
+        }
+        if ( table.getColumns().isEmpty() ) {
+            report( "Expecting at least one field." );
+            return table;
+        }
         table.setup();
 
         return table;
     }
 
+    /**
+     * When collecting diagnostics, records an unexpected error of the current
+     * line and goes on with the next line. Otherwise the error is rethrown.
+     */
+    private void recover( RuntimeException e ) {
+        if ( diagnostics == null ) {
+            throw e;
+        }
+        if ( !( e instanceof SkipLineException ) && tokenizer.getRow() != diagnosticLine ) {
+            report( e.toString() );
+        }
+        if ( !isNewLine( lastToken ) ) {
+            tokenizer.skipLine();
+        }
+    }
+
     /**
      * Parses tokens for SETTINGS header.
      * 
@@ -147,6 +239,7 @@ public class Parser {
             if ( isNewLine( token ) ) {
                 throwException( "Expected a class name, recieved new line." );
             }
+            table.setPosition( tokenizer.getRow(), tokenizer.getCol() + 1 );
             setClass( toCamelCase( token ) );
 
             // check for optional table name
@@ -168,21 +261,10 @@ public class Parser {
      *            current token
      */
     private void setClass( Token token ) {
-        Table existingTable = null;
         String value = token.getValue();
 
         table.setDomName( value );
         table.setTableName( camelToCaps( value ) );
-
-        // if table already exists, stop parsing.
-        existingTable = tableMap.get( value );
-        if ( existingTable != null ) {
-            fStop = true;
-            table = existingTable;
-            return;
-        }
-        tableMap.put( value, table );
-
     }
 
     /**
@@ -269,6 +351,12 @@ public class Parser {
 
         // parse the rest of the line
         parseColumnEnd( column, token );
+        if ( column.getFldName() != null && table.getColumnByField( column.getFldName() ) != null ) {
+            throwException( "The field name is used multiple times in the table: " + column.getFldName() );
+        }
+        if ( column.getColName() != null && table.getColumnByName( column.getColName() ) != null ) {
+            throwException( "The column name is used multiple times in the table: " + column.getColName() );
+        }
         table.addColumn( column );
 
     }
@@ -391,23 +479,14 @@ public class Parser {
             throwException( "Expecting a name for the index." );
         }
         indexList.clear();
-        String fieldName = "";
         while ( !isNewLine( token ) ) {
             token = getNextToken();
-            boolean contain = false;
             if ( token.isWord() ) {
-                fieldName = token.getValue();
-                contain = false;
-                for ( Column col : table.getColumns() ) {
-                    if ( fieldName.equals( col.getFldName() ) ) {
-                    	indexList.add( col );
-                        contain = true;
-                        break;
-                    }
-                }
-                if ( !contain ) {
+                Column col = table.getColumnByField( token.getValue() );
+                if ( col == null ) {
                     throwException( "The fields is not contained in the table: " + table.getDomName() );
                 }
+                indexList.add( col );
             }
         }
         final List<Column> listIndex = new ArrayList<Column>( indexList );
@@ -417,11 +496,18 @@ public class Parser {
     private void parseForeignKeys( Token token ) {
         String thisTable = table.getDomName();
         String thisField = token.getValue();
+        int line = tokenizer.getRow();
+        int col = tokenizer.getCol() + 1;
         if ( !getNextToken().getValue().equals( "constrainsTo" ) )
             throwException( "Expecting keywords 'constrainsTo" );
 
         String other[] = getNextToken().getValue().split( "\\." );
-        foreignKeyList.add( new ForeignNode( thisTable, thisField, other[0], other[1] ) );
+        if ( other.length != 2 )
+            throwException( "Expecting the other table and field as Table.field" );
+
+        ForeignNode node = new ForeignNode( thisTable, thisField, other[0], other[1] );
+        node.setPosition( line, col );
+        table.addForeignKey( node );
     }
 
     private boolean isNewLine( Token token ) {
@@ -438,11 +524,32 @@ public class Parser {
 
     /**
      * Throws an exception with an indication of where the error is in the input
-     * file.
+     * file. When collecting diagnostics, the error is recorded and the rest of
+     * the line is skipped.
      * 
      * @param additionalMsg
      */
     private void throwException( String additionalMsg ) {
+        // what follows the first error of a line is often caused by it
+        if ( diagnostics == null || tokenizer.getRow() != diagnosticLine ) {
+            report( additionalMsg );
+        }
+        throw new SkipLineException();
+    }
+
+    /**
+     * Records an error as a diagnostic, or throws it when no diagnostics are
+     * collected.
+     * 
+     * @param additionalMsg
+     */
+    private void report( String additionalMsg ) {
+        if ( diagnostics != null ) {
+            diagnosticLine = tokenizer.getRow();
+            diagnostics.add( new Diagnostic( fileName, tokenizer.getRow(), tokenizer.getCol() + 1, additionalMsg ) );
+            return;
+        }
+
         StringBuilder caret = new StringBuilder();
 
         for ( int i = 0; i < tokenizer.getCol(); i++ ) {
@@ -457,12 +564,21 @@ public class Parser {
 
     private Token getNextToken() {
         Token token = tokenizer.getToken();
+        lastToken = token;
 
         if ( token == null ) {
             return null;
         }
         else if ( token.isError() ) {
-            throwException( "Input contains syntax error" );
+            String error = "Input contains syntax error: " + token.getValue().replaceFirst( "^Error: *", "" );
+            if ( diagnostics == null ) {
+                throwException( error );
+            }
+
+            // the end of the line, which every part of the parser stops at
+            report( error );
+            tokenizer.skipLine();
+            return getNextToken();
         }
         return token;
     }
@@ -546,18 +662,4 @@ public class Parser {
         String word = token.getValue();
         return camelToCaps( word );
     }
-
-    /**
-     * @return the tableMap which accumulates all the tables that were parsed.
-     */
-    public static HashMap<String, Table> getTableMap() {
-        return tableMap;
-    }
-
-    /**
-     * @return the tableMap which accumulates all the tables that were parsed.
-     */
-    public static ArrayList<ForeignNode> getForeignKeyList() {
-        return foreignKeyList;
-    }
 }
@@ -0,0 +1,106 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The tables and foreign keys collected during a single generation run. Tables
+ * are kept in the order they were added, so the foreign key numbering and the
+ * mapper list do not depend on the order in which files finished parsing.
+ * Tables are looked up by class name or table name without scanning, see
+ * Table for the lookup of columns.
+ * 
+ */
+public class Schema {
+    private LinkedHashMap<String, Table> tableMap       = new LinkedHashMap<String, Table>();
+    private HashMap<String, Table>       tableNameMap   = new HashMap<String, Table>();
+    private ArrayList<ForeignNode>       foreignKeyList = new ArrayList<ForeignNode>();
+
+    /**
+     * Adds a parsed table along with its foreign keys.
+     * 
+     * @param table
+     * @throws IllegalArgumentException
+     *             if a table with the same class name or table name was
+     *             already added.
+     */
+    public void addTable( Table table ) {
+        if ( tableMap.containsKey( table.getDomName() ) ) {
+            throw new IllegalArgumentException( "This class name is used multiple times, " + table.getDomName() );
+        }
+        String tableName = toTableKey( table.getTableName() );
+        if ( tableName != null && tableNameMap.containsKey( tableName ) ) {
+            throw new IllegalArgumentException( "This table name is used multiple times, " + table.getTableName() );
+        }
+        tableMap.put( table.getDomName(), table );
+        if ( tableName != null ) {
+            tableNameMap.put( tableName, table );
+        }
+        foreignKeyList.addAll( table.getForeignKeyList() );
+    }
+
+    public Table getTable( String domName ) {
+        return tableMap.get( domName );
+    }
+
+    /**
+     * @param tableName
+     *            the database table name, in any case
+     * @return the table, or null if no table has that name.
+     */
+    public Table getTableByName( String tableName ) {
+        return tableNameMap.get( toTableKey( tableName ) );
+    }
+
+    private static String toTableKey( String tableName ) {
+        return tableName == null ? null : tableName.toUpperCase();
+    }
+
+    public List<Table> getTables() {
+        return new ArrayList<Table>( tableMap.values() );
+    }
+
+    public List<String> getClassNames() {
+        return new ArrayList<String>( tableMap.keySet() );
+    }
+
+    /**
+     * @return the tables that were added, keyed by class name.
+     */
+    public HashMap<String, Table> getTableMap() {
+        return tableMap;
+    }
+
+    /**
+     * @return the foreign keys of all tables, in the order the tables were
+     *         added.
+     */
+    public ArrayList<ForeignNode> getForeignKeyList() {
+        return foreignKeyList;
+    }
+}
@@ -24,7 +24,9 @@
 package org.batgen;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Table {
 
@@ -32,10 +34,15 @@ public class Table {
     private String pkg;
     private String domName;
     private String tableName;
+    private int line;
+    private int col;
     private boolean hasSearch = false;
     private List<Column> columns = new ArrayList<Column>();
     private List<String> searchList = new ArrayList<String>();
     private List<IndexNode> indexList = new ArrayList<IndexNode>();
+    private List<ForeignNode> foreignKeyList = new ArrayList<ForeignNode>();
+    private Map<String, Column> fieldMap = new HashMap<String, Column>();
+    private Map<String, Column> columnNameMap = new HashMap<String, Column>();
 
     int count = 0;
 
@@ -84,12 +91,64 @@ public class Table {
         return domName;
     }
 
+    /**
+     * Sets where the class name is in the config file, for diagnostics.
+     * 
+     * @param line
+     * @param col
+     */
+    public void setPosition( int line, int col ) {
+        this.line = line;
+        this.col = col;
+    }
+
+    /**
+     * @return the line of the class name in the config file, or 0 when the
+     *         table was not parsed from one.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
     public void addColumn( Column c ) {
         columns.add( c );
+        addSymbols( c );
     }
 
     public void addColumn( int num, Column c ) {
         columns.add( num, c );
+        addSymbols( c );
+    }
+
+    private void addSymbols( Column c ) {
+        fieldMap.put( c.getFldName(), c );
+        columnNameMap.put( toColumnKey( c.getColName() ), c );
+    }
+
+    private static String toColumnKey( String colName ) {
+        return colName == null ? null : colName.toUpperCase();
+    }
+
+    /**
+     * @param fldName
+     *            the java field name, e.g. "lastName"
+     * @return the column of the field, or null if the table has no such field.
+     */
+    public Column getColumnByField( String fldName ) {
+        return fieldMap.get( fldName );
+    }
+
+    /**
+     * @param colName
+     *            the database column name, in any case
+     * @return the column, or null if the table has no such column.
+     */
+    public Column getColumnByName( String colName ) {
+        return columnNameMap.get( toColumnKey( colName ) );
     }
 
     public List<Column> getColumns() {
@@ -127,7 +186,7 @@ public class Table {
             keyCol.setSequenceDisabled();
         }
 
-        columns.add( 0, keyCol );
+        addColumn( 0, keyCol );
     }
 
     private void createSearchList() {
@@ -155,6 +214,14 @@ public class Table {
         return indexList;
     }
 
+    public void addForeignKey( ForeignNode node ) {
+        foreignKeyList.add( node );
+    }
+
+    public List<ForeignNode> getForeignKeyList() {
+        return foreignKeyList;
+    }
+
     /**
      * Goes through the columns and makes sure the key is the first column. If a
      * key doesn't exist, one is created.
@@ -23,8 +23,6 @@
  */
 package org.batgen;
 
-import java.util.regex.Pattern;
-
 public class Token {
 
     private String value = "";
@@ -95,7 +93,15 @@ public class Token {
     }
 
     public boolean isNumeric() {
-        return Pattern.matches( "[0-9]+", value );
+        if ( value.length() == 0 )
+            return false;
+
+        for ( int i = 0; i < value.length(); i++ ) {
+            char c = value.charAt( i );
+            if ( c < '0' || c > '9' )
+                return false;
+        }
+        return true;
     }
 
     public boolean isOpenParen() {
@@ -30,16 +30,49 @@ import java.io.StringReader;
 
 import org.batgen.Token.Type;
 
+/**
+ * Splits a config file into tokens. Characters are classified with a lookup
+ * table and words are cut straight out of the current line, so the only
+ * objects created are the tokens that are returned and their values.
+ */
 public class Tokenizer {
 
-    private String         line;
-    private int            lineCount, lastPos, pos;
-    private BufferedReader bf;
-    private final String   SPACE    = "\t\f ";
-    private final String   SPECIAL  = "!*,()-?^";
-    private StringBuilder  sb       = new StringBuilder( "" );
-    private int            holdPos;
-    private boolean        readNext = true;
+    private static final int      SPACE    = 1;
+    private static final int      SPECIAL  = 2;
+    private static final int      WORD     = 4;
+    private static final int      NAME     = 8;
+
+    /** The classes of all ASCII characters, other characters are bad words. */
+    private static final byte[]   CHAR_CLASS = new byte[128];
+
+    /** The values of the special character tokens, indexed by character. */
+    private static final String[] SPECIAL_VALUES = new String[128];
+
+    static {
+        for ( int c = 0; c < CHAR_CLASS.length; c++ ) {
+            CHAR_CLASS[c] = WORD;
+        }
+        for ( char c : "\t\f ".toCharArray() ) {
+            CHAR_CLASS[c] = SPACE;
+        }
+        for ( char c : "!*,()-?^".toCharArray() ) {
+            CHAR_CLASS[c] = SPECIAL;
+            SPECIAL_VALUES[c] = String.valueOf( c );
+        }
+        CHAR_CLASS['/'] = 0;
+
+        String nameChars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_.$";
+        for ( char c : nameChars.toCharArray() ) {
+            CHAR_CLASS[c] |= NAME;
+        }
+    }
+
+    private String                line;
+    private int                   lineCount, lastPos, pos;
+    private BufferedReader        bf;
+    private StringBuilder         sb       = new StringBuilder( "" );
+    private int                   holdPos;
+    private boolean               readNext = true;
 
     public Tokenizer( BufferedReader bf ) {
         this.bf = bf;
@@ -51,12 +84,11 @@ public class Tokenizer {
     }
 
     public Token getToken() {
-        Token t = new Token();
 
         if ( readNext ) {
             readLine();
             if ( line == null )
-                return t = null;
+                return null;
 
             checkPos();
         }
@@ -64,63 +96,53 @@ public class Tokenizer {
         while ( pos < line.length() ) {
             readNext = false;
             if ( pos == -1 ) {
-                t.setValue( "\n" );
-                t.setType( Type.NEWLINE );
                 readNext = true;
 
-                return t;
+                return newToken( "\n", Type.NEWLINE );
             }
 
-            if ( isComment( String.valueOf( line.charAt( pos ) ) ) ) {
-                sb.setLength( 0 );
-                t = readComment();
+            char c = line.charAt( pos );
 
-                return t;
+            if ( isComment( c ) ) {
+                sb.setLength( 0 );
+                return readComment();
             }
 
-            if ( isHeader( String.valueOf( line.charAt( pos ) ) ) ) {
-                t.setValue( readHeader() );
-                if ( t.getValue().startsWith( "Error:" ) ) {
-                    t.setType( Type.ERROR );
+            if ( isHeader( c ) ) {
+                String value = readHeader();
+                if ( value.startsWith( "Error:" ) ) {
+                    return newToken( value, Type.ERROR );
                 }
-                else
-                    t.setType( Type.HEADER );
-
-                return t;
+                return newToken( value, Type.HEADER );
             }
 
-            if ( isSpecial( String.valueOf( line.charAt( pos ) ) ) ) {
-                if ( line.charAt( pos ) == '(' ) {
-                    String p = checkParen();
-                    if ( p.startsWith( "Error:" ) ) {
-                        t.setValue( p );
-                        t.setType( Type.ERROR );
-                        return t;
+            if ( isSpecial( c ) ) {
+                if ( c == '(' ) {
+                    String error = checkParen();
+                    if ( error != null ) {
+                        return newToken( error, Type.ERROR );
                     }
                 }
 
-                t.setValue( String.valueOf( line.charAt( pos ) ) );
-                t.setType( Type.SPECIALCHAR );
-
                 increment();
                 checkPos();
 
-                return t;
+                return newToken( SPECIAL_VALUES[c], Type.SPECIALCHAR );
             }
 
-            if ( isWord( String.valueOf( line.charAt( pos ) ) ) ) {
-                sb.setLength( 0 );
-                t.setValue( readWord() );
-                if ( t.getValue().startsWith( "Error:" ) )
-                    t.setType( Type.ERROR );
+            if ( isWord( c ) ) {
+                String value = readWord();
+                Token t;
+                if ( value.startsWith( "Error:" ) )
+                    t = newToken( value, Type.ERROR );
                 else
-                    t.setType( Type.WORD );
+                    t = newToken( value, Type.WORD );
 
                 checkPos();
                 return t;
             }
 
-            if ( isSpace( String.valueOf( line.charAt( pos ) ) ) ) {
+            if ( isSpace( c ) ) {
                 readSpace();
                 checkPos();
             }
@@ -129,6 +151,16 @@ public class Tokenizer {
         return null;
     }
 
+    /**
+     * Drops the rest of the current line, so the next token is the end of the
+     * line.
+     */
+    public void skipLine() {
+        if ( line != null ) {
+            pos = -1;
+        }
+    }
+
     public String getLine() {
         return line;
     }
@@ -154,92 +186,91 @@ public class Tokenizer {
         }
     }
 
-    private boolean isComment( String s ) {
-        return ( "/".equals( s ) );
+    private Token newToken( String value, Type type ) {
+        Token t = new Token();
+        t.setValue( value );
+        t.setType( type );
+        return t;
+    }
+
+    private static int charClass( char c ) {
+        return c < CHAR_CLASS.length ? CHAR_CLASS[c] : WORD;
+    }
+
+    private boolean isComment( char c ) {
+        return c == '/';
     }
 
-    private boolean isHeader( String s ) {
-        return ( "[".equals( s ) );
+    private boolean isHeader( char c ) {
+        return c == '[';
     }
 
-    private boolean isWord( String s ) {
-        return ( !"/".equals( s ) && !SPECIAL.contains( s ) && !SPACE
-                .contains( s ) );
+    private boolean isWord( char c ) {
+        return ( charClass( c ) & WORD ) != 0;
     }
 
-    private boolean isSpecial( String s ) {
-        return ( SPECIAL.contains( s ) );
+    private boolean isSpecial( char c ) {
+        return ( charClass( c ) & SPECIAL ) != 0;
     }
 
-    private boolean isSpace( String s ) {
-        return ( SPACE.contains( s ) );
+    private boolean isSpace( char c ) {
+        return ( charClass( c ) & SPACE ) != 0;
     }
 
     private boolean isBadChar( char c ) {
-        return ( !String.valueOf( line.charAt( pos ) ).matches(
-                "^[a-zA-Z0-9_\\.\\$]" ) );
+        return ( charClass( c ) & NAME ) == 0;
     }
 
     private Token readComment() {
-        Token t = new Token();
+        String value;
         holdPos = pos;
         if ( pos == line.length() || pos == ( line.length() - 1 ) ) {
             increment();
-            t.setValue( "Error: '/' must be followed by '/' or '*'." );
-            t.setType( Type.ERROR );
-            return t;
+            return newToken( "Error: '/' must be followed by '/' or '*'.", Type.ERROR );
         }
 
         if ( line.charAt( pos + 1 ) == '/' ) {
-            t.setValue( line.substring( pos ) );
+            value = line.substring( pos );
             pos = -1;
 
         }
         else if ( line.charAt( pos + 1 ) == '*' ) {
-            t.setValue( readCommentBlock() );
+            value = readCommentBlock();
 
         }
         else {
             increment();
-            t.setValue( "Error: '/' must be followed by '/' or '*'." );
-            t.setType( Type.ERROR );
-            return t;
+            return newToken( "Error: '/' must be followed by '/' or '*'.", Type.ERROR );
         }
 
-        if ( t.getValue().startsWith( "Error:" ) ) {
-            t.setType( Type.ERROR );
-            return t;
+        if ( value.startsWith( "Error:" ) ) {
+            return newToken( value, Type.ERROR );
         }
 
         checkPos();
-        t.setType( Type.COMMENT );
         lastPos = holdPos;
-        return t;
+        return newToken( value, Type.COMMENT );
     }
 
     private String readWord() {
-        String s = null;
         holdPos = pos;
-        while ( pos < line.length()
-                && isWord( String.valueOf( line.charAt( pos ) ) ) ) {
+        while ( pos < line.length() && isWord( line.charAt( pos ) ) ) {
             if ( isBadChar( line.charAt( pos ) ) ) {
-                if ( isSpace( String.valueOf( line.charAt( pos - 1 ) ) )
+                if ( isSpace( line.charAt( pos - 1 ) )
                         || line.charAt( pos - 1 ) == ']'
                         || line.charAt( pos - 1 ) == ')' ) {
                     increment();
-                    return s = "Error: Floating '" + line.charAt( pos - 1 )
+                    return "Error: Floating '" + line.charAt( pos - 1 )
                             + "' not allowed.";
                 }
                 increment();
-                return s = "Error: Words cannot contain '"
+                return "Error: Words cannot contain '"
                         + line.charAt( pos - 1 ) + "'.";
             }
-            sb.append( String.valueOf( line.charAt( pos ) ) );
             increment();
         }
-        s = sb.toString();
         lastPos = holdPos;
-        return s;
+        return line.substring( holdPos, pos );
     }
 
     private String readCommentBlock() {
@@ -322,17 +353,20 @@ public class Tokenizer {
         return s;
     }
 
+    /**
+     * Returns an error when the '(' at the current position is not closed on
+     * the same line, or null when it is.
+     */
     private String checkParen() {
+        String error = null;
         holdPos = pos;
-        String paren = line.substring( pos );
-        int i = paren.indexOf( ")" );
-        if ( i == -1 ) {
+        if ( line.indexOf( ')', pos ) == -1 ) {
             increment();
-            paren = "Error: '(' must have an ending ')' present on the same line.";
+            error = "Error: '(' must have an ending ')' present on the same line.";
         }
 
         lastPos = holdPos;
-        return paren;
+        return error;
     }
 
     private void readSpace() {
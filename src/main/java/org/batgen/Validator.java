@@ -0,0 +1,183 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks config files without generating anything. The files are parsed on
+ * all processors, each one to its end whatever errors it has, and then the
+ * class names, table names and foreign keys are resolved across all tables.
+ * Index fields are resolved by the parser.
+ * 
+ */
+public class Validator {
+    private static final Comparator<Diagnostic> BY_POSITION = new Comparator<Diagnostic>() {
+        public int compare( Diagnostic a, Diagnostic b ) {
+            if ( a.getLine() != b.getLine() ) {
+                return a.getLine() < b.getLine() ? -1 : 1;
+            }
+            return a.getCol() < b.getCol() ? -1 : ( a.getCol() == b.getCol() ? 0 : 1 );
+        }
+    };
+
+    /**
+     * @param files
+     *            the paths of the config files
+     * @return the errors of all files, by file in the given order and then by
+     *         line. Empty when all files are valid.
+     */
+    public List<Diagnostic> validate( List<String> files ) {
+        List<List<Diagnostic>> found = new ArrayList<List<Diagnostic>>();
+        List<Table> tables = new ArrayList<Table>();
+        ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+
+        try {
+            List<Future<Table>> parsed = new ArrayList<Future<Table>>();
+            for ( final String file : files ) {
+                final List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+                found.add( diagnostics );
+                parsed.add( executor.submit( new Callable<Table>() {
+                    public Table call() throws IOException {
+                        return parse( file, diagnostics );
+                    }
+                } ) );
+            }
+
+            for ( Future<Table> future : parsed ) {
+                tables.add( BatGen.getResult( future ) );
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        resolve( files, tables, found );
+
+        List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+        for ( List<Diagnostic> fileDiagnostics : found ) {
+            Collections.sort( fileDiagnostics, BY_POSITION );
+            diagnostics.addAll( fileDiagnostics );
+        }
+        return diagnostics;
+    }
+
+    private static Table parse( String file, List<Diagnostic> diagnostics ) throws IOException {
+        Reader reader;
+        try {
+            reader = new FileReader( file );
+        }
+        catch ( FileNotFoundException e ) {
+            diagnostics.add( new Diagnostic( file, 0, 0, "File not found." ) );
+            return null;
+        }
+
+        try {
+            return new Parser().parse( file, reader, diagnostics );
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Adds the tables to a schema, reporting class and table names that are
+     * used twice, and then checks that every foreign key refers to existing
+     * tables and fields.
+     */
+    private static void resolve( List<String> files, List<Table> tables, List<List<Diagnostic>> found ) {
+        Schema schema = new Schema();
+        Map<Table, String> fileOf = new HashMap<Table, String>();
+        // tables whose class name is unique but whose table name is not
+        Map<String, Table> clashing = new HashMap<String, Table>();
+
+        for ( int i = 0; i < tables.size(); i++ ) {
+            Table table = tables.get( i );
+            if ( table == null || table.getDomName() == null ) {
+                continue;
+            }
+
+            Table other = schema.getTable( table.getDomName() );
+            if ( other == null ) {
+                other = clashing.get( table.getDomName() );
+            }
+            if ( other != null ) {
+                found.get( i ).add( new Diagnostic( files.get( i ), table.getLine(), table.getCol(),
+                        "The class name " + table.getDomName() + " is already used in " + fileOf.get( other ) + "." ) );
+                continue;
+            }
+
+            fileOf.put( table, files.get( i ) );
+            other = schema.getTableByName( table.getTableName() );
+            if ( other != null ) {
+                found.get( i ).add( new Diagnostic( files.get( i ), table.getLine(), table.getCol(), "The table name "
+                        + table.getTableName() + " is already used in " + fileOf.get( other ) + "." ) );
+                clashing.put( table.getDomName(), table );
+                continue;
+            }
+            schema.addTable( table );
+        }
+
+        for ( int i = 0; i < tables.size(); i++ ) {
+            Table table = tables.get( i );
+            if ( table == null || !fileOf.containsKey( table ) ) {
+                continue;
+            }
+
+            for ( ForeignNode node : table.getForeignKeyList() ) {
+                String error = null;
+                Table toTable = schema.getTable( node.getToTable() );
+                if ( toTable == null ) {
+                    toTable = clashing.get( node.getToTable() );
+                }
+                if ( table.getColumnByField( node.getFromField() ) == null ) {
+                    error = "Unknown field in foreign key: " + node.getFromField();
+                }
+                else if ( toTable == null ) {
+                    error = "Unknown table in foreign key: " + node.getToTable();
+                }
+                else if ( toTable.getColumnByField( node.getToField() ) == null ) {
+                    error = "Unknown field in foreign key: " + node.getToTable() + "." + node.getToField();
+                }
+
+                if ( error != null ) {
+                    found.get( i ).add( new Diagnostic( files.get( i ), node.getLine(), node.getCol(), error ) );
+                }
+            }
+        }
+    }
+}
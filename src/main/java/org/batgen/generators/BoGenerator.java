@@ -23,7 +23,7 @@
  */
 package org.batgen.generators;
 
-import static org.batgen.generators.GenUtil.writeToFile;
+import static org.batgen.generators.GenUtil.openFile;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -37,8 +37,20 @@ import org.batgen.Table;
  * 
  */
 public class BoGenerator extends Generator {
+    /**
+     * Rows inserted per statement by createBatch(), unless the table is so
+     * wide that they would have more parameters than a statement can bind.
+     */
+    private static final int BATCH_SIZE        = 500;
+    private static final int MAX_PARAMETERS    = 65535;
+    /**
+     * Keys per statement of deleteByKeys(). Oracle takes at most 1000
+     * expressions in an IN list.
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
     String        boName  = "";
-    StringBuilder sb      = new StringBuilder();
+    CodeWriter    out;
     final String  NEWLINE = "\n";
     private List<Column> keyColumns = new ArrayList<Column>();
     String        filePath;
@@ -56,13 +68,13 @@ public class BoGenerator extends Generator {
     }
 
     public String createBo() {
+        out = openFile( filePath );
         writePkg();
         writeImport();
         writeClass();
         writeList();
-        sb.append( getProtectedJavaLines( filePath ) );
-        writeToFile( filePath, sb.toString() );
-        createBoException();
+        out.append( getProtectedJavaLines( filePath ) );
+        out.close();
 
         return filePath;
     }
@@ -70,41 +82,39 @@ public class BoGenerator extends Generator {
     private void writeClass() {
         String boName = table.getDomName() + "Bo";
 
-        write( "public class " );
-        write( boName );
-        write( " {\n" );
-        write( NEWLINE );
-        write( TAB );
-        write( "private static " );
-        write( boName );
-        write( " instance = new " );
-        write( boName + "();\n" );
-        write( NEWLINE );
-        write( TAB );
-        write( "public static " );
-        write( boName );
-        write( " getInstance() {\n" );
-        write( TAB + TAB + "return instance;\n" );
-        write( TAB + "} \n" );
-        write( NEWLINE );
-        write( TAB );
-        write( "private " + boName + "() {\n" + TAB + "} \n\n" );
+        out.line( "public class " + boName + " {" );
+        out.line();
+        out.indent();
+        out.line( "private static " + boName + " instance = new " + boName + "();" );
+        out.line();
+        out.line( "private static final int BATCH_SIZE = " + getBatchSize() + ";" );
+        out.line( "private static final int DELETE_BATCH_SIZE = " + DELETE_BATCH_SIZE + ";" );
+        out.line();
+        out.line( "public static " + boName + " getInstance() {" );
+        out.indent().line( "return instance;" ).outdent();
+        out.line( "} " );
+        out.line();
+        out.line( "private " + boName + "() {" );
+        out.line( "} " );
+        out.line();
 
         writeCrud();
     }
 
     void writeCrud() {
-        write( TAB + "public int create( " );
-        write( table.getDomName() );
-        write( " value ) throws BoException {\n" );
+        out.line( "public int create( " + table.getDomName() + " value ) throws BoException {" );
         writeMethodBodyCreateUpdate( "create" );
 
         write( NEWLINE );
-        write( TAB + "public int update( " );
-        write( table.getDomName() );
-        write( " value ) throws BoException {\n" );
+        writeCreateBatch();
+
+        write( NEWLINE );
+        out.line( "public int update( " + table.getDomName() + " value ) throws BoException {" );
         writeMethodBodyCreateUpdate( "update" );
-        
+
+        write( NEWLINE );
+        writeUpdateBatch();
+
         String param = "";
         for(Column col : keyColumns){
         	param += col.getFldType() + " " + col.getFldName() + ", ";
@@ -112,17 +122,14 @@ public class BoGenerator extends Generator {
         param = param.substring( 0, param.length() - 2 );
 
         write( NEWLINE );
-        write( TAB );
-        write( "public int delete( " );
-        write( param + " ) throws BoException {\n" );
+        out.line( "public int delete( " + param + " ) throws BoException {" );
         writeMethodBodyReadDelete( "delete" );
         write( NEWLINE );
 
-        write( TAB );
-        write( "public " );
-        write( table.getDomName() );
-        write( " read( " + param);;
-        write( " ) throws BoException {\n" );
+        writeDeleteByKeys();
+        write( NEWLINE );
+
+        out.line( "public " + table.getDomName() + " read( " + param + " ) throws BoException {" );
         writeMethodBodyReadDelete( "read" );
         write( NEWLINE );
 
@@ -133,75 +140,167 @@ public class BoGenerator extends Generator {
     }
 
     private void writeMethodBodyCreateUpdate( String type ) {
-        String mapperName = table.getDomName() + "Dao";
-        write( TAB + TAB + "SqlSession session = null;\n" );
-        write( TAB + TAB + "int result = 0;\n" );
+        out.indent();
+        out.line( "SqlSession session = null;" );
+        out.line( "int result = 0;" );
+        out.line();
 
-        write( NEWLINE );
-        write( TAB + TAB + "try {\n" );
-        write( TAB + TAB + TAB + "session = SessionFactory.getSession();\n" );
-
-        write( TAB + TAB + TAB + mapperName );
-        write( " mapper = session.getMapper( " + mapperName + ".class );\n" );
-        write( TAB + TAB + TAB + "result = mapper." + type + "( value );\n" );
-        write( TAB + TAB + TAB + "session.commit();\n\n" );
-
-        write( TAB + TAB + "} catch ( Exception e ) {\n" );
-        write( TAB + TAB + TAB + "session.rollback();\n" );
-        write( TAB + TAB + TAB + "throw new BoException( e );\n\n" );
-
-        write( TAB + TAB + "} finally { \n" );
-        write( TAB + TAB + TAB + "if ( session != null )\n" );
-        write( TAB + TAB + TAB + TAB + "session.close();\n" );
-        write( TAB + TAB + "}\n\n" );
-        write( TAB + TAB + "return result;\n" );
-        write( TAB + "}\n" );
+        writeSession( "result = mapper." + type + "( value );" );
+
+        out.line( "return result;" );
+        out.outdent().line( "}" );
     }
     
+    /**
+     * Writes createBatch(), which inserts the rows in batches of a given size
+     * and commits after each. The keys of a batch are taken from the sequence
+     * with a single select.
+     */
+    private void writeCreateBatch() {
+        String domName = table.getDomName();
+
+        out.line( "public int createBatch( List<" + domName + "> values ) throws BoException {" );
+        out.indent().line( "return createBatch( values, BATCH_SIZE );" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public int createBatch( List<" + domName + "> values, int batchSize ) throws BoException {" );
+        out.indent();
+        out.line( "if ( batchSize < 1 )" );
+        out.indent().line( "throw new IllegalArgumentException( \"The batch size must be at least 1.\" );" ).outdent();
+        out.line();
+        out.line( "SqlSession session = null;" );
+        out.line( "int result = 0;" );
+        out.line();
+
+        writeSessionStart( "getSession" );
+        out.line( "for ( int from = 0; from < values.size(); from += batchSize ) {" ).indent();
+        out.line( "List<" + domName + "> batch = values.subList( from, Math.min( from + batchSize, values.size() ) );" );
+        if ( hasSequence() ) {
+            Column key = table.getColumn( 0 );
+            out.line( "List<" + key.getFldType() + "> keys = mapper.nextKeys( batch.size() );" );
+            out.line( "for ( int i = 0; i < batch.size(); i++ ) {" );
+            out.indent().line( "batch.get( i ).set" + toTitleCase( key.getFldName() ) + "( keys.get( i ) );" ).outdent();
+            out.line( "}" );
+        }
+        out.line( "result += mapper.createBatch( batch );" );
+        out.line( "session.commit();" );
+        out.outdent().line( "}" );
+        writeSessionEnd();
+
+        out.line( "return result;" );
+        out.outdent().line( "}" );
+    }
+
+    /**
+     * Writes updateBatch(), which sends the updates of a batch to the database
+     * together through JDBC batching and commits after each batch. An update
+     * the driver reports without a count is counted as one row.
+     */
+    private void writeUpdateBatch() {
+        String domName = table.getDomName();
+
+        out.line( "public int updateBatch( List<" + domName + "> values ) throws BoException {" );
+        out.indent().line( "return updateBatch( values, BATCH_SIZE );" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public int updateBatch( List<" + domName + "> values, int batchSize ) throws BoException {" );
+        out.indent();
+        out.line( "if ( batchSize < 1 )" );
+        out.indent().line( "throw new IllegalArgumentException( \"The batch size must be at least 1.\" );" ).outdent();
+        out.line();
+        out.line( "SqlSession session = null;" );
+        out.line( "int result = 0;" );
+        out.line();
+
+        writeSessionStart( "getBatchSession" );
+        out.line( "for ( int from = 0; from < values.size(); from += batchSize ) {" ).indent();
+        out.line( "for ( " + domName + " value : values.subList( from, Math.min( from + batchSize, values.size() ) ) ) {" );
+        out.indent().line( "mapper.update( value );" ).outdent();
+        out.line( "}" );
+        out.line( "for ( BatchResult batchResult : session.flushStatements() ) {" ).indent();
+        out.line( "for ( int count : batchResult.getUpdateCounts() ) {" ).indent();
+        out.line( "// drivers that don't count the rows of a batch, such as older Oracle ones," );
+        out.line( "// report SUCCESS_NO_INFO for each statement that succeeded" );
+        out.line( "result += count == java.sql.Statement.SUCCESS_NO_INFO ? 1 : Math.max( count, 0 );" ).outdent();
+        out.line( "}" );
+        out.outdent().line( "}" );
+        out.line( "session.commit();" );
+        out.outdent().line( "}" );
+        writeSessionEnd();
+
+        out.line( "return result;" );
+        out.outdent().line( "}" );
+    }
+
+    /**
+     * Writes deleteByKeys(), which deletes the rows with the given keys by IN
+     * lists of DELETE_BATCH_SIZE keys and commits after each. No keys delete
+     * nothing without opening a session.
+     */
+    private void writeDeleteByKeys() {
+        String keyType = getKeyListType();
+
+        out.line( "public int deleteByKeys( Collection<" + keyType + "> keys ) throws BoException {" );
+        out.indent();
+        out.line( "if ( keys.isEmpty() )" );
+        out.indent().line( "return 0;" ).outdent();
+        out.line();
+        out.line( "SqlSession session = null;" );
+        out.line( "int result = 0;" );
+        out.line( "List<" + keyType + "> list = new ArrayList<" + keyType + ">( keys );" );
+        out.line();
+
+        writeSessionStart( "getSession" );
+        out.line( "for ( int from = 0; from < list.size(); from += DELETE_BATCH_SIZE ) {" ).indent();
+        out.line( "result += mapper.deleteByKeys( list.subList( from, Math.min( from + DELETE_BATCH_SIZE, list.size() ) ) );" );
+        out.line( "session.commit();" );
+        out.outdent().line( "}" );
+        writeSessionEnd();
+
+        out.line( "return result;" );
+        out.outdent().line( "}" );
+    }
+
+    /**
+     * @return the rows per statement of createBatch()
+     */
+    private int getBatchSize() {
+        int parameters = 0;
+        for ( Column column : table.getColumns() ) {
+            if ( !column.getClass().getSimpleName().equals( "VirtualStringColumn" ) && !column.isSysTimestamp() ) {
+                parameters++;
+            }
+        }
+        return Math.max( 1, Math.min( BATCH_SIZE, MAX_PARAMETERS / Math.max( 1, parameters ) ) );
+    }
+
     private void writeMethodBodyReadDelete( String type ) {
-        String mapperName = table.getDomName() + "Dao";
-        write( TAB + TAB + "SqlSession session = null;\n" );
+        out.indent();
+        out.line( "SqlSession session = null;" );
 
         if ( type.equalsIgnoreCase( "read" ) ) {
-            write( TAB + TAB + table.getDomName() + " result;\n" );
+            out.line( table.getDomName() + " result;" );
         }
         else {
-            write( TAB + TAB + "int result = 0;\n" );
+            out.line( "int result = 0;" );
         }
+        out.line();
 
-        write( NEWLINE );
-        write( TAB + TAB + "try {\n" );
-        write( TAB + TAB + TAB + "session = SessionFactory.getSession();\n" );
-
-        write( TAB + TAB + TAB + mapperName );
-        write( " mapper = session.getMapper( " + mapperName + ".class );\n" );
-        write( TAB + TAB + TAB + "result = mapper." + type + "( " );
-        
         String param = "";
         for(Column col : keyColumns){
         	param += col.getFldName() + ", ";
         }
         param = param.substring( 0, param.length() - 2 );
-        write( param + " );\n" );
-        
-        write( TAB + TAB + TAB + "session.commit();\n\n" );
-
-        write( TAB + TAB + "} catch ( Exception e ) {\n" );
-        write( TAB + TAB + TAB + "session.rollback();\n" );
-        write( TAB + TAB + TAB + "throw new BoException( e );\n\n" );
-
-        write( TAB + TAB + "} finally { \n" );
-        write( TAB + TAB + TAB + "if ( session != null )\n" );
-        write( TAB + TAB + TAB + TAB + "session.close();\n" );
-        write( TAB + TAB + "}\n\n" );
-        write( TAB + TAB + "return result;\n" );
-        write( TAB + "}\n" );
+
+        writeSession( "result = mapper." + type + "( " + param + " );" );
+
+        out.line( "return result;" );
+        out.outdent().line( "}" );
     }
 
     private void writeIndexKeys() {
-        String mapperName = table.getDomName() + "Dao";
-        StringBuilder sb = new StringBuilder();
-
         for ( IndexNode node : table.getIndexList() ) {
         	String methodName = "readByIndex" + toTitleCase( node.getIndexName());
             String param = "";
@@ -209,139 +308,305 @@ public class BoGenerator extends Generator {
             	param += col.getFldType() + " " + col.getFldName() + ", ";
             }
             param = param.substring( 0, param.length() - 2 );
-            sb.append( TAB + "public " + table.getDomName() + " " + methodName + "( "  );
-            sb.append( param + " ) throws BoException" );
-            sb.append( "{\n" );
+            out.line( "public " + table.getDomName() + " " + methodName + "( " + param + " ) throws BoException{" );
 
-            sb.append( TAB + TAB + "SqlSession session = null;\n" );
-            sb.append( TAB + TAB + table.getDomName() + " result;\n" );
+            out.indent();
+            out.line( "SqlSession session = null;" );
+            out.line( table.getDomName() + " result;" );
 
-            sb.append( TAB + TAB + "try {\n" );
-            sb.append( TAB + TAB + TAB + "session = SessionFactory.getSession();\n" );
-            sb.append( TAB + TAB + TAB + mapperName );
-            sb.append( " mapper = session.getMapper( " + mapperName + ".class );\n" );
             param = "";
             for(Column col : node.getColumnList()){
             	param += col.getFldName() + ", ";
             }
             param = param.substring( 0, param.length() - 2 );
-            sb.append( TAB + TAB + TAB + "result = mapper." + methodName +"( " + param + " );\n" );
-            sb.append( TAB + TAB + TAB + "session.commit();\n\n" );
-            sb.append( TAB + TAB + "} catch ( Exception e ) {\n" );
-            sb.append( TAB + TAB + TAB + "session.rollback();\n" );
-            sb.append( TAB + TAB + TAB + "throw new BoException( e );\n\n" );
-            sb.append( TAB + TAB + "} finally { \n" );
-            sb.append( TAB + TAB + TAB + "if ( session != null )\n" );
-            sb.append( TAB + TAB + TAB + TAB + "session.close();\n" );
-            sb.append( TAB + TAB + "}\n\n" );
-            sb.append( TAB + TAB + "return result;\n" );
-            sb.append( TAB + "}\n" );
+            writeSession( "result = mapper." + methodName + "( " + param + " );" );
+
+            out.line( "return result;" );
+            out.outdent().line( "}" );
+
+            String args = "";
+            for ( Column col : node.getColumnList() ) {
+                args += col.getFldType() + " " + col.getFldName() + ", ";
+            }
+            writePage( "ByIndex" + toTitleCase( node.getIndexName() ), args, param );
+            writeScan( "scanByIndex" + toTitleCase( node.getIndexName() ) );
         }
+    }
 
-        write( sb.toString() );
+    /**
+     * Writes the method that hands the rows found by a search to a result
+     * handler while they are read. The session stays open until the handler
+     * has seen the last row, or stopped the result, and is closed then.
+     * 
+     * @param methodName
+     * @param keyType
+     */
+    private void writeStream( String methodName, String keyType ) {
+        out.line();
+        out.line( "public void " + methodName + "( " + keyType + " key, ResultHandler handler ) throws BoException {" );
+        out.indent();
+        out.line( "SqlSession session = null;" );
+        out.line();
+
+        writeSession( "mapper." + methodName + "( key, handler );" );
+
+        out.outdent().line( "}" );
     }
 
-    private void writeList() {
+    /**
+     * Writes the method that reads the rows after a given one in the order of
+     * an index, so that a table can be read page by page through the index.
+     * 
+     * @param methodName
+     */
+    private void writeScan( String methodName ) {
+        String listType = "List<" + table.getDomName() + ">";
+
+        out.line();
+        out.line( "public " + listType + " " + methodName + "( " + table.getDomName()
+                + " after, int limit ) throws BoException {" );
+        out.indent();
+        out.line( "if ( limit < 1 )" );
+        out.indent().line( "throw new IllegalArgumentException( \"The limit must be at least 1.\" );" ).outdent();
+        out.line();
+        out.line( "SqlSession session = null;" );
+        out.line( listType + " list;" );
+        out.line();
+
+        writeSession( "list = mapper." + methodName + "( after, limit );" );
+
+        out.line( "return list;" );
+        out.outdent().line( "}" );
+    }
+
+    /**
+     * Writes the method that reads a page of the rows found by a search,
+     * along with the number of all rows found.
+     * 
+     * @param suffix
+     *            the end of the names of the DAO methods, e.g. "ByName"
+     * @param params
+     *            the parameters of the search, each followed by ", "
+     * @param args
+     *            the arguments passed to the DAO methods
+     */
+    private void writePage( String suffix, String params, String args ) {
+        String pageType = "Page<" + table.getDomName() + ">";
+
+        out.line();
+        out.line( "public " + pageType + " getPage" + suffix + "( " + params
+                + "int offset, int limit ) throws BoException {" );
+        out.indent();
+        out.line( "if ( offset < 0 || limit < 1 )" );
+        out.indent().line( "throw new IllegalArgumentException( \"The offset must be at least 0 and the limit at least 1.\" );" ).outdent();
+        out.line();
+        out.line( "SqlSession session = null;" );
+        out.line( pageType + " page;" );
+        out.line();
+
+        writeSessionStart( "getSession" );
+        out.line( "long total = mapper.count" + suffix + "( " + args + " );" );
+        out.line( "page = new " + pageType + "( mapper.getPage" + suffix + "( " + args + ", offset, limit ), total, offset, limit );" );
+        out.line( "session.commit();" );
+        writeSessionEnd();
+
+        out.line( "return page;" );
+        out.outdent().line( "}" );
+    }
+
+    /**
+     * Writes the try block that runs a statement on the mapper of this table,
+     * then commits the session, or rolls it back on failure, and closes it.
+     * 
+     * @param statement
+     */
+    private void writeSession( String statement ) {
+        writeSessionStart( "getSession" );
+        out.line( statement );
+        out.line( "session.commit();" );
+        writeSessionEnd();
+    }
+
+    /**
+     * Writes the start of the try block, which opens the session and gets the
+     * mapper of this table.
+     * 
+     * @param factoryMethod
+     *            the method of the SessionFactory that opens the session
+     */
+    private void writeSessionStart( String factoryMethod ) {
         String mapperName = table.getDomName() + "Dao";
 
+        out.line( "try {" ).indent();
+        out.line( "session = SessionFactory." + factoryMethod + "();" );
+        out.line( mapperName + " mapper = session.getMapper( " + mapperName + ".class );" );
+    }
+
+    /**
+     * Writes the end of the try block, which rolls the session back on failure
+     * and closes it.
+     */
+    private void writeSessionEnd() {
+        out.line();
+
+        out.outdent().line( "} catch ( Exception e ) {" ).indent();
+        out.line( "session.rollback();" );
+        out.line( "throw new BoException( e );" );
+        out.line();
+
+        out.outdent().line( "} finally { " ).indent();
+        out.line( "if ( session != null )" );
+        out.indent().line( "session.close();" ).outdent();
+        out.outdent().line( "}" );
+        out.line();
+    }
+
+    private void writeList() {
         for ( Column column : table.getColumns() ) {
             if ( column.isSearchId() ) {
                 // do this to make sure the created method is properly
                 // camelCased
-                String fieldName = column.getFldName();
-                fieldName = toTitleCase( fieldName );
-
-                write( TAB );
-                write( "public " );
-                write( "List<" + table.getDomName() + "> getListBy" );
-                write( fieldName );
-                write( "( " );
-                write( column.getFldType() );
-                write( " key ) throws BoException {\n" );
-
-                write( TAB + TAB + "SqlSession session = null;\n" );
-                write( TAB + TAB + "List<" + table.getDomName() + "> list;\n\n" );
-
-                write( TAB + TAB + "try {\n" );
-                write( TAB + TAB + TAB + "session = SessionFactory.getSession();\n" );
-
-                write( TAB + TAB + TAB + mapperName );
-                write( " mapper = session.getMapper( " + mapperName + ".class );\n" );
-                write( TAB + TAB + TAB + "list = mapper." );
-                write( "getListBy" );
-                write( fieldName );
-                write( "( key );\n" );
-                write( TAB + TAB + TAB + "session.commit();\n\n" );
-
-                write( TAB + TAB + "} catch ( Exception e ) {\n" );
-                write( TAB + TAB + TAB + "session.rollback();\n" );
-                write( TAB + TAB + TAB + "throw new BoException( e );\n\n" );
-
-                write( TAB + TAB + "} finally { \n" );
-                write( TAB + TAB + TAB + "if ( session != null )\n" );
-                write( TAB + TAB + TAB + TAB + "session.close();\n" );
-                write( TAB + TAB + "}\n\n" );
-                write( TAB + TAB + "return list;\n" );
-                write( TAB + "}\n\n" );
+                String fieldName = toTitleCase( column.getFldName() );
+
+                out.line( "public List<" + table.getDomName() + "> getListBy" + fieldName + "( "
+                        + column.getFldType() + " key ) throws BoException {" );
+
+                out.indent();
+                out.line( "SqlSession session = null;" );
+                out.line( "List<" + table.getDomName() + "> list;" );
+                out.line();
+
+                writeSession( "list = mapper.getListBy" + fieldName + "( key );" );
+
+                out.line( "return list;" );
+                out.outdent().line( "}" );
+
+                writePage( "By" + fieldName, column.getFldType() + " key, ", "key" );
+                writeStream( "streamBy" + fieldName, column.getFldType() );
+                out.line();
             }
         }
     }
 
     private void writeImport() {
         ImportGenerator imports = new ImportGenerator( filePath );
-        if ( hasSearch )
-            imports.addImport( "import java.util.List;" );
+        imports.addImport( "import java.util.ArrayList;" );
+        imports.addImport( "import java.util.Collection;" );
+        imports.addImport( "import java.util.List;" );
+        imports.addImport( "import org.apache.ibatis.executor.BatchResult;" );
         imports.addImport( "import org.apache.ibatis.session.*;" );
         imports.addImport( "import " + table.getPackage() + ".dao.*;" );
         imports.addImport( "import " + table.getPackage() + ".domain." + table.getDomName() + ";" );
         imports.addImport( "import " + table.getPackage() + ".util." + "BoException;" );
+        if ( hasSearch || !table.getIndexList().isEmpty() )
+            imports.addImport( "import " + table.getPackage() + ".util." + "Page;" );
 
         write( imports.toString() );
 
     }
 
-    private void createBoException() {
-        sb = new StringBuilder();
-        String filePath = "src/main/java/" + packageToPath() + "/util/BoException.java";
-
-        sb.append( "package " );
-        sb.append( table.getPackage() );
-        sb.append( ".util;\n\n" );
-
-        sb.append( "public class BoException extends Exception {\n" );
-
-        sb.append( TAB );
-        sb.append( "private static final long serialVersionUID = 1L;\n\n" );
-
-        sb.append( TAB );
-        sb.append( "public BoException( Throwable e ) {\n" );
-
-        sb.append( TAB ).append( TAB );
-        sb.append( "super( e );\n" );
+    /**
+     * Writes the exception of the business objects, which all tables share.
+     * 
+     * @param pkg
+     *            the base package
+     * @return the path of the generated file
+     */
+    public static String createBoException( String pkg ) {
+        String filePath = GenUtil.packageToPath( pkg ) + "/util/BoException.java";
+        CodeWriter out = openFile( filePath );
+
+        out.line( "package " + pkg + ".util;" );
+        out.line();
+        out.line( "public class BoException extends Exception {" );
+        out.indent();
+        out.line( "private static final long serialVersionUID = 1L;" );
+        out.line();
+
+        out.line( "public BoException( Throwable e ) {" );
+        out.indent().line( "super( e );" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public BoException( String msg ) {" );
+        out.indent().line( "super( msg );" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public BoException( String msg, Throwable e ) {" );
+        out.indent().line( "super( msg, e );" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.append( getProtectedJavaLines( filePath ) );
+        out.close();
 
-        sb.append( TAB );
-        sb.append( "}\n\n" );
-
-        sb.append( TAB );
-        sb.append( "public BoException( String msg ) {\n" );
-
-        sb.append( TAB ).append( TAB );
-        sb.append( "super( msg );\n" );
-
-        sb.append( TAB );
-        sb.append( "}\n\n" );
-
-        sb.append( TAB );
-        sb.append( "public BoException( String msg, Throwable e ) {\n" );
-
-        sb.append( TAB ).append( TAB );
-        sb.append( "super( msg, e );\n" );
+        return filePath;
+    }
 
-        sb.append( TAB );
-        sb.append( "}\n\n" );
+    /**
+     * Writes the page of rows that the BOs return for a search, which all
+     * tables share.
+     * 
+     * @param pkg
+     *            the base package
+     * @return the path of the generated file
+     */
+    public static String createPage( String pkg ) {
+        String filePath = GenUtil.packageToPath( pkg ) + "/util/Page.java";
+        CodeWriter out = openFile( filePath );
+
+        out.line( "package " + pkg + ".util;" );
+        out.line();
+        out.line( "import java.util.List;" );
+        out.line();
+        out.line( "public class Page<T> {" );
+        out.indent();
+        out.line( "private final List<T> items;" );
+        out.line( "private final long total;" );
+        out.line( "private final int offset;" );
+        out.line( "private final int limit;" );
+        out.line();
+
+        out.line( "public Page( List<T> items, long total, int offset, int limit ) {" );
+        out.indent();
+        out.line( "this.items = items;" );
+        out.line( "this.total = total;" );
+        out.line( "this.offset = offset;" );
+        out.line( "this.limit = limit;" );
+        out.outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public List<T> getItems() {" );
+        out.indent().line( "return items;" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public long getTotal() {" );
+        out.indent().line( "return total;" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public int getOffset() {" );
+        out.indent().line( "return offset;" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public int getLimit() {" );
+        out.indent().line( "return limit;" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public boolean hasNext() {" );
+        out.indent().line( "return offset + items.size() < total;" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.append( getProtectedJavaLines( filePath ) );
+        out.close();
 
-        sb.append( getProtectedJavaLines( filePath ) );
-        writeToFile( filePath, sb.toString() );
+        return filePath;
     }
 
     private void writePkg() {
@@ -349,6 +614,6 @@ public class BoGenerator extends Generator {
     }
 
     private void write( String str ) {
-        sb.append( str );
+        out.append( str );
     }
 }
@@ -0,0 +1,117 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.generators;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes generated code straight to its output as it is produced, instead of
+ * building the whole file in memory first. Keeps an indentation level that
+ * line() prefixes to each line.
+ * 
+ */
+public class CodeWriter {
+    public static final String TAB = "    ";
+
+    private final Writer       out;
+    private int                indent;
+
+    public CodeWriter( Writer out ) {
+        this.out = out;
+    }
+
+    /**
+     * Writes text as it is, without indentation.
+     * 
+     * @param text
+     * @return this writer
+     */
+    public CodeWriter append( String text ) {
+        try {
+            out.write( text );
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( e );
+        }
+        return this;
+    }
+
+    /**
+     * Writes a line at the current indentation.
+     * 
+     * @param text
+     *            the line without its newline
+     * @return this writer
+     */
+    public CodeWriter line( String text ) {
+        for ( int i = 0; i < indent; i++ ) {
+            append( TAB );
+        }
+        append( text );
+        return append( "\n" );
+    }
+
+    /**
+     * Writes an empty line.
+     * 
+     * @return this writer
+     */
+    public CodeWriter line() {
+        return append( "\n" );
+    }
+
+    /**
+     * Indents the following lines one more level.
+     * 
+     * @return this writer
+     */
+    public CodeWriter indent() {
+        indent++;
+        return this;
+    }
+
+    /**
+     * Indents the following lines one level less.
+     * 
+     * @return this writer
+     */
+    public CodeWriter outdent() {
+        indent--;
+        return this;
+    }
+
+    /**
+     * Finishes the output. For a file this is when it replaces the previous
+     * version.
+     */
+    public void close() {
+        try {
+            out.close();
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+}
@@ -23,7 +23,8 @@
  */
 package org.batgen.generators;
 
-import static org.batgen.generators.GenUtil.writeToFile;
+import static org.batgen.generators.GenUtil.openFile;
+import static org.batgen.generators.GenUtil.toFile;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -40,8 +41,7 @@ public class DaoGenerator extends Generator {
     private Table         table;
     private String        daoName = "";
 
-    private StringBuilder sb      = new StringBuilder();
-    private final String  TAB     = "    ";
+    private CodeWriter    out;
     private String        filePath;
     private List<Column> keyColumns = new ArrayList<Column>();
 
@@ -59,45 +59,73 @@ public class DaoGenerator extends Generator {
     }
 
     public String createDao() {
+        out = openFile( filePath );
         writePkg();
         writeImport();
         writeInterface();
         writeList();
-        sb.append( getProtectedJavaLines( filePath ) );
-
-        writeToFile( filePath, sb.toString() );
-        createDaoExceptions();
+        out.append( getProtectedJavaLines( filePath ) );
+        out.close();
 
         return filePath;
     }
 
-    private void createDaoExceptions() {
-
-        sb = new StringBuilder();
-        String filePath = "src/main/java/" + packageToPath() + "/util/DaoException.java";
-        File file = new File( filePath );
-
-        if ( !file.exists() ) {
-            sb.append( "package " + table.getPackage() + ".util;\n" + "\n"
-                    + "public class DaoException extends Exception {\n" + TAB + "\n" + TAB
-                    + "private static final long serialVersionUID = 1L;\n" + "\n" + TAB
-                    + "public DaoException(Throwable e) {\n" + TAB + TAB + "super(e);\n" + TAB + "}\n" + "\n" + TAB
-                    + "public DaoException(String msg) {\n" + TAB + TAB + "super(msg);\n" + TAB + "}\n" + "\n" + TAB
-                    + "public DaoException(String msg, Throwable e) {\n" + TAB + TAB + "super(msg, e);\n" + TAB + "}\n"
-                    + "\n\n" );
-            sb.append( getProtectedJavaLines( filePath ) );
-            writeToFile( filePath, sb.toString() );
+    /**
+     * Writes the exception of the DAOs, which all tables share, unless it
+     * already exists.
+     * 
+     * @param pkg
+     *            the base package
+     * @return the path of the generated file, or null if it already existed.
+     */
+    public static String createDaoException( String pkg ) {
+        String filePath = GenUtil.packageToPath( pkg ) + "/util/DaoException.java";
+        File file = toFile( filePath );
+
+        if ( file.exists() ) {
+            return null;
         }
+        CodeWriter out = openFile( filePath );
+
+        out.line( "package " + pkg + ".util;" );
+        out.line();
+        out.line( "public class DaoException extends Exception {" );
+        out.indent();
+        out.line( "" );
+        out.line( "private static final long serialVersionUID = 1L;" );
+        out.line();
+
+        out.line( "public DaoException(Throwable e) {" );
+        out.indent().line( "super(e);" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public DaoException(String msg) {" );
+        out.indent().line( "super(msg);" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public DaoException(String msg, Throwable e) {" );
+        out.indent().line( "super(msg, e);" ).outdent();
+        out.line( "}" );
+        out.line();
+        out.line();
+
+        out.append( getProtectedJavaLines( filePath ) );
+        out.close();
 
+        return filePath;
     }
 
     private void writeImport() {
         ImportGenerator imports = new ImportGenerator( filePath );
-        if ( hasSearch )
-            imports.addImport( "import java.util.List;" );
+        imports.addImport( "import java.util.Collection;" );
+        imports.addImport( "import java.util.List;" );
         imports.addImport( "import " + table.getPackage() + ".domain." + table.getDomName() + ";" );
         imports.addImport( "import " + table.getPackage() + ".util." + "DaoException;" );
         imports.addImport( "import org.apache.ibatis.annotations.Param;" );
+        if ( hasSearch )
+            imports.addImport( "import org.apache.ibatis.session.ResultHandler;" );
 
         write( imports.toString() );
     }
@@ -108,11 +136,16 @@ public class DaoGenerator extends Generator {
     }
 
     private void writeInterface() {
-        write( "public interface " + daoName + " { \n\n" );
-        write( TAB + "public int create( " + table.getDomName() );
-        write( " value ) throws DaoException;\n\n" );
-        write( TAB + "public int update( " + table.getDomName() );
-        write( " value ) throws DaoException;\n\n" );
+        out.line( "public interface " + daoName + " { " );
+        out.line();
+        out.indent();
+        writeMethod( "public int create( " + table.getDomName() + " value )" );
+        writeMethod( "public int createBatch( @Param( \"values\" ) List<" + table.getDomName() + "> values )" );
+        if ( hasSequence() ) {
+            writeMethod( "public List<" + table.getColumn( 0 ).getFldType()
+                    + "> nextKeys( @Param( \"count\" ) int count )" );
+        }
+        writeMethod( "public int update( " + table.getDomName() + " value )" );
         
         String param = "";
         for(Column col : keyColumns){
@@ -120,8 +153,9 @@ public class DaoGenerator extends Generator {
         }
         param = param.substring( 0, param.length() - 2 );
         
-        write( TAB + "public int delete( " + param + " ) throws DaoException;\n\n" );
-        write( TAB + "public " + table.getDomName() + " read( " + param + " ) throws DaoException;\n\n" );
+        writeMethod( "public int delete( " + param + " )" );
+        writeMethod( "public int deleteByKeys( @Param( \"keys\" ) Collection<" + getKeyListType() + "> keys )" );
+        writeMethod( "public " + table.getDomName() + " read( " + param + " )" );
         
         for ( IndexNode node : table.getIndexList() ) {
         	String methodName = "readByIndex" + toTitleCase( node.getIndexName());
@@ -131,27 +165,51 @@ public class DaoGenerator extends Generator {
             }
             param = param.substring( 0, param.length() - 2 );
             
-            write( TAB + "public " + table.getDomName() + " " + methodName + "( " + param + " ) throws DaoException;\n\n" );
+            writeMethod( "public " + table.getDomName() + " " + methodName + "( " + param + " )" );
+            writePageMethods( "ByIndex" + toTitleCase( node.getIndexName() ), param + ", " );
+            writeMethod( "public List<" + table.getDomName() + "> scanByIndex" + toTitleCase( node.getIndexName() )
+                    + "( @Param( \"after\" ) " + table.getDomName() + " after, @Param( \"limit\" ) int limit )" );
         }
         
     }
 
+    /**
+     * Writes the methods that read a page of the rows found by a search and
+     * count all rows found.
+     * 
+     * @param suffix
+     *            the end of the method names, e.g. "ByName"
+     * @param params
+     *            the parameters of the search, each followed by ", "
+     */
+    private void writePageMethods( String suffix, String params ) {
+        writeMethod( "public List<" + table.getDomName() + "> getPage" + suffix + "( " + params
+                + "@Param( \"offset\" ) int offset, @Param( \"limit\" ) int limit )" );
+        writeMethod( "public long count" + suffix + "( " + params.substring( 0, params.length() - 2 ) + " )" );
+    }
+
+    private void writeMethod( String signature ) {
+        out.line( signature + " throws DaoException;" );
+        out.line();
+    }
+
     private void writeList() {
         for ( Column column : table.getColumns() ) {
             if ( column.isSearchId() ) {
-                write( TAB + "public " );
-                write( "List<" + table.getDomName() + "> getListBy" );
-                write( toTitleCase( column.getFldName() ) );
-                write( "( " );
-                write( column.getFldType() );
-                write( " key ) throws DaoException;\n" );
+                out.line( "public List<" + table.getDomName() + "> getListBy" + toTitleCase( column.getFldName() )
+                        + "( " + column.getFldType() + " key ) throws DaoException;" );
+                out.line();
+                writePageMethods( "By" + toTitleCase( column.getFldName() ),
+                        "@Param( \"key\" ) " + column.getFldType() + " key, " );
+                writeMethod( "public void streamBy" + toTitleCase( column.getFldName() ) + "( @Param( \"key\" ) "
+                        + column.getFldType() + " key, ResultHandler handler )" );
             }
         }
-        write( "\n" );
+        out.line();
     }
 
     private void write( String str ) {
-        sb.append( str );
+        out.append( str );
     }
 
 }
@@ -0,0 +1,92 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.generators;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.batgen.Metrics;
+
+/**
+ * Writes the generated files below a directory of its own. Unlike the default
+ * output, the files are not read for their protected code, which still comes
+ * from the output root, so a run can read a project and write elsewhere.
+ * 
+ */
+public class DiskSink implements OutputSink {
+    private final File root;
+
+    /**
+     * @param root
+     *            the directory the generated file names are relative to
+     */
+    public DiskSink( File root ) {
+        this.root = root;
+    }
+
+    @Override
+    public void write( String fileName, String content ) {
+        write( fileName, content, false );
+    }
+
+    @Override
+    public void append( String fileName, String content ) {
+        write( fileName, content, true );
+    }
+
+    private void write( String fileName, String content, boolean append ) {
+        File file = new File( root, fileName );
+        File dir = file.getAbsoluteFile().getParentFile();
+        if ( !dir.exists() ) {
+            dir.mkdirs();
+        }
+
+        long startTime = System.nanoTime();
+        Writer out = null;
+        try {
+            out = new OutputStreamWriter( new FileOutputStream( file, append ) );
+            out.write( content );
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( "Cannot write " + file, e );
+        }
+        finally {
+            close( out );
+        }
+        Metrics.fileWritten( content.length(), System.nanoTime() - startTime );
+    }
+
+    private static void close( Writer out ) {
+        try {
+            if ( out != null )
+                out.close();
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -23,7 +23,7 @@
  */
 package org.batgen.generators;
 
-import static org.batgen.generators.GenUtil.writeToFile;
+import static org.batgen.generators.GenUtil.openFile;
 
 import org.batgen.Column;
 import org.batgen.FieldType;
@@ -34,9 +34,7 @@ import org.batgen.Table;
  * 
  */
 public class DomainGenerator extends Generator {
-    private StringBuilder sb          = new StringBuilder();
-    private StringBuilder flds        = new StringBuilder();
-    private StringBuilder getsSets    = new StringBuilder();
+    private CodeWriter    out;
     boolean               date;
 
     private final int     FLD_SPACE   = 9;
@@ -54,132 +52,126 @@ public class DomainGenerator extends Generator {
     public String createDomain() {
         date = false;
         for ( Column col : table.getColumns() ) {
-            writeColFields( col );
-            getsSets.append( writeGet( col ) );
-            getsSets.append( writeSet( col ) );
-
             if ( col.getFldType().equals( "Date" ) && date != true ) {
                 date = true;
             }
         }
+
+        out = openFile( filePath );
         writePackage();
-        sb.append( "\n" );
+        out.append( "\n" );
         writeImport();
         skipLine();
         writeComment();
-        sb.append( "\n" );
+        out.append( "\n" );
         writeClass();
         skipLine();
 
-        sb.append( flds );
-        sb.append( "\n" );
-        sb.append( getsSets );
+        for ( Column col : table.getColumns() ) {
+            writeColFields( col );
+        }
+        out.append( "\n" );
+        for ( Column col : table.getColumns() ) {
+            writeGet( col );
+            writeSet( col );
+        }
 
-        sb.append( getProtectedJavaLines( filePath ) );
-        writeToFile( filePath, sb.toString() );
+        out.append( getProtectedJavaLines( filePath ) );
+        out.close();
 
         return filePath;
     }
 
     private void writeComment() {
-        if ( comment == null ) {
-            sb.append( "" );
+        if ( comment != null ) {
+            out.append( comment );
         }
-        else
-            sb.append( comment );
     }
 
     private void writePackage() {
-        sb.append( "package " );
-        sb.append( pkg );
-        sb.append( ".domain" );
-        sb.append( ";" );
+        out.append( "package " );
+        out.append( pkg );
+        out.append( ".domain" );
+        out.append( ";" );
     }
 
     private void writeImport() {
         ImportGenerator imports = new ImportGenerator( filePath );
         if ( date )
             imports.addImport( IMPORT_DATE );
-        sb.append( imports.toString() );
+        out.append( imports.toString() );
 
     }
 
     private void writeClass() {
-        sb.append( "public class " );
-        sb.append( domName );
-        sb.append( " {" );
+        out.append( "public class " );
+        out.append( domName );
+        out.append( " {" );
     }
 
     private void writeColFields( Column col ) {
 
-        flds.append( SPACE );
-        flds.append( "private " );
+        out.append( SPACE );
+        out.append( "private " );
 
         String fldType = col.getFldType();
 
-        flds.append( fldType );
-        flds.append( makeSpace( FLD_SPACE, fldType ) );
+        out.append( fldType );
+        out.append( makeSpace( FLD_SPACE, fldType ) );
 
-        flds.append( col.getFldName() );
-        flds.append( ";" );
+        out.append( col.getFldName() );
+        out.append( ";" );
 
         if ( col.getComments() != null ) {
-            flds.append( makeSpace( 20, col.getFldName() ) );
-            flds.append( col.getComments() );
+            out.append( makeSpace( 20, col.getFldName() ) );
+            out.append( col.getComments() );
         }
 
-        flds.append( "\n" );
+        out.append( "\n" );
     }
 
-    private String writeSet( Column col ) {
+    private void writeSet( Column col ) {
         if ( col.getClass().getSimpleName().equals( "VirtualStringColumn" ) ) {
-            return "";
+            return;
         }
-        StringBuilder str = new StringBuilder();
 
-        str.append( SPACE );
-        str.append( "public void      " );
-        str.append( "set" );
+        out.append( SPACE );
+        out.append( "public void      " );
+        out.append( "set" );
 
-        str.append( toTitleCase( col.getFldName() ) );
-        str.append( "( " );
+        out.append( toTitleCase( col.getFldName() ) );
+        out.append( "( " );
 
         if ( col.getType() == FieldType.BOOLEAN ) {
-            str.append( "boolean value ) { " );
-            str.append( col.getFldName() );
-            str.append( " = value ? true : false; }\n" );
+            out.append( "boolean value ) { " );
+            out.append( col.getFldName() );
+            out.append( " = value ? true : false; }\n" );
 
         }
         else {
-            str.append( col.getFldType() );
-            str.append( " value ) { " );
-            str.append( col.getFldName() );
-            str.append( " = value; }\n" );
+            out.append( col.getFldType() );
+            out.append( " value ) { " );
+            out.append( col.getFldName() );
+            out.append( " = value; }\n" );
 
         }
-
-        return str.toString();
     }
 
-    private String writeGet( Column col ) {
-        StringBuilder str = new StringBuilder();
-
-        str.append( SPACE );
-        str.append( "public " );
-        str.append( col.getFldType() );
-        str.append( makeSpace( PUB_SPACE, col.getFldType() ) );
-
-        str.append( "get" );
-        str.append( toTitleCase( col.getFldName() ) );
-        str.append( "() { return " );
-        str.append( col.getFldName() );
-        str.append( "; }\n" );
-
-        return str.toString();
+    private void writeGet( Column col ) {
+        out.append( SPACE );
+        out.append( "public " );
+        out.append( col.getFldType() );
+        out.append( makeSpace( PUB_SPACE, col.getFldType() ) );
+
+        out.append( "get" );
+        out.append( toTitleCase( col.getFldName() ) );
+        out.append( "() { return " );
+        out.append( col.getFldName() );
+        out.append( "; }\n" );
     }
 
     public void skipLine() {
-        sb.append( "\n\n" );
+        out.append( "\n\n" );
     }
 
 }
@@ -0,0 +1,124 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.generators;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.batgen.Metrics;
+
+/**
+ * What the generators keep from a previously generated file: its import lines
+ * and the lines after the PROTECTED CODE marker. Both are taken from a single
+ * read of the file.
+ * 
+ */
+public class ExistingOutput {
+    static final ExistingOutput MISSING = new ExistingOutput( Collections.<String> emptyList(),
+                                                Collections.<String> emptyList() );
+
+    private final List<String>          importLines;
+    private final List<String>          protectedLines;
+
+    private ExistingOutput( List<String> importLines, List<String> protectedLines ) {
+        this.importLines = importLines;
+        this.protectedLines = protectedLines;
+    }
+
+    /**
+     * Reads a generated file. A file that doesn't exist has no imports and no
+     * protected lines.
+     * 
+     * @param fileName
+     *            filename and path of the generated file
+     * @return the imports and protected lines of the file
+     */
+    public static ExistingOutput read( String fileName ) {
+        List<String> importLines = new ArrayList<String>();
+        List<String> protectedLines = new ArrayList<String>();
+        BufferedReader br = null;
+        long startTime = System.nanoTime();
+
+        try {
+            br = new BufferedReader( new FileReader( GenUtil.toFile( fileName ) ) );
+            boolean isProtected = false;
+            String line = br.readLine();
+
+            while ( line != null ) {
+                if ( line.startsWith( "import" ) ) {
+                    importLines.add( line );
+                }
+
+                if ( isProtected ) {
+                    protectedLines.add( "\n" + line );
+                }
+                else if ( line.contains( GenUtil.PROTECTED_CODE ) ) {
+                    isProtected = true;
+                }
+
+                line = br.readLine();
+            }
+        }
+        catch ( FileNotFoundException e ) {
+            // Ignored if file doesn't exist.
+            return MISSING;
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+        finally {
+            try {
+                if ( br != null )
+                    br.close();
+            }
+            catch ( IOException e ) {
+                e.printStackTrace();
+            }
+        }
+
+        Metrics.fileRead( GenUtil.toFile( fileName ).length(), System.nanoTime() - startTime );
+        return new ExistingOutput( importLines, protectedLines );
+    }
+
+    /**
+     * @return the lines of the file that start with "import", in file order.
+     */
+    public List<String> getImportLines() {
+        return importLines;
+    }
+
+    /**
+     * @return the lines after the PROTECTED CODE marker, each preceded by a
+     *         newline.
+     */
+    public List<String> getProtectedLines() {
+        return protectedLines;
+    }
+}
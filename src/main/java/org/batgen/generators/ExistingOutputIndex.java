@@ -0,0 +1,192 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.generators;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.batgen.Metrics;
+
+/**
+ * The imports and protected code of the files from the previous run. Each file
+ * is read at most once, either by scan() or on its first lookup, and then
+ * served to all generators from memory. Below the directories that were
+ * scanned, a file that wasn't found doesn't exist, so it isn't looked for on
+ * disk again. Set for a run with GenUtil.setOutputIndex().
+ * 
+ */
+public class ExistingOutputIndex {
+    private static final int                          SCAN_THREADS = 8;
+
+    private final ConcurrentMap<String, ExistingOutput> outputs    = new ConcurrentHashMap<String, ExistingOutput>();
+    private final List<String>                          scanned    = new CopyOnWriteArrayList<String>();
+    private final Set<String>                           written    = Collections
+            .newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+    /**
+     * Reads all generated files below the given directories on a pool of
+     * threads, so the latency of a slow file system is paid in parallel.
+     * Directories that don't exist are skipped.
+     * 
+     * @param dirs
+     *            the directories, relative to the output root
+     */
+    public void scan( List<String> dirs ) {
+        List<String> files = new ArrayList<String>();
+        for ( String dir : dirs ) {
+            listFiles( GenUtil.toFile( dir ), new File( dir ), files );
+        }
+
+        // only once all files are in the index, a file that isn't doesn't exist
+        if ( readAll( files ) ) {
+            for ( String dir : dirs ) {
+                scanned.add( new File( dir ).getPath() + File.separator );
+            }
+        }
+    }
+
+    /**
+     * @return false if the reads were interrupted
+     */
+    private boolean readAll( List<String> files ) {
+        if ( files.isEmpty() ) {
+            return true;
+        }
+
+        final Metrics.Phase phase = Metrics.current();
+        final OutputContext context = GenUtil.getContext();
+
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( SCAN_THREADS, files.size() ) );
+        try {
+            List<Future<?>> reads = new ArrayList<Future<?>>();
+            for ( final String file : files ) {
+                reads.add( executor.submit( new Callable<Object>() {
+                    public Object call() {
+                        Metrics.attach( phase );
+                        GenUtil.setContext( context );
+                        try {
+                            return get( file );
+                        }
+                        finally {
+                            GenUtil.setContext( null );
+                            Metrics.detach();
+                        }
+                    }
+                } ) );
+            }
+
+            for ( Future<?> read : reads ) {
+                read.get();
+            }
+            return true;
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch ( ExecutionException e ) {
+            throw new RuntimeException( e.getCause() );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds the generated files below dir to files, by their name below the
+     * output root.
+     */
+    private void listFiles( File dir, File name, List<String> files ) {
+        File[] children = dir.listFiles();
+        if ( children == null ) {
+            return;
+        }
+
+        for ( File child : children ) {
+            String childName = child.getName();
+            if ( child.isDirectory() ) {
+                listFiles( child, new File( name, childName ), files );
+            }
+            else if ( childName.endsWith( ".java" ) || childName.endsWith( ".xml" ) || childName.endsWith( ".sql" ) ) {
+                files.add( new File( name, childName ).getPath() );
+            }
+        }
+    }
+
+    /**
+     * @param fileName
+     *            filename and path of a generated file
+     * @return the imports and protected lines of the file, read from disk only
+     *         the first time it is asked for.
+     */
+    public ExistingOutput get( String fileName ) {
+        String key = new File( fileName ).getPath();
+        ExistingOutput output = outputs.get( key );
+
+        if ( output == null ) {
+            output = isKnownMissing( key ) ? ExistingOutput.MISSING : ExistingOutput.read( fileName );
+            outputs.put( key, output );
+        }
+        return output;
+    }
+
+    /**
+     * @return whether the file is below a scanned directory without having
+     *         been found there, and wasn't written since.
+     */
+    private boolean isKnownMissing( String key ) {
+        if ( written.contains( key ) ) {
+            return false;
+        }
+        for ( String dir : scanned ) {
+            if ( key.startsWith( dir ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forgets a file that was rewritten or deleted during the run, so later
+     * lookups read its new content.
+     * 
+     * @param fileName
+     */
+    public void remove( String fileName ) {
+        String key = new File( fileName ).getPath();
+        written.add( key );
+        outputs.remove( key );
+    }
+}
@@ -1,71 +1,58 @@
 package org.batgen.generators;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 import org.batgen.Column;
 import org.batgen.ForeignNode;
+import org.batgen.Schema;
 import org.batgen.Table;
 
 public class ForeignKeyGenerator {
     private static final String PREFIX = "src/test/resources/sql/";
     
-    private ArrayList<ForeignNode> foreignNodeList;
-    private HashMap<String, Table> tableMap;
+    private List<ForeignNode> foreignNodeList;
+    private Schema schema;
 
-    public ForeignKeyGenerator( ArrayList<ForeignNode> foreignNodeList, HashMap<String, Table> tableMap ) {
-        this.foreignNodeList = foreignNodeList;
-        this.tableMap = tableMap;
+    public ForeignKeyGenerator( Schema schema ) {
+        this.foreignNodeList = schema.getForeignKeyList();
+        this.schema = schema;
     }
 
-    public void createForeignKeys() {
-        StringBuilder sb = new StringBuilder();
-        sb.append( writeAddForeignKeys() );
-        GenUtil.writeToFile( PREFIX + "_AlterTables.sql", sb.toString() );
-        sb = new StringBuilder();
-        sb.append( writeDropForeignKeys() );
-        GenUtil.appendToFile( PREFIX + "_DropTables.sql", sb.toString() );
+    /**
+     * Writes _AlterTables.sql and hands the statements that drop the foreign
+     * keys to the aggregator, which puts them before the tables are dropped.
+     * 
+     * @param aggregator
+     * @return the path of _AlterTables.sql
+     */
+    public String createForeignKeys( SqlAggregator aggregator ) {
+        GenUtil.writeToFile( PREFIX + "_AlterTables.sql", writeAddForeignKeys() );
+        aggregator.setDropForeignKeys( writeDropForeignKeys() );
+        return PREFIX + "_AlterTables.sql";
     }
 
     private String writeAddForeignKeys() {
         StringBuilder sb = new StringBuilder();
-        boolean fromFieldExist = false;
-        boolean toFieldExist = false;
         Table fromTable;
         Table toTable;
-        String fromField = "";
-        String toField = "";
+        Column fromField;
+        Column toField;
 
         ForeignNode node;
         for ( int keyNum = 0; keyNum < foreignNodeList.size(); keyNum++ ) {
             node = foreignNodeList.get( keyNum );
-            fromTable = tableMap.get( node.getFromTable() );
-            toTable = tableMap.get( node.getToTable() );
-            fromFieldExist = false;
-            toFieldExist = false;
+            fromTable = schema.getTable( node.getFromTable() );
+            toTable = schema.getTable( node.getToTable() );
 
             if ( fromTable != null && toTable != null ) {
-                for ( Column col : fromTable.getColumns() ) {
-                    if ( col.getFldName().equals( node.getFromField() ) ) {
-                        fromFieldExist = true;
-                        fromField = col.getColName();
-                        break;
-                    }
-                }
-                for ( Column col : toTable.getColumns() ) {
-                    if ( col.getFldName().equals( node.getToField() ) ) {
-                        toFieldExist = true;
-                        toField = col.getColName();
-                        break;
-                    }
-                }
+                fromField = fromTable.getColumnByField( node.getFromField() );
+                toField = toTable.getColumnByField( node.getToField() );
 
-                if ( fromFieldExist && toFieldExist ) {
+                if ( fromField != null && toField != null ) {
                     sb.append( "ALTER TABLE " + fromTable.getTableName() );
                     sb.append( " ADD CONSTRAINT FK_" + fromTable.getTableName() + "_" + keyNum );
-                    sb.append( " FOREIGN KEY (" + fromField + ")" );
-                    sb.append( " REFERENCES " + toTable.getTableName() + "(" + toField + ");\n" );
+                    sb.append( " FOREIGN KEY (" + fromField.getColName() + ")" );
+                    sb.append( " REFERENCES " + toTable.getTableName() + "(" + toField.getColName() + ");\n" );
                 }
                 else
                     throw new IllegalArgumentException( "In Table" + node.getFromTable() + " and/or "
@@ -94,7 +81,7 @@ public class ForeignKeyGenerator {
         ForeignNode node;
         for ( int keyNum = 0; keyNum < foreignNodeList.size(); keyNum++ ) {
             node = foreignNodeList.get( keyNum );
-            fromTable = tableMap.get( node.getFromTable() );
+            fromTable = schema.getTable( node.getFromTable() );
             sb.append( "ALTER TABLE " + fromTable.getTableName() );
             sb.append( " DROP CONSTRAINT FK_" + fromTable.getTableName() + "_" + keyNum + ";\n" );
         }
@@ -1,19 +1,168 @@
 package org.batgen.generators;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.batgen.FlightEvents;
+
 public class GenUtil {
     public static final String PROTECTED_CODE = "PROTECTED CODE";
     public static final String TAB            = "    ";
 
+    private static final OutputContext              DEFAULT_CONTEXT = new OutputContext();
+    private static final ThreadLocal<OutputContext> CONTEXT         = new ThreadLocal<OutputContext>();
+
+    /**
+     * @return the output context of the current thread, or the shared default
+     *         context when none was set.
+     */
+    public static OutputContext getContext() {
+        OutputContext context = CONTEXT.get();
+        return context != null ? context : DEFAULT_CONTEXT;
+    }
+
+    /**
+     * Makes the generators on the current thread write through the given
+     * context. Worker threads of a run set the context of the run. Pass null
+     * to use the shared default context again.
+     * 
+     * @param context
+     */
+    public static void setContext( OutputContext context ) {
+        if ( context == null ) {
+            CONTEXT.remove();
+        }
+        else {
+            CONTEXT.set( context );
+        }
+    }
+
+    /**
+     * When set, writeToFile() leaves a file untouched if it already has the
+     * new content, so its modification time is kept and incremental builds
+     * don't recompile it.
+     * 
+     * @param value
+     */
+    public static void setWriteIfChanged( boolean value ) {
+        getContext().setWriteIfChanged( value );
+    }
+
+    /**
+     * When set, generated files only replace the previous ones in
+     * commitStaged(), so a run that fails leaves the previous output as it
+     * was.
+     * 
+     * @param value
+     */
+    public static void setStaged( boolean value ) {
+        getContext().setStaged( value );
+    }
+
+    /**
+     * Replaces the previous output with the files staged during the run.
+     */
+    public static void commitStaged() {
+        getContext().commitStaged();
+    }
+
+    /**
+     * Deletes the files staged during the run, leaving the previous output as
+     * it was.
+     */
+    public static void discardStaged() {
+        getContext().discardStaged();
+    }
+
+    /**
+     * Sends all generated files to the sink instead of writing them to disk.
+     * Existing files are still read for their protected code. Pass null to
+     * write to disk again.
+     * 
+     * @param sink
+     */
+    public static void setOutputSink( OutputSink sink ) {
+        getContext().setOutputSink( sink );
+    }
+
+    /**
+     * Sets the directory that the generated file names are relative to. Pass
+     * null for the working directory.
+     * 
+     * @param root
+     */
+    public static void setOutputRoot( File root ) {
+        getContext().setOutputRoot( root );
+    }
+
+    /**
+     * @param fileName
+     *            a generated file name, e.g. "src/main/java/..."
+     * @return the file below the output root
+     */
+    public static File toFile( String fileName ) {
+        return getContext().toFile( fileName );
+    }
+
+    /**
+     * Serves the imports and protected code of existing files from the index
+     * instead of reading a file each time they are needed. Pass null to read
+     * the files directly again.
+     * 
+     * @param index
+     */
+    public static void setOutputIndex( ExistingOutputIndex index ) {
+        getContext().setOutputIndex( index );
+    }
+
+    /**
+     * @param fileName
+     *            filename and path of a generated file
+     * @return the imports and protected lines of the file as it was before
+     *         this run.
+     */
+    public static ExistingOutput getExistingOutput( String fileName ) {
+        Object event = FlightEvents.beginRead( fileName );
+        ExistingOutput output = getContext().getExistingOutput( fileName );
+        FlightEvents.endRead( event, output.getImportLines(), output.getProtectedLines() );
+        return output;
+    }
+
+    /**
+     * When set, the content of every file written from now on is kept until
+     * it is taken with takeCaptured(), e.g. to store it in a cache.
+     * 
+     * @param value
+     */
+    public static void setCapture( boolean value ) {
+        getContext().setCapture( value );
+    }
+
+    /**
+     * @param fileName
+     * @return the content the file was last written with while capturing, or
+     *         null. The content is forgotten.
+     */
+    public static String takeCaptured( String fileName ) {
+        return getContext().takeCaptured( fileName );
+    }
+
+    /**
+     * Resets the counts of written, unchanged and deleted files.
+     */
+    public static void resetCounts() {
+        getContext().resetCounts();
+    }
+
+    /**
+     * @return the counts of written, unchanged and deleted files since the
+     *         last resetCounts().
+     */
+    public static String getCounts() {
+        return getContext().getCounts();
+    }
+
     /**
      * @return a path derived from the passed in package.
      */
@@ -21,6 +170,19 @@ public class GenUtil {
         return "src/main/java/" + pkg.replace( ".", "/" );
     }
 
+    /**
+     * Opens a generated file for writing. The new content replaces the file
+     * when the writer is closed, until then the previous version can still be
+     * read.
+     * 
+     * @param fileName
+     *            Fully qualified filename with path
+     * @return the writer of the file
+     */
+    public static CodeWriter openFile( String fileName ) {
+        return getContext().openFile( fileName );
+    }
+
     /**
      * Writes the content of the string to a specified file.
      * 
@@ -29,20 +191,16 @@ public class GenUtil {
      * @param content
      */
     public static void writeToFile( String fileName, String content ) {
-        File file = new File( fileName );
-
-        file = new File( file.getParent() );
-        if ( !file.exists() )
-            file.mkdirs();
-        try {
-            PrintWriter pw = new PrintWriter( fileName );
-            pw.write( content );
-            pw.close();
+        getContext().writeToFile( fileName, content );
+    }
 
-        }
-        catch ( FileNotFoundException e ) {
-            e.printStackTrace();
-        }
+    /**
+     * Deletes a generated file.
+     * 
+     * @param fileName
+     */
+    public static void deleteFile( String fileName ) {
+        getContext().deleteFile( fileName );
     }
 
     /**
@@ -54,26 +212,7 @@ public class GenUtil {
      * @param content
      */
     public static void appendToFile( String fileName, String content ) {
-
-        File file = new File( fileName );
-        file = new File( file.getParent() );
-
-        if ( !file.exists() ) {
-            file.mkdirs();
-        }
-
-        FileWriter fw = null;
-
-        try {
-
-            fw = new FileWriter( fileName, true );
-            fw.write( content );
-            fw.close();
-
-        }
-        catch ( IOException e ) {
-            e.printStackTrace();
-        }
+        getContext().appendToFile( fileName, content );
     }
 
     /**
@@ -85,45 +224,7 @@ public class GenUtil {
      * @return returns a list of strings
      */
     public static List<String> getProtectedLines( String fileName ) {
-        List<String> protectedLines = new ArrayList<String>();
-
-        File exportFile = new File( fileName );
-        BufferedReader br = null;
-
-        try {
-
-            br = new BufferedReader( new FileReader( exportFile ) );
-            String line = "";
-
-            // find start of protection
-            while ( !line.contains( PROTECTED_CODE ) ) {
-
-                line = br.readLine();
-                if ( line == null )
-                    break;
-            }
-
-            // read next line
-            line = br.readLine();
-            while ( line != null ) {
-
-                line = "\n" + line;
-                protectedLines.add( line );
-                line = br.readLine();
-            }
-
-            br.close();
-
-        }
-        catch ( FileNotFoundException e ) {
-            // Ignored if file doesn't exist.
-
-        }
-        catch ( IOException e ) {
-            e.printStackTrace();
-        }
-
-        return protectedLines;
+        return new ArrayList<String>( getExistingOutput( fileName ).getProtectedLines() );
     }
 
 }
@@ -87,6 +87,35 @@ public class Generator {
         return file.exists();
     }
 
+    /**
+     * @return whether the key in the first column is taken from the sequence of
+     *         the table, i.e. the sequence is not disabled and it is not a
+     *         string key.
+     */
+    protected boolean hasSequence() {
+        Column column = table.getColumn( 0 );
+        return !column.isSequenceDisabled()
+                && !( column.getFldType().equalsIgnoreCase( "string" ) && column.isKey() );
+    }
+
+    /**
+     * @return the type of the keys passed to deleteByKeys(), i.e. the type of
+     *         the key column, or the domain class when the key has several
+     *         columns.
+     */
+    protected String getKeyListType() {
+        Column keyColumn = null;
+        for ( Column column : columns ) {
+            if ( column.isKey() ) {
+                if ( keyColumn != null ) {
+                    return domName;
+                }
+                keyColumn = column;
+            }
+        }
+        return keyColumn.getFldType();
+    }
+
     /**
      * @return a path derived from the passed in package.
      */
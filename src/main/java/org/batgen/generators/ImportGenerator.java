@@ -23,13 +23,10 @@
  */
 package org.batgen.generators;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Used for finding the protected import lines in the original file.
@@ -45,6 +42,7 @@ public class ImportGenerator {
     private List<String> importJavaxLines = new ArrayList<String>();
     private List<String> importExternalLines = new ArrayList<String>();
     private List<String> importComLines = new ArrayList<String>();
+    private Set<String> added = new HashSet<String>();
 
     public ImportGenerator( String fileName ) {
         getImportLines( fileName );
@@ -52,59 +50,31 @@ public class ImportGenerator {
     }
 
     public void getImportLines( String fileName ) {
-
-        File exportFile = new File( fileName );
-        BufferedReader br = null;
-
-        try {
-
-            br = new BufferedReader( new FileReader( exportFile ) );
-            String line = "";
-
-            // find start of protected imports
-            while ( !line.startsWith( "import" ) ) {
-                line = br.readLine();
-                if ( line == null )
-                    break;
-            }
-
-            while ( line != null ) {
-
-                addImport( line );
-                line = br.readLine();
-
-            }
-
-            br.close();
-
-        } catch ( FileNotFoundException e ) {
-            // Ignored if file doesn't exist.
-
-        } catch ( IOException e ) {
-            e.printStackTrace();
+        for ( String line : GenUtil.getExistingOutput( fileName ).getImportLines() ) {
+            addImport( line );
         }
-
     }
 
+    /**
+     * Adds an import line to its group, unless it was added before.
+     * 
+     * @param str
+     */
     public void addImport( String str ) {
 
-        if ( str.startsWith( "import javax" )
-                && !importJavaxLines.contains( str + "\n" ) )
+        if ( !str.startsWith( "import" ) || !added.add( str ) )
+            return;
+
+        if ( str.startsWith( "import javax" ) )
             importJavaxLines.add( str + "\n" );
 
-        else if ( str.startsWith( "import java" )
-                && !importJavaLines.contains( str + "\n" ) )
+        else if ( str.startsWith( "import java" ) )
             importJavaLines.add( str + "\n" );
 
-        else if ( str.startsWith( "import com" )
-                && !importComLines.contains( str + "\n" ) )
+        else if ( str.startsWith( "import com" ) )
             importComLines.add( str + "\n" );
 
-        else if ( str.startsWith( "import" )
-                && !importExternalLines.contains( str + "\n" )
-                && !importJavaxLines.contains( str + "\n" )
-                && !importJavaLines.contains( str + "\n" )
-                && !importComLines.contains( str + "\n" ) )
+        else
             importExternalLines.add( str + "\n" );
 
     }
@@ -0,0 +1,87 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.generators;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the generated files in memory, so a generation doesn't touch the disk.
+ * Safe to use from the worker threads of a parallel run.
+ * 
+ */
+public class MemorySink implements OutputSink {
+    private final Map<String, StringBuilder> files = new TreeMap<String, StringBuilder>();
+
+    @Override
+    public synchronized void write( String fileName, String content ) {
+        files.put( fileName, new StringBuilder( content ) );
+    }
+
+    @Override
+    public synchronized void append( String fileName, String content ) {
+        StringBuilder sb = files.get( fileName );
+        if ( sb == null ) {
+            files.put( fileName, new StringBuilder( content ) );
+        }
+        else {
+            sb.append( content );
+        }
+    }
+
+    /**
+     * @param fileName
+     *            the name of a generated file, e.g. "src/main/java/..."
+     * @return the content of the file, or null if it wasn't generated.
+     */
+    public synchronized String get( String fileName ) {
+        StringBuilder sb = files.get( fileName );
+        return sb == null ? null : sb.toString();
+    }
+
+    /**
+     * @return a copy of all files by their name, sorted by name.
+     */
+    public synchronized Map<String, String> getFiles() {
+        Map<String, String> copy = new TreeMap<String, String>();
+        for ( Map.Entry<String, StringBuilder> entry : files.entrySet() ) {
+            copy.put( entry.getKey(), entry.getValue().toString() );
+        }
+        return copy;
+    }
+
+    /**
+     * @return the number of generated files.
+     */
+    public synchronized int size() {
+        return files.size();
+    }
+
+    /**
+     * Forgets all files, so the sink can be used for the next run.
+     */
+    public synchronized void clear() {
+        files.clear();
+    }
+}
@@ -23,16 +23,13 @@
  */
 package org.batgen.generators;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
 import java.util.List;
 
 import org.batgen.DatabaseType;
 
 public class MybatisConfigGenerator {
 
-    private StringBuilder sb;
+    private CodeWriter out;
 
     /**
      * Basic resources stored as string to be used in the program.
@@ -76,13 +73,13 @@ public class MybatisConfigGenerator {
      * to file.
      */
     public String createConfiguration() {
-        sb = new StringBuilder();
+        out = GenUtil.openFile( fileNameWithPath );
 
         createHeader();
         createEnvironments();
         createMappers();
-        sb.append( createFooter() );
-        writeToFile( sb.toString() );
+        out.append( createFooter() );
+        out.close();
 
         return fileNameWithPath;
 
@@ -98,39 +95,37 @@ public class MybatisConfigGenerator {
      */
     private void createEnvironments() {
 
-        sb.append( TAB + "<environments default=\"" + defaultEnvironment
+        out.append( TAB + "<environments default=\"" + defaultEnvironment
                 + "\">\n\n" );
 
         DatabaseEnvironment samples = DatabaseEnvironment.createH2Environment();
-        sb.append( samples.createEnvironment() + "\n" );
+        out.append( samples.createEnvironment() + "\n" );
 
         samples = DatabaseEnvironment.createOracleEnvironment();
-        sb.append( samples.createEnvironment() + "\n" );
+        out.append( samples.createEnvironment() + "\n" );
 
         samples = DatabaseEnvironment
                 .createTestEnvironment( defaultEnvironment );
-        sb.append( samples.createEnvironment() + "\n" );
+        out.append( samples.createEnvironment() + "\n" );
 
-        sb.append( samples.createJNDIEnvironment() + "\n" );
+        out.append( samples.createJNDIEnvironment() + "\n" );
 
-        sb.append( TAB + "</environments>\n\n" );
+        out.append( TAB + "</environments>\n\n" );
 
     }
 
     /**
-     * @return - returns the full set of mappers that this file will contain
+     * Writes the full set of mappers that this file will contain
      */
-    private String createMappers() {
+    private void createMappers() {
 
-        sb.append( TAB + "<mappers>\n" );
+        out.append( TAB + "<mappers>\n" );
 
         for ( String name : classNames ) {
-            sb.append( TAB + TAB + "<mapper resource=\"" + getMapperPath()
+            out.append( TAB + TAB + "<mapper resource=\"" + getMapperPath()
                     + "/dao/" + name + "Dao" + fileType + "\" />\n" );
         }
-        sb.append( TAB + "</mappers>\n\n" );
-
-        return sb.toString();
+        out.append( TAB + "</mappers>\n\n" );
     }
 
     /**
@@ -153,18 +148,16 @@ public class MybatisConfigGenerator {
 
     /**
      *
-     * @return - creates the standard xml header for this file, and appends the
-     *         first element for the file, "configuration"
+     * Writes the standard xml header for this file, and appends the first
+     * element for the file, "configuration"
      */
-    private String createHeader() {
+    private void createHeader() {
 
-        sb.append( "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" );
-        sb.append( "<!DOCTYPE configuration\n" );
-        sb.append( TAB
+        out.append( "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" );
+        out.append( "<!DOCTYPE configuration\n" );
+        out.append( TAB
                 + "PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n" );
-        sb.append( "<configuration>\n\n" );
-
-        return sb.toString();
+        out.append( "<configuration>\n\n" );
 
     }
 
@@ -180,32 +173,14 @@ public class MybatisConfigGenerator {
     }
 
     /**
-     * This method was copied and pasted from Generator.java. This was done to
-     * prevent the need for a method for passing in the "String[] files", so
-     * that that String[] could simply be passed in via the constructor. By
-     * doing that, this method was the *only* one needed from Generator.
-     * Therefore, the code was copied over to decrease the coupling between this
-     * generator and its cousins. (However it has been modified slightly)
+     * Writes the configuration through GenUtil, so it follows the same
+     * write-if-changed mode and counts as the other generated files.
      * 
      * @param content
      *            - String to be written to the file
      */
     public void writeToFile( String content ) {
-        File file = new File( fileNameWithPath );
-        file = new File( file.getParent() );
-
-        if ( file.exists() == false ) {
-            file.mkdirs();
-        }
-        try {
-
-            PrintWriter pw = new PrintWriter( fileNameWithPath );
-            pw.write( content );
-            pw.close();
-
-        } catch ( FileNotFoundException e ) {
-            e.printStackTrace();
-        }
+        GenUtil.writeToFile( fileNameWithPath, content );
     }
 
 }
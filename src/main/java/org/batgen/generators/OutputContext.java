@@ -0,0 +1,516 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.generators;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.batgen.FlightEvents;
+import org.batgen.Metrics;
+
+/**
+ * Where and how the files of one run are written: the output root, the sink,
+ * the index of the previous output, the staged files and the counts. Each run
+ * has its own, so runs for different projects can share a JVM and run at the
+ * same time. The generators reach it through GenUtil, which uses
+ * the context set for the current thread.
+ * 
+ * When staged, the finished files wait next to their targets and only replace
+ * them in commitStaged(), so a run that fails halfway leaves the previous
+ * output as it was.
+ * 
+ */
+public class OutputContext {
+    private volatile boolean             writeIfChanged;
+    private volatile boolean             staged;
+    private volatile OutputSink          outputSink;
+    private volatile ExistingOutputIndex outputIndex;
+    private volatile File                outputRoot;
+    private volatile Map<String, String> captured;
+    private boolean                      discarded;
+    private final AtomicInteger          writtenCount   = new AtomicInteger();
+    private final AtomicInteger          unchangedCount = new AtomicInteger();
+    private final AtomicInteger          deletedCount   = new AtomicInteger();
+    private final Set<File>              tempFiles      = new HashSet<File>();
+    private final Map<String, File>      stagedFiles    = new LinkedHashMap<String, File>();
+    private final Set<String>            stagedDeletes  = new LinkedHashSet<String>();
+
+    /**
+     * @see GenUtil#setWriteIfChanged(boolean)
+     */
+    public void setWriteIfChanged( boolean value ) {
+        writeIfChanged = value;
+    }
+
+    /**
+     * @see GenUtil#setStaged(boolean)
+     */
+    public void setStaged( boolean value ) {
+        staged = value;
+    }
+
+    /**
+     * @see GenUtil#setOutputSink(OutputSink)
+     */
+    public void setOutputSink( OutputSink sink ) {
+        outputSink = sink;
+    }
+
+    /**
+     * @return the sink the files are sent to, or null when they are written
+     *         to disk.
+     */
+    public OutputSink getOutputSink() {
+        return outputSink;
+    }
+
+    /**
+     * @see GenUtil#setOutputRoot(File)
+     */
+    public void setOutputRoot( File root ) {
+        outputRoot = root;
+    }
+
+    /**
+     * @see GenUtil#toFile(String)
+     */
+    public File toFile( String fileName ) {
+        File root = outputRoot;
+        if ( root == null ) {
+            return new File( fileName );
+        }
+        return new File( root, fileName );
+    }
+
+    /**
+     * @see GenUtil#setOutputIndex(ExistingOutputIndex)
+     */
+    public void setOutputIndex( ExistingOutputIndex index ) {
+        outputIndex = index;
+    }
+
+    /**
+     * @see GenUtil#getExistingOutput(String)
+     */
+    public ExistingOutput getExistingOutput( String fileName ) {
+        ExistingOutputIndex index = outputIndex;
+        if ( index != null ) {
+            return index.get( fileName );
+        }
+        return ExistingOutput.read( fileName );
+    }
+
+    /**
+     * @see GenUtil#setCapture(boolean)
+     */
+    public void setCapture( boolean value ) {
+        captured = value ? new ConcurrentHashMap<String, String>() : null;
+    }
+
+    /**
+     * @return whether the content of the written files is kept.
+     */
+    boolean isCapturing() {
+        return captured != null;
+    }
+
+    /**
+     * Keeps the content of a file that was written, when capturing.
+     */
+    void capture( String fileName, String content ) {
+        Map<String, String> map = captured;
+        if ( map != null ) {
+            map.put( fileName, content );
+        }
+    }
+
+    /**
+     * @see GenUtil#takeCaptured(String)
+     */
+    public String takeCaptured( String fileName ) {
+        Map<String, String> map = captured;
+        return map == null ? null : map.remove( fileName );
+    }
+
+    /**
+     * @see GenUtil#resetCounts()
+     */
+    public void resetCounts() {
+        writtenCount.set( 0 );
+        unchangedCount.set( 0 );
+        deletedCount.set( 0 );
+    }
+
+    /**
+     * @see GenUtil#getCounts()
+     */
+    public String getCounts() {
+        return "Files written: " + writtenCount.get() + ", unchanged: " + unchangedCount.get() + ", deleted: "
+                + deletedCount.get() + ".";
+    }
+
+    /**
+     * @see GenUtil#openFile(String)
+     */
+    public CodeWriter openFile( String fileName ) {
+        try {
+            return new CodeWriter( new OutputFile( fileName, this ) );
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( "Cannot write " + fileName, e );
+        }
+    }
+
+    /**
+     * @see GenUtil#writeToFile(String, String)
+     */
+    public void writeToFile( String fileName, String content ) {
+        CodeWriter out = openFile( fileName );
+        out.append( content );
+        out.close();
+    }
+
+    /**
+     * Creates the file that the new content of a generated file is written to,
+     * next to the file so it can replace it with a rename.
+     * 
+     * @param fileName
+     * @return the temporary file
+     */
+    File createTempFile( String fileName ) throws IOException {
+        File dir = toFile( fileName ).getAbsoluteFile().getParentFile();
+        if ( !dir.exists() ) {
+            dir.mkdirs();
+        }
+
+        File tempFile = File.createTempFile( ".batgen", ".tmp", dir );
+        synchronized ( tempFiles ) {
+            if ( !discarded ) {
+                tempFiles.add( tempFile );
+                return tempFile;
+            }
+        }
+        tempFile.delete();
+        throw new IOException( "The run was discarded" );
+    }
+
+    /**
+     * Replaces a file with the content written to tempFile, or stages it until
+     * commitStaged().
+     * 
+     * @param fileName
+     * @param tempFile
+     *            the new content, or null when it went to the output sink
+     */
+    void commit( String fileName, File tempFile ) throws IOException {
+        if ( tempFile == null ) {
+            writtenCount.incrementAndGet();
+            return;
+        }
+
+        synchronized ( tempFiles ) {
+            if ( discarded ) {
+                tempFile.delete();
+                throw new IOException( "The run was discarded" );
+            }
+        }
+
+        if ( !staged ) {
+            replace( fileName, tempFile );
+            return;
+        }
+
+        File previous;
+        synchronized ( tempFiles ) {
+            previous = stagedFiles.put( fileName, tempFile );
+            stagedDeletes.remove( fileName );
+        }
+        // a file written twice in a run keeps its last content
+        if ( previous != null ) {
+            discard( previous );
+        }
+    }
+
+    /**
+     * Replaces the files with the content staged for them and deletes the
+     * files that were deleted during the run, in one pass at the end of the
+     * run.
+     * 
+     * @see GenUtil#commitStaged()
+     */
+    public void commitStaged() {
+        synchronized ( tempFiles ) {
+            try {
+                for ( String fileName : stagedDeletes ) {
+                    remove( fileName );
+                }
+                stagedDeletes.clear();
+
+                Iterator<Map.Entry<String, File>> it = stagedFiles.entrySet().iterator();
+                while ( it.hasNext() ) {
+                    Map.Entry<String, File> entry = it.next();
+                    replace( entry.getKey(), entry.getValue() );
+                    it.remove();
+                }
+            }
+            catch ( IOException e ) {
+                throw new RuntimeException( "Cannot replace the generated files", e );
+            }
+        }
+    }
+
+    /**
+     * Deletes the staged files and the ones still being written, so the
+     * previous output stays as it was. Does nothing after commitStaged(). Once
+     * discarded, the context refuses new files, so a task that is still
+     * running leaves nothing behind.
+     * 
+     * @see GenUtil#discardStaged()
+     */
+    public void discardStaged() {
+        synchronized ( tempFiles ) {
+            discarded = true;
+            for ( File tempFile : tempFiles ) {
+                tempFile.delete();
+            }
+            tempFiles.clear();
+            stagedFiles.clear();
+            stagedDeletes.clear();
+        }
+    }
+
+    private void discard( File tempFile ) {
+        synchronized ( tempFiles ) {
+            tempFiles.remove( tempFile );
+        }
+        tempFile.delete();
+    }
+
+    /**
+     * Replaces a file with the content written to tempFile. In write-if-changed
+     * mode a file that already has that content is left untouched.
+     */
+    private void replace( String fileName, File tempFile ) throws IOException {
+        File file = toFile( fileName );
+        if ( writeIfChanged && hasSameContent( file, tempFile ) ) {
+            discard( tempFile );
+            unchangedCount.incrementAndGet();
+            return;
+        }
+
+        Files.move( tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        synchronized ( tempFiles ) {
+            tempFiles.remove( tempFile );
+        }
+        writtenCount.incrementAndGet();
+        forget( fileName );
+    }
+
+    /**
+     * Checks whether file exists with exactly the same bytes as newFile.
+     */
+    private static boolean hasSameContent( File file, File newFile ) {
+        if ( !file.isFile() || file.length() != newFile.length() ) {
+            return false;
+        }
+
+        InputStream in = null;
+        InputStream newIn = null;
+        try {
+            in = new BufferedInputStream( new FileInputStream( file ) );
+            newIn = new BufferedInputStream( new FileInputStream( newFile ) );
+
+            int b = in.read();
+            while ( b != -1 ) {
+                if ( b != newIn.read() ) {
+                    return false;
+                }
+                b = in.read();
+            }
+            return newIn.read() == -1;
+        }
+        catch ( IOException e ) {
+            return false;
+        }
+        finally {
+            close( in );
+            close( newIn );
+        }
+    }
+
+    private static void close( Closeable closeable ) {
+        try {
+            if ( closeable != null )
+                closeable.close();
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @see GenUtil#deleteFile(String)
+     */
+    public void deleteFile( String fileName ) {
+        if ( !staged ) {
+            remove( fileName );
+            return;
+        }
+
+        File tempFile;
+        synchronized ( tempFiles ) {
+            stagedDeletes.add( fileName );
+            tempFile = stagedFiles.remove( fileName );
+        }
+        if ( tempFile != null ) {
+            discard( tempFile );
+        }
+    }
+
+    private void remove( String fileName ) {
+        File file = toFile( fileName );
+        if ( file.isFile() && file.delete() ) {
+            deletedCount.incrementAndGet();
+            forget( fileName );
+        }
+    }
+
+    private void forget( String fileName ) {
+        ExistingOutputIndex index = outputIndex;
+        if ( index != null ) {
+            index.remove( fileName );
+        }
+    }
+
+    /**
+     * @see GenUtil#appendToFile(String, String)
+     */
+    public void appendToFile( String fileName, String content ) {
+        Object event = FlightEvents.beginWrite( fileName );
+        long length = getEncodedLength( content );
+        try {
+            append( fileName, content, length );
+        }
+        finally {
+            FlightEvents.endWrite( event, length );
+        }
+    }
+
+    private void append( String fileName, String content, long length ) {
+        OutputSink sink = outputSink;
+        if ( sink != null ) {
+            sink.append( fileName, content );
+            writtenCount.incrementAndGet();
+            Metrics.fileWritten( length, 0 );
+            return;
+        }
+
+        if ( staged ) {
+            appendStaged( fileName, content, length );
+            return;
+        }
+
+        File file = toFile( fileName );
+        File dir = file.getAbsoluteFile().getParentFile();
+
+        if ( !dir.exists() ) {
+            dir.mkdirs();
+        }
+
+        FileWriter fw = null;
+        long startTime = System.nanoTime();
+
+        try {
+
+            fw = new FileWriter( file, true );
+            fw.write( content );
+            fw.close();
+            writtenCount.incrementAndGet();
+            forget( fileName );
+            Metrics.fileWritten( length, System.nanoTime() - startTime );
+
+        }
+        catch ( IOException e ) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Appends to the staged content of a file, which starts as a copy of the
+     * file when it wasn't written in this run.
+     */
+    private void appendStaged( String fileName, String content, long length ) {
+        long startTime = System.nanoTime();
+
+        synchronized ( tempFiles ) {
+            FileWriter fw = null;
+            try {
+                File tempFile = stagedFiles.get( fileName );
+                if ( tempFile == null ) {
+                    tempFile = createTempFile( fileName );
+                    File file = toFile( fileName );
+                    if ( file.isFile() ) {
+                        Files.copy( file.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                    }
+                    stagedFiles.put( fileName, tempFile );
+                    stagedDeletes.remove( fileName );
+                }
+
+                fw = new FileWriter( tempFile, true );
+                fw.write( content );
+            }
+            catch ( IOException e ) {
+                throw new RuntimeException( "Cannot write " + fileName, e );
+            }
+            finally {
+                close( fw );
+            }
+        }
+        Metrics.fileWritten( length, System.nanoTime() - startTime );
+    }
+
+    /**
+     * @return the size of the content in a generated file, which is written in
+     *         the default charset.
+     */
+    static long getEncodedLength( String content ) {
+        return content.getBytes( Charset.defaultCharset() ).length;
+    }
+}
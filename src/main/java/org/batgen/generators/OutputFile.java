@@ -0,0 +1,125 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.generators;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.batgen.FlightEvents;
+import org.batgen.Metrics;
+
+/**
+ * The output of one generated file. Content is streamed to a temporary file
+ * next to the target, which replaces the target on close(). The previous
+ * version stays readable until then, so its protected code can still be read
+ * while the new version is written. When an OutputSink is set, the content is
+ * collected and handed to the sink instead.
+ * 
+ */
+class OutputFile extends Writer {
+    // most generated files fit, so they go to disk in a single write
+    private static final int    BUFFER_SIZE = 64 * 1024;
+
+    private final String        fileName;
+    private final OutputContext context;
+    private final OutputSink    sink;
+    private final File          tempFile;
+    private final Writer        out;
+    private final StringWriter  copy;
+    private final Object        event;
+    private boolean             closed;
+
+    OutputFile( String fileName, OutputContext context ) throws IOException {
+        this.event = FlightEvents.beginWrite( fileName );
+        this.fileName = fileName;
+        this.context = context;
+        this.sink = context.getOutputSink();
+
+        if ( sink != null ) {
+            tempFile = null;
+            out = new StringWriter();
+        }
+        else {
+            tempFile = context.createTempFile( fileName );
+            out = new BufferedWriter( new OutputStreamWriter( new BufferedOutputStream( new FileOutputStream(
+                    tempFile ), BUFFER_SIZE ) ) );
+        }
+        copy = sink == null && context.isCapturing() ? new StringWriter() : null;
+    }
+
+    @Override
+    public void write( char[] cbuf, int off, int len ) throws IOException {
+        out.write( cbuf, off, len );
+        if ( copy != null ) {
+            copy.write( cbuf, off, len );
+        }
+    }
+
+    @Override
+    public void write( String str ) throws IOException {
+        out.write( str );
+        if ( copy != null ) {
+            copy.write( str );
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+        long startTime = System.nanoTime();
+        out.close();
+
+        long length;
+        if ( sink != null ) {
+            String content = out.toString();
+            length = OutputContext.getEncodedLength( content );
+            context.capture( fileName, content );
+            sink.write( fileName, content );
+            context.commit( fileName, null );
+        }
+        else {
+            length = tempFile.length();
+            if ( copy != null ) {
+                context.capture( fileName, copy.toString() );
+            }
+            context.commit( fileName, tempFile );
+        }
+        Metrics.fileWritten( length, System.nanoTime() - startTime );
+        FlightEvents.endWrite( event, length );
+    }
+}
@@ -33,7 +33,6 @@ import java.util.List;
  */
 public class SessionFactoryGenerator {
 
-    private StringBuilder sb = new StringBuilder();
     private String pkg;
     private String pkgPath;
     String fileName;
@@ -45,111 +44,98 @@ public class SessionFactoryGenerator {
     }
 
     public String createSession() {
-        sb = new StringBuilder();
+        CodeWriter out = openFile( fileName );
 
-        sb.append( createPackage() );
-        sb.append( createImports() );
-        sb.append( createHeader() );
-        sb.append( createBody() );
-        sb.append( createProtectedLines() );
-
-        writeToFile( fileName, sb.toString() );
+        writePackage( out );
+        writeImports( out );
+        out.line( "public class SessionFactory {" );
+        writeBody( out );
+        writeProtectedLines( out );
+        out.close();
 
         return fileName;
     }
 
-    private String createProtectedLines() {
-        StringBuilder sb = new StringBuilder();
+    private void writeProtectedLines( CodeWriter out ) {
         List<String> lines = getProtectedLines( fileName );
 
+        out.append( "\n" + TAB + "//" + PROTECTED_CODE );
+
         if ( !lines.isEmpty() ) {
             for ( String line : lines ) {
-                sb.append( line );
+                out.append( line );
             }
         }
         else {
-            sb.append( "\n" );
-            sb.append( TAB + "//" );
-            sb.append( PROTECTED_CODE );
-            sb.append( "\n}\n" );
+            out.append( "\n}" );
         }
-
-        return sb.toString();
+        // the protected lines are read without the file's last line break
+        out.append( "\n" );
     }
 
-    private String createPackage() {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( "package " + pkg + ".dao" + ";" );
-        sb.append( "\n\n" );
-
-        return sb.toString();
+    private void writePackage( CodeWriter out ) {
+        out.line( "package " + pkg + ".dao" + ";" );
+        out.line();
     }
 
-    private String createImports() {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( "import java.io.*;\n" );
-        sb.append( "import org.apache.ibatis.io.Resources;\n" );
-        sb.append( "import org.apache.ibatis.session.*;\n" );
-        sb.append( "\n" );
-
-        return sb.toString();
-    }
-
-    private String createHeader() {
-        return "public class SessionFactory {\n";
+    private void writeImports( CodeWriter out ) {
+        out.line( "import java.io.*;" );
+        out.line( "import org.apache.ibatis.io.Resources;" );
+        out.line( "import org.apache.ibatis.session.*;" );
+        out.line();
     }
 
-    private String createBody() {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( "\n" + TAB + "public static SqlSessionFactory ssf;\n" );
-        sb.append( TAB + "private static String ENVIRONMENT;\n" );
-
+    private void writeBody( CodeWriter out ) {
         String packagePath = pkgPath.replace( "src/main/java/", "" );
 
-        sb.append( TAB + "private static String resource = \"" + packagePath
-                + "/dao/mybatis-config.xml\";\n" );
-
-        sb.append( "\n" + TAB + "private static void setup(){\n" );
-        sb.append( TAB
-                + TAB
-                + "InputStream inputStream = null;\n\n"
-                + TAB
-                + TAB
-                + "try {\n"
-                + TAB
-                + TAB
-                + TAB
-                + "inputStream = Resources.getResourceAsStream( resource );\n"
-                + TAB
-                + TAB
-                + "} catch ( IOException e ) {\n"
-                + TAB
-                + TAB
-                + TAB
-                + "e.printStackTrace();\n\t\t}\n\n"
-                + TAB
-                + TAB
-                + "if ( inputStream==null )\n"
-                + TAB
-                + TAB
-                + TAB
-                + "throw new RuntimeException( \"Cannot load myBatis resource \" + resource );\n\n"
-                + TAB
-                + TAB
-                + "ssf = new SqlSessionFactoryBuilder().build( inputStream , ENVIRONMENT );\n"
-                + "\n" + TAB + "}\n" + "\n" + TAB
-                + "public static SqlSession getSession() {\n" + TAB + TAB
-                + "return ssf.openSession();\n" + TAB + "}\n" + "\n" + TAB
-                + "public static void initialize(){\n" + TAB + TAB
-                + "setup();\n" + TAB + "}\n" + "\n" + TAB
-                + "public static void initializeForTest(){\n" + TAB + TAB
-                + "ENVIRONMENT = \"TESTING\";\n" + TAB + TAB + "setup();\n"
-                + TAB + "}" );
-
-        return sb.toString();
+        out.line();
+        out.indent();
+        out.line( "public static SqlSessionFactory ssf;" );
+        out.line( "private static String ENVIRONMENT;" );
+        out.line( "private static String resource = \"" + packagePath + "/dao/mybatis-config.xml\";" );
+        out.line();
+
+        out.line( "private static void setup(){" );
+        out.indent();
+        out.line( "InputStream inputStream = null;" );
+        out.line();
+        out.line( "try {" );
+        out.indent().line( "inputStream = Resources.getResourceAsStream( resource );" ).outdent();
+        out.line( "} catch ( IOException e ) {" );
+        out.indent().line( "e.printStackTrace();" ).outdent();
+        out.append( "\t\t}\n" );
+        out.line();
+        out.line( "if ( inputStream==null )" );
+        out.indent().line( "throw new RuntimeException( \"Cannot load myBatis resource \" + resource );" ).outdent();
+        out.line();
+        out.line( "ssf = new SqlSessionFactoryBuilder().build( inputStream , ENVIRONMENT );" );
+        out.line();
+        out.outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public static SqlSession getSession() {" );
+        out.indent().line( "return ssf.openSession();" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public static SqlSession getBatchSession() {" );
+        out.indent().line( "return ssf.openSession( ExecutorType.BATCH );" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public static void initialize(){" );
+        out.indent().line( "setup();" ).outdent();
+        out.line( "}" );
+        out.line();
+
+        out.line( "public static void initializeForTest(){" );
+        out.indent();
+        out.line( "ENVIRONMENT = \"TESTING\";" );
+        out.line( "setup();" );
+        out.outdent();
+        out.append( TAB + "}" );
+        out.outdent();
     }
 
 }
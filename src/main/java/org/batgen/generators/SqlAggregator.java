@@ -0,0 +1,183 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.generators;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.batgen.ForeignNode;
+import org.batgen.Table;
+
+/**
+ * Collects the statements of every table for _CreateTables.sql and
+ * _DropTables.sql in memory and writes each file once at the end of the run.
+ * Tables are created after the tables they reference and dropped in the
+ * reverse order, after their foreign keys, so neither file depends on the
+ * order in which the tables were generated. Safe to use from the worker
+ * threads of a parallel run.
+ * 
+ */
+public class SqlAggregator {
+    public static final String        CREATE_TABLES   = SqlGenerator.PREFIX + "_CreateTables.sql";
+    public static final String        DROP_TABLES     = SqlGenerator.PREFIX + "_DropTables.sql";
+
+    private final Map<String, String> creates         = new HashMap<String, String>();
+    private final Map<String, String> drops           = new HashMap<String, String>();
+    private String                    dropForeignKeys = "";
+
+    /**
+     * Adds the statements of a table.
+     * 
+     * @param table
+     * @param create
+     *            the statements that create the table
+     * @param drop
+     *            the statements that drop the table
+     */
+    public synchronized void add( Table table, String create, String drop ) {
+        creates.put( table.getDomName(), create );
+        drops.put( table.getDomName(), drop );
+    }
+
+    /**
+     * Sets the statements that drop the foreign keys, which come before the
+     * tables are dropped.
+     * 
+     * @param drop
+     */
+    public synchronized void setDropForeignKeys( String drop ) {
+        dropForeignKeys = drop;
+    }
+
+    /**
+     * Writes _CreateTables.sql.
+     * 
+     * @param tables
+     *            all tables of the schema, in schema order
+     * @param foreignKeys
+     *            the foreign keys of all tables
+     * @return the path of the file
+     */
+    public synchronized String writeCreateTables( List<Table> tables, List<ForeignNode> foreignKeys ) {
+        CodeWriter out = GenUtil.openFile( CREATE_TABLES );
+        for ( Table table : orderByDependency( tables, foreignKeys ) ) {
+            append( out, creates.get( table.getDomName() ) );
+        }
+        out.close();
+        return CREATE_TABLES;
+    }
+
+    /**
+     * Writes _DropTables.sql, after the statements that drop the foreign keys
+     * were set.
+     * 
+     * @param tables
+     *            all tables of the schema, in schema order
+     * @param foreignKeys
+     *            the foreign keys of all tables
+     * @return the path of the file
+     */
+    public synchronized String writeDropTables( List<Table> tables, List<ForeignNode> foreignKeys ) {
+        List<Table> ordered = orderByDependency( tables, foreignKeys );
+
+        CodeWriter out = GenUtil.openFile( DROP_TABLES );
+        if ( !dropForeignKeys.isEmpty() ) {
+            out.append( dropForeignKeys ).append( "\n" );
+        }
+        for ( int i = ordered.size() - 1; i >= 0; i-- ) {
+            append( out, drops.get( ordered.get( i ).getDomName() ) );
+        }
+        out.close();
+        return DROP_TABLES;
+    }
+
+    private static void append( CodeWriter out, String statements ) {
+        if ( statements != null ) {
+            out.append( statements );
+        }
+    }
+
+    /**
+     * Sorts the tables so each one comes after the tables it references. Of
+     * the tables that can come next, the first in schema order is taken, so a
+     * schema without foreign keys keeps its order. Tables in a reference cycle
+     * keep their schema order at the end, their foreign keys are added
+     * separately after all tables were created.
+     * 
+     * @param tables
+     * @param foreignKeys
+     * @return the tables in creation order
+     */
+    static List<Table> orderByDependency( List<Table> tables, List<ForeignNode> foreignKeys ) {
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+        for ( int i = 0; i < tables.size(); i++ ) {
+            indexes.put( tables.get( i ).getDomName(), i );
+        }
+
+        // for each table, the tables that reference it
+        List<List<Integer>> referencedBy = new ArrayList<List<Integer>>();
+        int[] references = new int[tables.size()];
+        for ( int i = 0; i < tables.size(); i++ ) {
+            referencedBy.add( new ArrayList<Integer>() );
+        }
+        for ( ForeignNode node : foreignKeys ) {
+            Integer from = indexes.get( node.getFromTable() );
+            Integer to = indexes.get( node.getToTable() );
+            if ( from != null && to != null && !from.equals( to ) ) {
+                referencedBy.get( to ).add( from );
+                references[from]++;
+            }
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<Integer>();
+        for ( int i = 0; i < tables.size(); i++ ) {
+            if ( references[i] == 0 ) {
+                ready.add( i );
+            }
+        }
+
+        List<Table> ordered = new ArrayList<Table>( tables.size() );
+        boolean[] done = new boolean[tables.size()];
+        while ( !ready.isEmpty() ) {
+            int next = ready.poll();
+            ordered.add( tables.get( next ) );
+            done[next] = true;
+            for ( int from : referencedBy.get( next ) ) {
+                if ( --references[from] == 0 ) {
+                    ready.add( from );
+                }
+            }
+        }
+
+        for ( int i = 0; i < tables.size(); i++ ) {
+            if ( !done[i] ) {
+                ordered.add( tables.get( i ) );
+            }
+        }
+        return ordered;
+    }
+}
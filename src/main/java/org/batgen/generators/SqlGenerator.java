@@ -23,7 +23,7 @@
  */
 package org.batgen.generators;
 
-import static org.batgen.generators.GenUtil.writeToFile;
+import static org.batgen.generators.GenUtil.openFile;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,13 +39,14 @@ import org.batgen.VirtualStringColumn;
 
 public class SqlGenerator extends Generator {
 
-    private static final String PREFIX = "src/test/resources/sql/";
+    public static final String PREFIX = "src/test/resources/sql/";
 
     private final int       SPACE     = 18;
     private String          filePath;
     private List<IndexNode> indexList = new ArrayList<IndexNode>();
     private List<String>    keyList   = new ArrayList<String>();
     private boolean         buildSequence;
+    private String          createTable;
 
     public SqlGenerator( Table table ) {
         super( table );
@@ -54,24 +55,60 @@ public class SqlGenerator extends Generator {
     }
 
     public String createSql() {
-        buildSequence = sequenceDisabled();
-        StringBuilder sb = new StringBuilder();
-        String table = writeColumns();
+        createTableSql();
+        appendAggregates();
 
-        sb.append( messageRemove() );
-        sb.append( drop() );
-        sb.append( messageCreate() );
-        sb.append( table );
-        sb.append( messageSample() );
-        sb.append( createSample() );
-        sb.append( getProtectedJavaLines( filePath ) );
+        return filePath;
+    }
 
-        writeToFile( filePath, sb.toString() );
+    /**
+     * Writes the sql file of this table only. The statements for the
+     * _CreateTables.sql and _DropTables.sql files are added by
+     * appendAggregates(), which lets tables be generated concurrently.
+     * 
+     * @return the path of the generated file
+     */
+    public String createTableSql() {
+        String table = getCreateTable();
+        CodeWriter out = openFile( filePath );
+
+        out.append( messageRemove() );
+        out.append( drop() );
+        out.append( messageCreate() );
+        out.append( table );
+        out.append( messageSample() );
+        writeSample( out );
+        out.append( getProtectedJavaLines( filePath ) );
+        out.close();
 
-        GenUtil.appendToFile( PREFIX + "_CreateTables.sql", table );
+        return filePath;
+    }
+
+    /**
+     * Appends this table to _CreateTables.sql and _DropTables.sql. Does not
+     * require createTableSql() to be called first.
+     */
+    public void appendAggregates() {
+        GenUtil.appendToFile( PREFIX + "_CreateTables.sql", getCreateTable() );
         writeDropsFile();
+    }
 
-        return filePath;
+    /**
+     * Adds this table to the aggregate files collected for the run. Does not
+     * require createTableSql() to be called first.
+     * 
+     * @param aggregator
+     */
+    public void appendAggregates( SqlAggregator aggregator ) {
+        aggregator.add( table, getCreateTable(), drop() + "\n" );
+    }
+
+    private String getCreateTable() {
+        if ( createTable == null ) {
+            buildSequence = hasSequence();
+            createTable = writeColumns();
+        }
+        return createTable;
     }
 
     private String writeColumns() {
@@ -159,24 +196,25 @@ public class SqlGenerator extends Generator {
         return sb.toString();
     }
 
-    private String createSample() {
-        StringBuilder sb = new StringBuilder();
-        sb.append( "SELECT\n    " );
+    private void writeSample( CodeWriter out ) {
+        String separator = "";
+        out.append( "SELECT\n    " );
 
         for ( Column col : table.getColumns() ) {
             if ( !"ListColumn".equals( col.getClass().getSimpleName() ) ) {
-                sb.append( col.getColName().toUpperCase() + ", " );
+                out.append( separator );
+                out.append( col.getColName().toUpperCase() );
+                separator = ", ";
             }
         }
 
-        sb.deleteCharAt( sb.length() - 2 );
+        out.append( " " );
         if ( keyList.isEmpty() ) {
-            sb.append( "\nfrom " + table.getTableName() + "\nWHERE\n    KEY = 0;\n" );
+            out.append( "\nfrom " + table.getTableName() + "\nWHERE\n    KEY = 0;\n" );
         }
         else {
-            sb.append( "\nfrom " + table.getTableName() + "\nWHERE\n    " + keyList.get( 0 ) + " = 0;\n" );
+            out.append( "\nfrom " + table.getTableName() + "\nWHERE\n    " + keyList.get( 0 ) + " = 0;\n" );
         }
-        return sb.toString();
     }
 
     private void writeDropsFile() {
@@ -203,12 +241,4 @@ public class SqlGenerator extends Generator {
     private String messageSample() {
         return "\n-- Sample Select Statement\n\n";
     }
-
-    private boolean sequenceDisabled() {
-        if ( !table.getColumn( 0 ).isSequenceDisabled()
-                && ( !( table.getColumn( 0 ).getFldType().equalsIgnoreCase( "string" ) && table.getColumn( 0 ).isKey() ) ) ) {
-            return true;
-        }
-        return false;
-    }
 }
@@ -26,7 +26,7 @@ package org.batgen.generators;
 import org.batgen.Column;
 import org.batgen.Table;
 
-import static org.batgen.generators.GenUtil.*;
+import static org.batgen.generators.GenUtil.openFile;
 
 public class TestBoGenerator extends Generator {
 
@@ -50,15 +50,15 @@ public class TestBoGenerator extends Generator {
     }
 
     public String createTestBo() {
-        StringBuilder sb = new StringBuilder();
+        CodeWriter out = openFile( filePath );
 
-        sb.append( createHeading() );
-        sb.append( createImports() );
-        sb.append( createClassHeader() );
-        sb.append( createTest() );
-        sb.append( getProtectedJavaLines( filePath ) );
+        out.append( createHeading() );
+        out.append( createImports() );
+        out.append( createClassHeader() );
+        writeTest( out );
+        out.append( getProtectedJavaLines( filePath ) );
+        out.close();
 
-        writeToFile( filePath, sb.toString() );
         return filePath;
     }
 
@@ -87,32 +87,32 @@ public class TestBoGenerator extends Generator {
         return "public class Test" + table.getDomName() + "Bo {\n";
     }
 
-    private String createTest() {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( "\n" + TAB + "@Before\n" );
-        sb.append( TAB + "public void setup() {\n" );
-        sb.append( TAB + TAB + "SessionFactory.initializeForTest();\n" );
-        sb.append( TAB + "}\n\n" );
+    private void writeTest( CodeWriter out ) {
+        out.line();
+        out.indent();
+        out.line( "@Before" );
+        out.line( "public void setup() {" );
+        out.indent().line( "SessionFactory.initializeForTest();" ).outdent();
+        out.line( "}" );
+        out.line();
 
-        sb.append( TAB + "@Test\n" );
-        sb.append( TAB + "public void test() throws BoException {\n" );
+        out.line( "@Test" );
+        out.line( "public void test() throws BoException {" );
+        out.line();
+        out.indent().line( table.getDomName() + "Bo " + toJavaCase( table.getDomName() ) + "Bo = "
+                + table.getDomName() + "Bo.getInstance();" ).outdent();
 
-        sb.append( "\n" + TAB + TAB + table.getDomName() + "Bo "
-                + toJavaCase( table.getDomName() ) + "Bo = "
-                + table.getDomName() + "Bo.getInstance();\n" );
+        out.append( getCreate( table.getDomName() ) );
+        out.append( getRead( table.getDomName() ) );
+        out.append( getCompareRecord( table.getDomName() ) );
+        writeListBy( out, table.getDomName() );
+        out.append( getModifyRecord( table.getDomName() ) );
+        out.append( getDeleteRecord( table.getDomName() ) );
+        out.append( getDeleteVerified( table.getDomName() ) );
 
-        sb.append( getCreate( table.getDomName() ) );
-        sb.append( getRead( table.getDomName() ) );
-        sb.append( getCompareRecord( table.getDomName() ) );
-        sb.append( getListBy( table.getDomName() ) );
-        sb.append( getModifyRecord( table.getDomName() ) );
-        sb.append( getDeleteRecord( table.getDomName() ) );
-        sb.append( getDeleteVerified( table.getDomName() ) );
-
-        sb.append( "\n" + TAB + "}\n" );
-
-        return sb.toString();
+        out.line();
+        out.line( "}" );
+        out.outdent();
     }
 
     private String getCreate( String variable ) {
@@ -184,25 +184,32 @@ public class TestBoGenerator extends Generator {
         return sb.toString();
     }
 
-    private String getListBy( String variable ) {
-        StringBuilder sb = new StringBuilder();
+    private void writeListBy( CodeWriter out, String variable ) {
         if ( hasSearch ) {
             for ( int i = 1; i < searchList.size() + 1; i++ ) {
 
-                sb.append( "\n" + TAB + TAB + "List<" + variable + "> list" + i
+                out.append( "\n" + TAB + TAB + "List<" + variable + "> list" + i
                         + "= " );
-                sb.append( toJavaCase( variable ) + "Bo.getListBy"
+                out.append( toJavaCase( variable ) + "Bo.getListBy"
                         + toTitleCase( searchList.get( i - 1 ) ) );
-                sb.append( "( " + toJavaCase( variable ) + ".get"
+                out.append( "( " + toJavaCase( variable ) + ".get"
                         + toTitleCase( searchList.get( i - 1 ) ) );
-                sb.append( "() ) ; \n" );
+                out.append( "() ) ; \n" );
 
-                sb.append( TAB + TAB + "assertEquals( 1 , list" + i
+                out.append( TAB + TAB + "assertEquals( 1 , list" + i
                         + ".size() );\n" );
 
+                out.append( TAB + TAB + "Page<" + variable + "> page" + i + " = " );
+                out.append( toJavaCase( variable ) + "Bo.getPageBy"
+                        + toTitleCase( searchList.get( i - 1 ) ) );
+                out.append( "( " + toJavaCase( variable ) + ".get"
+                        + toTitleCase( searchList.get( i - 1 ) ) );
+                out.append( "(), 0, 10 );\n" );
+                out.append( TAB + TAB + "assertEquals( 1 , page" + i + ".getTotal() );\n" );
+                out.append( TAB + TAB + "assertEquals( 1 , page" + i + ".getItems().size() );\n" );
+
             }
         }
-        return sb.toString();
     }
 
     private String getAssertEquals() {
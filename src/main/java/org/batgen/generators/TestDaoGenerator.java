@@ -23,11 +23,12 @@
  */
 package org.batgen.generators;
 
-import static org.batgen.generators.GenUtil.writeToFile;
+import static org.batgen.generators.GenUtil.openFile;
 
 import java.util.Random;
 
 import org.batgen.Column;
+import org.batgen.IndexNode;
 import org.batgen.LengthColumn;
 import org.batgen.Table;
 
@@ -54,22 +55,26 @@ public class TestDaoGenerator extends Generator {
     }
 
     public String createTestDao() {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( createHeading() );
-        sb.append( createImports() );
-        sb.append( createClassHeader() );
-        sb.append( createStaticVariables() );
-        sb.append( createTest() );
-        sb.append( createMethod( table.getDomName() ) );
-        sb.append( createCompareRecordsMethod( table.getDomName() ) );
-        sb.append( createModifyRecordsMethod( table.getDomName() ) );
-        sb.append( createRandomNumber() );
-        sb.append( createRandomString() );
-        sb.append( createRandomByte() );
-        sb.append( getProtectedJavaLines( filePath ) );
-
-        writeToFile( filePath, sb.toString() );
+        CodeWriter out = openFile( filePath );
+
+        out.append( createHeading() );
+        out.append( createImports() );
+        out.append( createClassHeader() );
+        out.append( createStaticVariables() );
+        writeTest( out );
+        writeBatchTest( out );
+        writeDeleteNoKeysTest( out );
+        for ( IndexNode node : table.getIndexList() ) {
+            writeScanTest( out, node );
+        }
+        writeCreateMethod( out, table.getDomName() );
+        writeCompareRecordsMethod( out, table.getDomName() );
+        writeModifyRecordsMethod( out, table.getDomName() );
+        out.append( createRandomNumber() );
+        out.append( createRandomString() );
+        out.append( createRandomByte() );
+        out.append( getProtectedJavaLines( filePath ) );
+        out.close();
 
         return filePath;
     }
@@ -89,12 +94,18 @@ public class TestDaoGenerator extends Generator {
 
         imports.addImport( "import java.util.Random;" );
 
-        if ( hasSearch ) {
+        if ( hasSearch || hasSequence() || !table.getIndexList().isEmpty() ) {
             imports.addImport( "import java.util.List;" );
         }
 
+        imports.addImport( "import java.util.ArrayList;" );
+
         imports.addImport( "import org.junit.*;" );
         imports.addImport( "import org.apache.ibatis.session.SqlSession;" );
+        if ( hasSearch ) {
+            imports.addImport( "import org.apache.ibatis.session.ResultContext;" );
+            imports.addImport( "import org.apache.ibatis.session.ResultHandler;" );
+        }
         imports.addImport( "import " + pkg + ".domain.*;" );
 
         return imports.toString();
@@ -115,36 +126,214 @@ public class TestDaoGenerator extends Generator {
         return sb.toString();
     }
 
-    private String createTest() {
-        StringBuilder sb = new StringBuilder();
+    private void writeTest( CodeWriter out ) {
+        out.line();
+        out.indent();
+        out.line( "@Before" );
+        out.line( "public void setup() {" );
+        out.indent().line( "SessionFactory.initializeForTest();" ).outdent();
+        out.line( "}" );
+
+        out.line();
+        out.line( "@Test" );
+        out.line( "public void test() throws Exception {" );
+        out.line();
+        out.indent();
+        out.line( "SqlSession session = SessionFactory.getSession();" );
+        out.line( table.getDomName() + "Dao " + toJavaCase( table.getDomName() ) + "Dao = session.getMapper( "
+                + table.getDomName() + "Dao.class );" );
+        out.line();
+        out.line( "try {" );
+        out.append( getCreate( table.getDomName() ) );
+        out.append( getRead( table.getDomName() ) );
+        out.append( getCompareRecord( table.getDomName() ) );
+        writeListBy( out, table.getDomName() );
+        out.append( getModifyRecord( table.getDomName() ) );
+        out.append( getRead( table.getDomName() ) );
+        out.append( getCompareRecord( table.getDomName() ) );
+        out.append( getDeleteRecord( table.getDomName() ) );
+        out.append( getDeleteVerified( table.getDomName() ) );
+
+        out.line();
+        out.line( "} finally {" ).indent();
+        out.line( "if ( session != null ) {" ).indent();
+        out.line( "session.rollback();" );
+        out.line( "session.close();" );
+        out.outdent().line( "}" );
+        out.outdent().line( "}" );
+        out.outdent().line( "}" );
+        out.outdent();
+    }
 
-        sb.append( "\n" + TAB + "@Before\n" );
-        sb.append( TAB + "public void setup() {\n" );
-        sb.append( TAB + TAB + "SessionFactory.initializeForTest();\n" );
-        sb.append( TAB + "}\n" );
+    /**
+     * Writes the test of createBatch(), which takes the keys of the rows from
+     * nextKeys(), and of deleteByKeys(). Tables without a sequence have no way
+     * to get distinct keys for the rows, so they don't get the test.
+     * 
+     * @param out
+     */
+    private void writeBatchTest( CodeWriter out ) {
+        if ( !hasSequence() ) {
+            return;
+        }
+        String domName = table.getDomName();
+        String daoName = toJavaCase( domName ) + "Dao";
+        Column key = table.getColumn( 0 );
+
+        out.line();
+        out.indent();
+        out.line( "@Test" );
+        out.line( "public void testBatch() throws Exception {" );
+        out.line();
+        out.indent();
+        out.line( "SqlSession session = SessionFactory.getSession();" );
+        out.line( domName + "Dao " + daoName + " = session.getMapper( " + domName + "Dao.class );" );
+        out.line();
+        out.line( "try {" ).indent();
+        out.line( "List<" + domName + "> values = new ArrayList<" + domName + ">();" );
+        out.line( "values.add( Test" + domName + "Dao.create" + domName + "() );" );
+        out.line( "values.add( Test" + domName + "Dao.create" + domName + "() );" );
+        out.line();
+        out.line( "List<" + key.getFldType() + "> keys = " + daoName + ".nextKeys( values.size() );" );
+        out.line( "assertEquals( values.size(), keys.size() );" );
+        out.line( "for ( int i = 0; i < values.size(); i++ ) {" );
+        out.indent().line( "values.get( i ).set" + toCamelCase( key.getFldName() ) + "( keys.get( i ) );" ).outdent();
+        out.line( "}" );
+        out.line();
+        out.line( "int count = " + daoName + ".createBatch( values );" );
+        out.line( "assertEquals( values.size(), count );" );
+        out.line();
+        out.line( "for ( " + domName + " " + toJavaCase( domName ) + " : values ) {" ).indent();
+        out.line( domName + " readRecord = " + daoName + ".read( " + param + " );" );
+        out.line( "assertNotNull( readRecord );" );
+        out.line( "compareRecords( " + toJavaCase( domName ) + ", readRecord );" );
+        out.outdent().line( "}" );
+        out.line();
+
+        String keyType = getKeyListType();
+        if ( keyType.equals( domName ) ) {
+            out.line( "count = " + daoName + ".deleteByKeys( values );" );
+        }
+        else {
+            String getter = "";
+            for ( Column col : table.getColumns() ) {
+                if ( col.isKey() ) {
+                    getter = "get" + toCamelCase( col.getFldName() ) + "()";
+                }
+            }
+            out.line( "List<" + keyType + "> deleteKeys = new ArrayList<" + keyType + ">();" );
+            out.line( "for ( " + domName + " " + toJavaCase( domName ) + " : values ) {" );
+            out.indent().line( "deleteKeys.add( " + toJavaCase( domName ) + "." + getter + " );" ).outdent();
+            out.line( "}" );
+            out.line( "count = " + daoName + ".deleteByKeys( deleteKeys );" );
+        }
+        out.line( "assertEquals( values.size(), count );" );
+
+        out.line();
+        out.outdent().line( "} finally {" ).indent();
+        out.line( "if ( session != null ) {" ).indent();
+        out.line( "session.rollback();" );
+        out.line( "session.close();" );
+        out.outdent().line( "}" );
+        out.outdent().line( "}" );
+        out.outdent().line( "}" );
+        out.outdent();
+    }
 
-        sb.append( "\n" + TAB + "@Test\n" );
-        sb.append( TAB + "public void test() throws Exception {\n" );
-        sb.append( "\n" + TAB + TAB + "SqlSession session = SessionFactory.getSession();\n" );
-        sb.append( TAB + TAB + table.getDomName() + "Dao " + toJavaCase( table.getDomName() )
-                + "Dao = session.getMapper( " + table.getDomName() + "Dao.class );\n" );
-        sb.append( "\n" + TAB + TAB + "try {\n" );
-        sb.append( getCreate( table.getDomName() ) );
-        sb.append( getRead( table.getDomName() ) );
-        sb.append( getCompareRecord( table.getDomName() ) );
-        sb.append( getListBy( table.getDomName() ) );
-        sb.append( getModifyRecord( table.getDomName() ) );
-        sb.append( getRead( table.getDomName() ) );
-        sb.append( getCompareRecord( table.getDomName() ) );
-        sb.append( getDeleteRecord( table.getDomName() ) );
-        sb.append( getDeleteVerified( table.getDomName() ) );
-
-        sb.append( "\n" + TAB + TAB + "} finally {\n" );
-        sb.append( TAB + TAB + TAB + "if ( session != null ) {\n" );
-        sb.append( TAB + TAB + TAB + TAB + "session.rollback();\n" );
-        sb.append( TAB + TAB + TAB + TAB + "session.close();\n" + TAB + TAB + TAB + "}\n" + TAB + TAB + "}\n" + TAB
-                + "}\n" );
-        return sb.toString();
+    /**
+     * Writes testDeleteNoKeys(), which checks that deleteByKeys() of an empty
+     * list deletes nothing.
+     */
+    private void writeDeleteNoKeysTest( CodeWriter out ) {
+        String domName = table.getDomName();
+        String daoName = toJavaCase( domName ) + "Dao";
+
+        out.line();
+        out.indent();
+        out.line( "@Test" );
+        out.line( "public void testDeleteNoKeys() throws Exception {" );
+        out.line();
+        out.indent();
+        out.line( "SqlSession session = SessionFactory.getSession();" );
+        out.line( domName + "Dao " + daoName + " = session.getMapper( " + domName + "Dao.class );" );
+        out.line();
+        out.line( "try {" ).indent();
+        out.line( "assertEquals( 0, " + daoName + ".deleteByKeys( new ArrayList<" + getKeyListType() + ">() ) );" );
+        out.outdent().line( "} finally {" ).indent();
+        out.line( "session.close();" );
+        out.outdent().line( "}" );
+        out.outdent().line( "}" );
+        out.outdent();
+    }
+
+    /**
+     * Writes the test of scanByIndex...(), which creates rows that have the
+     * same index values, with NULL in the columns that can be NULL, and pages
+     * through the whole index two rows at a time, expecting each row once.
+     */
+    private void writeScanTest( CodeWriter out, IndexNode node ) {
+        String domName = table.getDomName();
+        String varName = toJavaCase( domName );
+        String daoName = varName + "Dao";
+        String methodName = "scanByIndex" + toTitleCase( node.getIndexName() );
+
+        String sameKey = "";
+        for ( Column col : table.getColumns() ) {
+            if ( col.isKey() ) {
+                String getter = ".get" + toCamelCase( col.getFldName() ) + "()";
+                sameKey += "value" + getter + ".equals( row" + getter + " ) && ";
+            }
+        }
+        sameKey = sameKey.substring( 0, sameKey.length() - 4 );
+
+        out.line();
+        out.indent();
+        out.line( "@Test" );
+        out.line( "public void test" + toTitleCase( methodName ) + "() throws Exception {" );
+        out.line();
+        out.indent();
+        out.line( "SqlSession session = SessionFactory.getSession();" );
+        out.line( domName + "Dao " + daoName + " = session.getMapper( " + domName + "Dao.class );" );
+        out.line();
+        out.line( "try {" ).indent();
+        out.line( "List<" + domName + "> values = new ArrayList<" + domName + ">();" );
+        out.line( "for ( int i = 0; i < 3; i++ ) {" ).indent();
+        out.line( domName + " " + varName + " = Test" + domName + "Dao.create" + domName + "();" );
+        out.line( "if ( i > 0 ) {" ).indent();
+        for ( Column col : node.getColumnList() ) {
+            String setter = varName + ".set" + toCamelCase( col.getFldName() );
+            if ( !col.isRequired() && !col.isKey() ) {
+                out.line( setter + "( null );" );
+            }
+            else if ( !col.isKey() ) {
+                out.line( setter + "( values.get( 0 ).get" + toCamelCase( col.getFldName() ) + "() );" );
+            }
+        }
+        out.outdent().line( "}" );
+        out.line( "assertEquals( 1, " + daoName + ".create( " + varName + " ) );" );
+        out.line( "values.add( " + varName + " );" );
+        out.outdent().line( "}" );
+        out.line();
+        out.line( "int found = 0;" );
+        out.line( "List<" + domName + "> page = " + daoName + "." + methodName + "( null, 2 );" );
+        out.line( "while ( !page.isEmpty() ) {" ).indent();
+        out.line( "for ( " + domName + " row : page ) {" ).indent();
+        out.line( "for ( " + domName + " value : values ) {" ).indent();
+        out.line( "if ( " + sameKey + " ) {" );
+        out.indent().line( "found++;" ).outdent();
+        out.line( "}" );
+        out.outdent().line( "}" );
+        out.outdent().line( "}" );
+        out.line( "page = " + daoName + "." + methodName + "( page.get( page.size() - 1 ), 2 );" );
+        out.outdent().line( "}" );
+        out.line( "assertEquals( values.size(), found );" );
+        out.line();
+        out.outdent().line( "} finally {" ).indent();
+        out.line( "session.rollback();" );
+        out.line( "session.close();" );
+        out.outdent().line( "}" );
+        out.outdent().line( "}" );
+        out.outdent();
     }
 
     private String getCreate( String variable ) {
@@ -229,39 +418,49 @@ public class TestDaoGenerator extends Generator {
         return sb.toString();
     }
 
-    private String getListBy( String variable ) {
-        StringBuilder sb = new StringBuilder();
+    private void writeListBy( CodeWriter out, String variable ) {
         if ( hasSearch ) {
             for ( int i = 1; i < searchList.size() + 1; i++ ) {
 
-                sb.append( "\n" + TAB + TAB + TAB + "List<" + variable + "> list" + i + "= " );
-                sb.append( toJavaCase( variable ) + "Dao.getListBy" + toTitleCase( searchList.get( i - 1 ) ) );
-                sb.append( "( " + toJavaCase( variable ) + ".get" + toTitleCase( searchList.get( i - 1 ) ) );
-                sb.append( "() ) ; \n" );
-
-                sb.append( TAB + TAB + TAB + "assertEquals( 1, list" + i + ".size() );\n" );
-
-                sb.append( TAB + TAB + TAB + "compareRecords( " + toJavaCase( variable ) );
-                sb.append( ", list" + i + ".get( 0 ) );\n" );
+                out.append( "\n" + TAB + TAB + TAB + "List<" + variable + "> list" + i + "= " );
+                out.append( toJavaCase( variable ) + "Dao.getListBy" + toTitleCase( searchList.get( i - 1 ) ) );
+                out.append( "( " + toJavaCase( variable ) + ".get" + toTitleCase( searchList.get( i - 1 ) ) );
+                out.append( "() ) ; \n" );
+
+                out.append( TAB + TAB + TAB + "assertEquals( 1, list" + i + ".size() );\n" );
+
+                out.append( TAB + TAB + TAB + "compareRecords( " + toJavaCase( variable ) );
+                out.append( ", list" + i + ".get( 0 ) );\n" );
+
+                String search = toTitleCase( searchList.get( i - 1 ) );
+                String key = toJavaCase( variable ) + ".get" + search + "()";
+                out.append( TAB + TAB + TAB + "assertEquals( 1, " + toJavaCase( variable ) + "Dao.countBy" + search
+                        + "( " + key + " ) );\n" );
+                out.append( TAB + TAB + TAB + "list" + i + " = " + toJavaCase( variable ) + "Dao.getPageBy" + search
+                        + "( " + key + ", 0, 10 );\n" );
+                out.append( TAB + TAB + TAB + "assertEquals( 1, list" + i + ".size() );\n" );
+
+                out.append( TAB + TAB + TAB + "final int[] rows" + i + " = { 0 };\n" );
+                out.append( TAB + TAB + TAB + toJavaCase( variable ) + "Dao.streamBy" + search + "( " + key
+                        + ", new ResultHandler() {\n" );
+                out.append( TAB + TAB + TAB + TAB + "public void handleResult( ResultContext context ) {\n" );
+                out.append( TAB + TAB + TAB + TAB + TAB + "rows" + i + "[0]++;\n" );
+                out.append( TAB + TAB + TAB + TAB + "}\n" );
+                out.append( TAB + TAB + TAB + "} );\n" );
+                out.append( TAB + TAB + TAB + "assertEquals( 1, rows" + i + "[0] );\n" );
             }
         }
-        return sb.toString();
     }
 
-    private String createMethod( String variable ) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( "\n" + TAB + "public static " + variable + " create" + variable + "() {\n" );
-        sb.append( TAB + TAB + variable + " " + toJavaCase( variable ) + " = new " + variable + "();\n\n" );
-        sb.append( getColumnContextSet( variable, false ) );
-        sb.append( "\n" + TAB + TAB + "return " + toJavaCase( variable ) + ";\n" + TAB + "}" );
-        return sb.toString();
+    private void writeCreateMethod( CodeWriter out, String variable ) {
+        out.append( "\n" + TAB + "public static " + variable + " create" + variable + "() {\n" );
+        out.append( TAB + TAB + variable + " " + toJavaCase( variable ) + " = new " + variable + "();\n\n" );
+        writeColumnContextSet( out, variable, false );
+        out.append( "\n" + TAB + TAB + "return " + toJavaCase( variable ) + ";\n" + TAB + "}" );
     }
 
-    private String createCompareRecordsMethod( String variable ) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( "\n\n" + TAB + "public static void compareRecords( " + variable + " " + toJavaCase( variable )
+    private void writeCompareRecordsMethod( CodeWriter out, String variable ) {
+        out.append( "\n\n" + TAB + "public static void compareRecords( " + variable + " " + toJavaCase( variable )
                 + ", " + variable + " readRecord ) {\n\n" );
 
         for ( Column column : table.getColumns() ) {
@@ -273,30 +472,27 @@ public class TestDaoGenerator extends Generator {
             }
             else if ( column.getSqlType().equalsIgnoreCase( "DATE" ) || column.getSqlType().equalsIgnoreCase( "BLOB" )
                     || column.getSqlType().equalsIgnoreCase( "CLOB" ) ) {
-                sb.append( TAB + TAB + "assertNotSame( " + toJavaCase( variable ) + ".get"
+                out.append( TAB + TAB + "assertNotSame( " + toJavaCase( variable ) + ".get"
                         + toCamelCase( column.getFldName() ) + "(), readRecord.get" + toCamelCase( column.getFldName() )
                         + "() );\n" );
 
             }
             else {
-                sb.append( TAB + TAB + "assertEquals( " + toJavaCase( variable ) + ".get"
+                out.append( TAB + TAB + "assertEquals( " + toJavaCase( variable ) + ".get"
                         + toCamelCase( column.getFldName() ) + "(), readRecord.get" + toCamelCase( column.getFldName() )
                         + "() );\n" );
             }
         }
 
-        sb.append( "\n" + TAB + "}\n" );
-        return sb.toString();
+        out.append( "\n" + TAB + "}\n" );
     }
 
-    private String createModifyRecordsMethod( String variable ) {
-        StringBuilder sb = new StringBuilder();
-        sb.append( "\n" + TAB + "public static void modifyRecord( " + variable + " " + toJavaCase( variable )
+    private void writeModifyRecordsMethod( CodeWriter out, String variable ) {
+        out.append( "\n" + TAB + "public static void modifyRecord( " + variable + " " + toJavaCase( variable )
                 + " ) {\n\n" );
 
-        sb.append( getColumnContextSet( variable, true ) );
-        sb.append( "\n" + TAB + "}\n" );
-        return sb.toString();
+        writeColumnContextSet( out, variable, true );
+        out.append( "\n" + TAB + "}\n" );
     }
 
     private String createRandomNumber() {
@@ -336,9 +532,7 @@ public class TestDaoGenerator extends Generator {
         return sb.toString();
     }
 
-    private String getColumnContextSet( String variable, Boolean modifiy ) {
-        StringBuilder sb = new StringBuilder();
-
+    private void writeColumnContextSet( CodeWriter out, String variable, Boolean modifiy ) {
         for ( Column column : table.getColumns() ) {
             if ( column.getClass().getSimpleName().equals( "VirtualStringColumn" ) ) {
                 continue;
@@ -352,9 +546,9 @@ public class TestDaoGenerator extends Generator {
                     countLoop++;
                     if ( column.getClass().getSimpleName().equals( "LengthColumn" ) && ( !( countLoop % 2 == 0 ) ) ) {
                         LengthColumn c = (LengthColumn) column;
-                        sb.append( TAB + TAB + toJavaCase( variable ) + ".set" + toCamelCase( column.getFldName() )
+                        out.append( TAB + TAB + toJavaCase( variable ) + ".set" + toCamelCase( column.getFldName() )
                                 + "( " );
-                        sb.append( " randomString( \"" + column.getFldName() + "\", " + c.getColLen() + " ) );\n" );
+                        out.append( " randomString( \"" + column.getFldName() + "\", " + c.getColLen() + " ) );\n" );
                     }
                     else {
                         continue;
@@ -365,39 +559,40 @@ public class TestDaoGenerator extends Generator {
                 }
             }
 
-            sb.append( TAB + TAB + toJavaCase( variable ) + ".set" + toCamelCase( column.getFldName() ) + "(" );
+            out.append( TAB + TAB + toJavaCase( variable ) + ".set" + toCamelCase( column.getFldName() ) + "(" );
 
             if ( column.getFldType().equalsIgnoreCase( "Boolean" ) ) {
-                sb.append( " true " );
+                out.append( " true " );
             }
             else if ( column.getFldType().equalsIgnoreCase( "String" ) ) {
                 if ( column.getClass().getSimpleName().equals( "LengthColumn" ) ) {
                     LengthColumn c = (LengthColumn) column;
-                    sb.append( " randomString( \"" + column.getFldName() + "\", " + c.getColLen() + " )" );
+                    out.append( " randomString( \"" + column.getFldName() + "\", " + c.getColLen() + " )" );
                 }
                 else if ( column.getSqlType().equalsIgnoreCase( "CLOB" ) ) {
-                    sb.append( " randomString( \"" + column.getFldName() + "\", "
-                            + ( 1 + ( new Random() ).nextInt( 10 ) ) + " )" );
+                    // seeded by the field name so regenerating gives the same
+                    // file
+                    out.append( " randomString( \"" + column.getFldName() + "\", "
+                            + ( 1 + ( new Random( column.getFldName().hashCode() ) ).nextInt( 10 ) ) + " )" );
                 }
             }
             else if ( column.getFldType().equalsIgnoreCase( "Date" ) ) {
-                sb.append( " new Date()" );
+                out.append( " new Date()" );
             }
             else if ( column.getFldType().equalsIgnoreCase( "byte[]" ) ) {
-                sb.append( " randomByteArray( 10 )" );
+                out.append( " randomByteArray( 10 )" );
             }
             else if ( column.getFldType().equalsIgnoreCase( "Double" ) ) {
-                sb.append( " (double) randomNumber()" );
+                out.append( " (double) randomNumber()" );
             }
             else if ( column.getFldType().equalsIgnoreCase( "Integer" ) ) {
-                sb.append( " randomNumber()" );
+                out.append( " randomNumber()" );
             }
             else if ( column.getFldType().equalsIgnoreCase( "Long" ) ) {
-                sb.append( " (long) 0" );
+                out.append( " (long) 0" );
             }
-            sb.append( " );\n" );
+            out.append( " );\n" );
         }
-        return sb.toString();
     }
 
     private boolean searchTableColumns( String keyword ) {
@@ -23,7 +23,7 @@
  */
 package org.batgen.generators;
 
-import static org.batgen.generators.GenUtil.writeToFile;
+import static org.batgen.generators.GenUtil.openFile;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -35,6 +35,10 @@ import org.batgen.Table;
 
 public class XmlGenerator extends Generator {
     public static String     NEWLINE           = "\n";
+    /**
+     * Rows the driver fetches per round trip for the streaming selects.
+     */
+    public static final int  DEFAULT_FETCH_SIZE = 1000;
 
     private static final int columnSpace       = 45;
     private List<String>     sqlVariables      = null;
@@ -46,11 +50,23 @@ public class XmlGenerator extends Generator {
     private String           daoName           = "";
     private String           filePath;
     private DatabaseType     databaseType;
+    private int              fetchSize;
 
     public XmlGenerator( Table table, DatabaseType databaseType ) {
+        this( table, databaseType, DEFAULT_FETCH_SIZE );
+    }
+
+    /**
+     * @param table
+     * @param databaseType
+     * @param fetchSize
+     *            rows fetched per round trip by the streaming selects
+     */
+    public XmlGenerator( Table table, DatabaseType databaseType, int fetchSize ) {
         super( table );
         this.daoName = table.getDomName() + "Dao";
         this.databaseType = databaseType;
+        this.fetchSize = fetchSize;
         filePath = "src/main/resources/" + packageToPath() + "/dao/" + daoName + ".xml";
         filePath = filePath.replace( "_", "" );
         for ( Column column : table.getColumns() ) {
@@ -65,39 +81,37 @@ public class XmlGenerator extends Generator {
         javaVariables = new ArrayList<String>();
         searchableColumns = new ArrayList<Column>();
 
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( createHeading() );
-        sb.append( createCol() );
-        sb.append( createRead() );
-        sb.append( createInsert() );
-        sb.append( createGetListBy() );
-        sb.append( createUpdate() );
-        sb.append( createDelete() );
-        sb.append( createIndex() );
-        sb.append( getProtectedJavaLines( filePath ) );
+        CodeWriter out = openFile( filePath );
+
+        writeHeading( out );
+        writeCol( out );
+        writeRead( out );
+        writeInsert( out );
+        writeNextKeys( out );
+        writeInsertBatch( out );
+        writeGetListBy( out );
+        writeUpdate( out );
+        writeDelete( out );
+        writeDeleteByKeys( out );
+        writeIndex( out );
+        out.append( getProtectedJavaLines( filePath ) );
+        out.close();
 
-        writeToFile( filePath, sb.toString() );
         return filePath;
     }
 
-    private String createHeading() {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?> \n" );
-        sb.append( "<!DOCTYPE mapper PUBLIC \"-//mybatis.org//DTD Mapper 3.0//EN\"\n" + TAB
+    private void writeHeading( CodeWriter out ) {
+        out.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?> \n" );
+        out.append( "<!DOCTYPE mapper PUBLIC \"-//mybatis.org//DTD Mapper 3.0//EN\"\n" + TAB
                 + "\"http://mybatis.org/dtd/mybatis-3-mapper.dtd\">" );
 
-        return sb.toString();
     }
 
-    private String createCol() {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( "\n" );
+    private void writeCol( CodeWriter out ) {
+        out.append( "\n" );
 
-        sb.append( "<mapper namespace=\"" + table.getPackage() + ".dao." + table.getDomName() + "Dao\">\n" );
-        sb.append( "\n" + TAB + "<resultMap id=\"" + table.getDomName() + "Mapper\" type=\"" + table.getPackage()
+        out.append( "<mapper namespace=\"" + table.getPackage() + ".dao." + table.getDomName() + "Dao\">\n" );
+        out.append( "\n" + TAB + "<resultMap id=\"" + table.getDomName() + "Mapper\" type=\"" + table.getPackage()
                 + ".domain." + table.getDomName() + "\">" );
 
         for ( int i = 0; i < table.getColumns().size(); i++ ) {
@@ -116,169 +130,269 @@ public class XmlGenerator extends Generator {
                 }
             }
 
-            sb.append( "\n" + string.toString() );
+            out.append( "\n" + string.toString() );
 
             if ( table.getColumn( i ).isSearchId() ) {
                 searchableColumns.add( table.getColumn( i ) );
             }
         }
 
-        sb.append( "\n" + TAB + "</resultMap>" );
+        out.append( "\n" + TAB + "</resultMap>" );
 
-        return sb.toString();
     }
 
-    private String createRead() {
+    private void writeRead( CodeWriter out ) {
         String param = "";
         for(Column col : keyColumns){
         	param += col.getColName() + " = #{" + col.getFldName() + "} AND ";
         }
         param = param.substring( 0, param.length() - 5 );
         
-        StringBuilder sb = new StringBuilder();
+        out.append( "\n" );
+        out.append( "\n" );
 
-        sb.append( "\n" );
-        sb.append( "\n" );
-
-        sb.append( TAB + "<select id=\"read\" parameterType=\"map\" resultMap=\"" + table.getDomName() + "Mapper\">\n" );
+        out.append( TAB + "<select id=\"read\" parameterType=\"map\" resultMap=\"" + table.getDomName() + "Mapper\">\n" );
         
-        sb.append( TAB + TAB + "select * from " + table.getTableName().toUpperCase() + "\n");
-        sb.append( TAB + TAB + "where " + param + "\n");
-        sb.append( TAB + "</select>\n" );
+        out.append( TAB + TAB + "select * from " + table.getTableName().toUpperCase() + "\n");
+        out.append( TAB + TAB + "where " + param + "\n");
+        out.append( TAB + "</select>\n" );
 
-        return sb.toString();
     }
 
-    private String createInsert() {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( "\n" );
-        sb.append( TAB + "<insert id=\"create\" parameterType=\"" + table.getPackage() + ".domain."
+    private void writeInsert( CodeWriter out ) {
+        out.append( "\n" );
+        out.append( TAB + "<insert id=\"create\" parameterType=\"" + table.getPackage() + ".domain."
                 + table.getDomName() + "\">\n" );
 
-        // if the 1st column does not have: sequence disabled, and (string and
-        // key)
-
-        if ( !table.getColumn( 0 ).isSequenceDisabled()
-                && ( !( table.getColumn( 0 ).getFldType().equalsIgnoreCase( "string" ) && table.getColumn( 0 ).isKey() ) ) ) {
-            sb.append( TAB + TAB + "<selectKey resultType=\"_" + table.getColumn( 0 ).getFldType().toLowerCase()
+        if ( hasSequence() ) {
+            out.append( TAB + TAB + "<selectKey resultType=\"_" + table.getColumn( 0 ).getFldType().toLowerCase()
                     + "\" keyProperty=\"" + table.getColumn( 0 ).getFldName() + "\" order=\"BEFORE\">\n" );
             switch ( databaseType ) {
             case H2:
             case ORACLE:
-                sb.append( TAB );
-                sb.append( TAB );
-                sb.append( TAB );
-                sb.append( "select " );
-                sb.append( table.getTableName().toUpperCase() );
-                sb.append( "_SEQ.nextval from dual\n" );
+                out.append( TAB );
+                out.append( TAB );
+                out.append( TAB );
+                out.append( "select " );
+                out.append( table.getTableName().toUpperCase() );
+                out.append( "_SEQ.nextval from dual\n" );
             }
 
-            sb.append( TAB + TAB + "</selectKey>\n" );
+            out.append( TAB + TAB + "</selectKey>\n" );
+
+        }
+
+        out.append( TAB + TAB + "insert into " + table.getTableName().toUpperCase() + "\n" );
+        out.append( TAB + TAB + "(\n" );
+        out.append( TAB + TAB + TAB );
+        writeVariablesList( out, TAB + TAB + TAB );
+        out.append( "\n" + TAB + TAB + ")\n" + TAB + TAB + "values\n" + TAB + TAB + "(\n" );
+        out.append( TAB + TAB + TAB );
+        writeJavaList( out, TAB + TAB + TAB, "" );
+        out.append( "\n" );
+        out.append( TAB + TAB + ")\n" );
+        out.append( TAB + "</insert>\n" );
+
+    }
 
+    /**
+     * Writes the select that takes the keys of a whole batch from the sequence
+     * in one round trip.
+     * 
+     * @param out
+     */
+    private void writeNextKeys( CodeWriter out ) {
+        if ( !hasSequence() ) {
+            return;
         }
+        out.append( "\n" );
+        out.append( TAB + "<select id=\"nextKeys\" parameterType=\"map\" resultType=\""
+                + table.getColumn( 0 ).getFldType().toLowerCase() + "\">\n" );
 
-        sb.append( TAB + TAB + "insert into " + table.getTableName().toUpperCase() + "\n" );
-        sb.append( TAB + TAB + "(\n" );
-        sb.append( TAB + TAB + TAB + getVariablesList() + "\n" + TAB + TAB + ")\n" + TAB + TAB + "values\n" + TAB + TAB
-                + "(\n" );
-        sb.append( TAB + TAB + TAB + getjavaList() + "\n" );
-        sb.append( TAB + TAB + ")\n" );
-        sb.append( TAB + "</insert>\n" );
+        switch ( databaseType ) {
+        case H2:
+            out.append( TAB + TAB + "select " + table.getTableName().toUpperCase() + "_SEQ.nextval\n" );
+            out.append( TAB + TAB + "from system_range( 1, #{count} )\n" );
+            break;
+        case ORACLE:
+            out.append( TAB + TAB + "select " + table.getTableName().toUpperCase() + "_SEQ.nextval from dual\n" );
+            out.append( TAB + TAB + "connect by level &lt;= #{count}\n" );
+            break;
+        }
 
-        return sb.toString();
+        out.append( TAB + "</select>\n" );
     }
 
-    private String createGetListBy() {
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Writes the insert of a list of rows in one statement. The keys are not
+     * taken from the sequence here, the rows have them already.
+     * 
+     * @param out
+     */
+    private void writeInsertBatch( CodeWriter out ) {
+        String tableName = table.getTableName().toUpperCase();
+
+        out.append( "\n" );
+        out.append( TAB + "<insert id=\"createBatch\" parameterType=\"map\">\n" );
+
+        switch ( databaseType ) {
+        case H2:
+            out.append( TAB + TAB + "insert into " + tableName + "\n" );
+            out.append( TAB + TAB + "(\n" );
+            out.append( TAB + TAB + TAB );
+            writeVariablesList( out, TAB + TAB + TAB );
+            out.append( "\n" + TAB + TAB + ")\n" + TAB + TAB + "values\n" );
+            out.append( TAB + TAB + "<foreach collection=\"values\" item=\"value\" separator=\",\">\n" );
+            out.append( TAB + TAB + TAB + "(\n" );
+            out.append( TAB + TAB + TAB + TAB );
+            writeJavaList( out, TAB + TAB + TAB + TAB, "value." );
+            out.append( "\n" + TAB + TAB + TAB + ")\n" );
+            out.append( TAB + TAB + "</foreach>\n" );
+            break;
+        case ORACLE:
+            out.append( TAB + TAB + "insert all\n" );
+            out.append( TAB + TAB + "<foreach collection=\"values\" item=\"value\">\n" );
+            out.append( TAB + TAB + TAB + "into " + tableName + "\n" );
+            out.append( TAB + TAB + TAB + "(\n" );
+            out.append( TAB + TAB + TAB + TAB );
+            writeVariablesList( out, TAB + TAB + TAB + TAB );
+            out.append( "\n" + TAB + TAB + TAB + ")\n" + TAB + TAB + TAB + "values\n" + TAB + TAB + TAB + "(\n" );
+            out.append( TAB + TAB + TAB + TAB );
+            writeJavaList( out, TAB + TAB + TAB + TAB, "value." );
+            out.append( "\n" + TAB + TAB + TAB + ")\n" );
+            out.append( TAB + TAB + "</foreach>\n" );
+            out.append( TAB + TAB + "select * from dual\n" );
+            break;
+        }
+
+        out.append( TAB + "</insert>\n" );
+    }
 
+    private void writeGetListBy( CodeWriter out ) {
         for ( Column column : searchableColumns ) {
-            sb.append( "\n" );
-            sb.append( TAB );
-            sb.append( "<select id=\"getListBy" );
-            sb.append( toCamelCase( column.getFldName() ) );
-            sb.append( "\" parameterType=\"" );
-            sb.append( column.getFldType().toLowerCase() );
-            sb.append( "\" resultMap=\"" );
-            sb.append( table.getDomName() );
-            sb.append( "Mapper\">\n" );
-
-            sb.append( TAB );
-            sb.append( TAB );
-            sb.append( "select * from " );
-            sb.append( table.getTableName() );
-
-            sb.append( "\n" );
-            sb.append( TAB );
-            sb.append( TAB );
+            out.append( "\n" );
+            out.append( TAB );
+            out.append( "<select id=\"getListBy" );
+            out.append( toCamelCase( column.getFldName() ) );
+            out.append( "\" parameterType=\"" );
+            out.append( column.getFldType().toLowerCase() );
+            out.append( "\" resultMap=\"" );
+            out.append( table.getDomName() );
+            out.append( "Mapper\">\n" );
+
+            out.append( TAB );
+            out.append( TAB );
+            out.append( "select * from " );
+            out.append( table.getTableName() );
+
+            out.append( "\n" );
+            out.append( TAB );
+            out.append( TAB );
 
             switch ( databaseType ) {
             case H2:
             case ORACLE:
-                sb.append( "where " );
-                sb.append( column.getColName() );
-                sb.append( " = #{" );
-                sb.append( column.getFldName() );
-                sb.append( "}\n" );
+                out.append( "where " );
+                out.append( column.getColName() );
+                out.append( " = #{" );
+                out.append( column.getFldName() );
+                out.append( "}\n" );
             }
 
-            sb.append( TAB );
-            sb.append( "</select>" );
+            out.append( TAB );
+            out.append( "</select>" );
 
+            String where = column.getColName() + " = #{key}";
+            writeSelectPage( out, "By" + toCamelCase( column.getFldName() ), where );
+            writeStream( out, "By" + toCamelCase( column.getFldName() ), where );
         }
-        sb.append( "\n" );
+        out.append( "\n" );
 
-        return sb.toString();
     }
 
-    private String createUpdate() {
+    private void writeUpdate( CodeWriter out ) {
         String param = "";
         for(Column col : keyColumns){
             param += col.getColName() + " = #{" + col.getFldName() + "} AND ";
         }
         param = param.substring( 0, param.length() - 5 );
          
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( "\n" );
-        sb.append( "\n" + TAB + "<update id=\"update\" parameterType=\"" + table.getPackage() + ".domain."
+        out.append( "\n" );
+        out.append( "\n" + TAB + "<update id=\"update\" parameterType=\"" + table.getPackage() + ".domain."
                 + table.getDomName() + "\">\n" );
-        sb.append( TAB + TAB + "update " + table.getTableName().toUpperCase() + " set\n" );
-        sb.append( getCombinedList() + "\n" );
+        out.append( TAB + TAB + "update " + table.getTableName().toUpperCase() + " set\n" );
+        writeCombinedList( out );
+        out.append( "\n" );
 
         switch ( databaseType ) {
         case H2:
         case ORACLE:
-            sb.append( TAB + TAB + "where " + param + "\n" );
+            out.append( TAB + TAB + "where " + param + "\n" );
         }
 
-        sb.append( TAB + "</update>" );
+        out.append( TAB + "</update>" );
 
-        return sb.toString();
     }
 
-    private String createDelete() {
+    private void writeDelete( CodeWriter out ) {
         String param = "";
         for(Column col : keyColumns){
         	param += col.getColName() + " = #{" + col.getFldName() + "} AND ";
         }
         param = param.substring( 0, param.length() - 5 );
         
-        StringBuilder sb = new StringBuilder();
-
-        sb.append( "\n" );
-        sb.append( "\n" + TAB + "<delete id=\"delete\" parameterType=\"map\">\n");
+        out.append( "\n" );
+        out.append( "\n" + TAB + "<delete id=\"delete\" parameterType=\"map\">\n");
 
-        sb.append( TAB + TAB + "delete from " + table.getTableName().toUpperCase() + "\n" );
-        sb.append( TAB + TAB + "where " + param + "\n" );
-        sb.append( TAB + "</delete>" );
+        out.append( TAB + TAB + "delete from " + table.getTableName().toUpperCase() + "\n" );
+        out.append( TAB + TAB + "where " + param + "\n" );
+        out.append( TAB + "</delete>" );
 
-        return sb.toString();
     }
     
-    private String createIndex(){
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Writes the delete of the rows whose keys are in a list. A key of several
+     * columns is compared as a row value. An empty list deletes nothing, as
+     * "in ()" is not valid SQL.
+     * 
+     * @param out
+     */
+    private void writeDeleteByKeys( CodeWriter out ) {
+        String columnList = "";
+        String keyList = "";
+        for ( Column col : keyColumns ) {
+            columnList += col.getColName() + " , ";
+            keyList += "#{key." + col.getFldName() + "} , ";
+        }
+        columnList = columnList.substring( 0, columnList.length() - 3 );
+        keyList = keyList.substring( 0, keyList.length() - 3 );
+
+        if ( keyColumns.size() == 1 ) {
+            keyList = "#{key}";
+        }
+        else {
+            columnList = "( " + columnList + " )";
+            keyList = "( " + keyList + " )";
+        }
+
+        out.append( "\n" );
+        out.append( "\n" + TAB + "<delete id=\"deleteByKeys\" parameterType=\"map\">\n" );
+        out.append( TAB + TAB + "delete from " + table.getTableName().toUpperCase() + "\n" );
+        out.append( TAB + TAB + "where\n" );
+        out.append( TAB + TAB + "<choose>\n" );
+        out.append( TAB + TAB + TAB + "<when test=\"keys.isEmpty()\">1 = 0</when>\n" );
+        out.append( TAB + TAB + TAB + "<otherwise>\n" );
+        out.append( TAB + TAB + TAB + TAB + columnList + " in\n" );
+        out.append( TAB + TAB + TAB + TAB
+                + "<foreach collection=\"keys\" item=\"key\" open=\"(\" separator=\",\" close=\")\">\n" );
+        out.append( TAB + TAB + TAB + TAB + TAB + keyList + "\n" );
+        out.append( TAB + TAB + TAB + TAB + "</foreach>\n" );
+        out.append( TAB + TAB + TAB + "</otherwise>\n" );
+        out.append( TAB + TAB + "</choose>\n" );
+        out.append( TAB + "</delete>" );
+    }
 
+    private void writeIndex( CodeWriter out ) {
         for ( IndexNode node : table.getIndexList() ) {
         	String methodName = "readByIndex" + toTitleCase( node.getIndexName());
             String param = "";
@@ -287,65 +401,248 @@ public class XmlGenerator extends Generator {
             }
             param = param.substring( 0, param.length() - 5 );
 
-            sb.append( "\n" );
-            sb.append( "\n" );
+            out.append( "\n" );
+            out.append( "\n" );
 
-            sb.append( TAB + "<select id=\"" + methodName + " \" parameterType=\"map\" resultMap=\"" + table.getDomName() + "Mapper\">\n" );
+            out.append( TAB + "<select id=\"" + methodName + " \" parameterType=\"map\" resultMap=\"" + table.getDomName() + "Mapper\">\n" );
             
-            sb.append( TAB + TAB + "select * from " + table.getTableName().toUpperCase() + "\n");
-            sb.append( TAB + TAB + "where " + param + "\n");
-            sb.append( TAB + "</select>\n" );
+            out.append( TAB + TAB + "select * from " + table.getTableName().toUpperCase() + "\n");
+            out.append( TAB + TAB + "where " + param + "\n");
+            out.append( TAB + "</select>" );
+
+            writeSelectPage( out, "ByIndex" + toTitleCase( node.getIndexName() ), param );
+            writeScan( out, node );
+            out.append( "\n" );
             }
-        return sb.toString();
     }
 
-    private String getVariablesList() {
-        StringBuilder list = new StringBuilder();
+    /**
+     * Writes the select that hands the rows found by a search to a result
+     * handler as they are fetched, instead of collecting them in a list.
+     * 
+     * @param out
+     * @param suffix
+     *            the end of the statement id, e.g. "ByName"
+     * @param where
+     *            the condition of the search
+     */
+    private void writeStream( CodeWriter out, String suffix, String where ) {
+        out.append( "\n" );
+        out.append( "\n" + TAB + "<select id=\"stream" + suffix + "\" parameterType=\"map\" resultMap=\""
+                + table.getDomName() + "Mapper\" resultSetType=\"FORWARD_ONLY\" fetchSize=\"" + fetchSize + "\">\n" );
+        out.append( TAB + TAB + "select * from " + table.getTableName().toUpperCase() + "\n" );
+        out.append( TAB + TAB + "where " + where + "\n" );
+        out.append( TAB + "</select>" );
+    }
+
+    /**
+     * Writes the select of the rows that come after a given row in the order
+     * of an index, followed by the key when the index doesn't make the rows
+     * unique. Unlike an offset, this finds the start of a page through the
+     * index, however deep the page is. Columns that can be NULL sort their
+     * NULLs last on both databases, and are compared to the given row with
+     * IS NULL when its value is NULL, so those rows are neither skipped nor
+     * repeated.
+     * 
+     * @param out
+     * @param node
+     */
+    private void writeScan( CodeWriter out, IndexNode node ) {
+        String tableName = table.getTableName().toUpperCase();
+        List<Column> order = new ArrayList<Column>( node.getColumnList() );
+        for ( Column col : keyColumns ) {
+            if ( !order.contains( col ) ) {
+                order.add( col );
+            }
+        }
+
+        boolean hasNulls = false;
+        String orderBy = "";
+        for ( Column col : order ) {
+            orderBy += col.getColName() + ( isNullable( col ) ? " NULLS LAST" : "" ) + ", ";
+            hasNulls |= isNullable( col );
+        }
+        orderBy = orderBy.substring( 0, orderBy.length() - 2 );
 
+        out.append( "\n" );
+        out.append( "\n" + TAB + "<select id=\"scanByIndex" + toTitleCase( node.getIndexName() )
+                + "\" parameterType=\"map\" resultMap=\"" + table.getDomName() + "Mapper\">\n" );
+
+        switch ( databaseType ) {
+        case H2:
+            out.append( TAB + TAB + "select * from " + tableName + "\n" );
+            out.append( TAB + TAB + "<if test=\"after != null\">\n" );
+            if ( hasNulls ) {
+                writeAfterCondition( out, order, TAB + TAB + TAB );
+            }
+            else {
+                String columns = "";
+                String values = "";
+                for ( Column col : order ) {
+                    columns += col.getColName() + ", ";
+                    values += "#{after." + col.getFldName() + "}, ";
+                }
+                columns = columns.substring( 0, columns.length() - 2 );
+                values = values.substring( 0, values.length() - 2 );
+                out.append( TAB + TAB + TAB + "where ( " + columns + " ) &gt; ( " + values + " )\n" );
+            }
+            out.append( TAB + TAB + "</if>\n" );
+            out.append( TAB + TAB + "order by " + orderBy + "\n" );
+            out.append( TAB + TAB + "limit #{limit}\n" );
+            break;
+        case ORACLE:
+            // Oracle compares rows only for equality, so the row comparison
+            // is spelled out column by column
+            out.append( TAB + TAB + "select * from (\n" );
+            out.append( TAB + TAB + TAB + "select * from " + tableName + "\n" );
+            out.append( TAB + TAB + TAB + "<if test=\"after != null\">\n" );
+            writeAfterCondition( out, order, TAB + TAB + TAB + TAB );
+            out.append( TAB + TAB + TAB + "</if>\n" );
+            out.append( TAB + TAB + TAB + "order by " + orderBy + "\n" );
+            out.append( TAB + TAB + ")\n" );
+            out.append( TAB + TAB + "where rownum &lt;= #{limit}\n" );
+            break;
+        }
+
+        out.append( TAB + "</select>" );
+    }
+
+    /**
+     * Writes the condition of the rows after #{after} in the order of the
+     * columns, column by column.
+     */
+    private void writeAfterCondition( CodeWriter out, List<Column> order, String indent ) {
+        for ( int i = 0; i < order.size(); i++ ) {
+            String condition = "";
+            for ( int j = 0; j < i; j++ ) {
+                condition += getEquals( order.get( j ) ) + " AND ";
+            }
+            condition += getGreater( order.get( i ) );
+
+            out.append( indent + ( i == 0 ? "where " : "   OR " ) + "( " + condition + " )\n" );
+        }
+    }
+
+    /**
+     * @return the condition of a column equal to its value in #{after}.
+     */
+    private String getEquals( Column col ) {
+        String value = "after." + col.getFldName();
+        if ( !isNullable( col ) ) {
+            return col.getColName() + " = #{" + value + "}";
+        }
+        return "<choose><when test=\"" + value + " != null\">" + col.getColName() + " = #{" + value
+                + "}</when><otherwise>" + col.getColName() + " IS NULL</otherwise></choose>";
+    }
+
+    /**
+     * @return the condition of a column after its value in #{after}, with
+     *         NULLs last.
+     */
+    private String getGreater( Column col ) {
+        String value = "after." + col.getFldName();
+        if ( !isNullable( col ) ) {
+            return col.getColName() + " &gt; #{" + value + "}";
+        }
+        return "<choose><when test=\"" + value + " != null\">( " + col.getColName() + " &gt; #{" + value + "} OR "
+                + col.getColName() + " IS NULL )</when><otherwise>1 = 0</otherwise></choose>";
+    }
+
+    private static boolean isNullable( Column col ) {
+        return !col.isRequired() && !col.isKey();
+    }
+
+    /**
+     * Writes the select of a page of the rows found by a search, ordered by
+     * the key so that the pages don't overlap, and the count of all rows
+     * found.
+     * 
+     * @param out
+     * @param suffix
+     *            the end of the statement ids, e.g. "ByName"
+     * @param where
+     *            the condition of the search
+     */
+    private void writeSelectPage( CodeWriter out, String suffix, String where ) {
+        String tableName = table.getTableName().toUpperCase();
+        String orderBy = "";
+        for ( Column col : keyColumns ) {
+            orderBy += col.getColName() + ", ";
+        }
+        orderBy = orderBy.substring( 0, orderBy.length() - 2 );
+
+        out.append( "\n" );
+        out.append( "\n" + TAB + "<select id=\"getPage" + suffix + "\" parameterType=\"map\" resultMap=\""
+                + table.getDomName() + "Mapper\">\n" );
+
+        switch ( databaseType ) {
+        case H2:
+            out.append( TAB + TAB + "select * from " + tableName + "\n" );
+            out.append( TAB + TAB + "where " + where + "\n" );
+            out.append( TAB + TAB + "order by " + orderBy + "\n" );
+            out.append( TAB + TAB + "limit #{limit} offset #{offset}\n" );
+            break;
+        case ORACLE:
+            out.append( TAB + TAB + "select * from (\n" );
+            out.append( TAB + TAB + TAB + "select PAGE.*, rownum PAGE_ROW from (\n" );
+            out.append( TAB + TAB + TAB + TAB + "select * from " + tableName + "\n" );
+            out.append( TAB + TAB + TAB + TAB + "where " + where + "\n" );
+            out.append( TAB + TAB + TAB + TAB + "order by " + orderBy + "\n" );
+            out.append( TAB + TAB + TAB + ") PAGE\n" );
+            out.append( TAB + TAB + TAB + "where rownum &lt;= #{offset} + #{limit}\n" );
+            out.append( TAB + TAB + ")\n" );
+            out.append( TAB + TAB + "where PAGE_ROW &gt; #{offset}\n" );
+            break;
+        }
+
+        out.append( TAB + "</select>\n" );
+
+        out.append( "\n" + TAB + "<select id=\"count" + suffix + "\" parameterType=\"map\" resultType=\"long\">\n" );
+        out.append( TAB + TAB + "select count(*) from " + tableName + "\n" );
+        out.append( TAB + TAB + "where " + where + "\n" );
+        out.append( TAB + "</select>" );
+    }
+
+    private void writeVariablesList( CodeWriter out, String indent ) {
         for ( int i = 0; i < sqlVariables.size(); i++ ) {
             if ( i % 5 == 0 && i != 0 )
-                list.append( "\n" + TAB + TAB + TAB );
+                out.append( "\n" + indent );
 
             switch ( databaseType ) {
             case H2:
             case ORACLE:
-                list.append( sqlVariables.get( i ) );
+                out.append( sqlVariables.get( i ) );
             }
             if ( i != sqlVariables.size() - 1 ) {
-                list.append( " , " );
+                out.append( " , " );
             }
         }
 
-        return list.toString();
     }
 
-    private String getjavaList() {
-        StringBuilder list = new StringBuilder();
-
+    private void writeJavaList( CodeWriter out, String indent, String prefix ) {
         for ( int i = 0; i < javaVariables.size(); i++ ) {
             if ( i % 5 == 0 && i != 0 ) {
-                list.append( "\n" + TAB + TAB + TAB );
+                out.append( "\n" + indent );
             }
             if( javaVariables.get( i ).equals("systimestamp")){
-            	list.append( javaVariables.get( i ) );
+            	out.append( javaVariables.get( i ) );
             }
             else{
-            	list.append( "#{" );
-            	list.append( javaVariables.get( i ) );
-            	list.append( "}" );
+            	out.append( "#{" );
+            	out.append( prefix );
+            	out.append( javaVariables.get( i ) );
+            	out.append( "}" );
             }
 
             if ( i != javaVariables.size() - 1 ) {
-                list.append( " , " );
+                out.append( " , " );
             }
         }
 
-        return list.toString();
     }
 
-    private String getCombinedList() {
-        StringBuilder total = new StringBuilder();
-
+    private void writeCombinedList( CodeWriter out ) {
         for ( int i = 0; i < javaVariables.size(); i++ ) {
             StringBuilder list = new StringBuilder();
 
@@ -366,10 +663,9 @@ public class XmlGenerator extends Generator {
                 list.append( " ," );
                 list.append( "\n" );
             }
-            total.append( TAB + TAB + TAB + list );
+            out.append( TAB + TAB + TAB + list );
         }
 
-        return total.toString();
     }
 
     private String toCamelCase( String value ) {
@@ -0,0 +1,121 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.generators;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams the generated files into a zip, or a jar when given a
+ * JarOutputStream. Each file becomes an entry as soon as it is written. An
+ * entry can't change once it is in the zip, so files that are appended to are
+ * kept until close(), and writing a file again is only allowed with the same
+ * content. Safe to use from the worker threads of a parallel run.
+ * 
+ */
+public class ZipSink implements OutputSink, Closeable {
+    private static final Charset      UTF_8    = Charset.forName( "UTF-8" );
+
+    private final ZipOutputStream     zip;
+    private final Map<String, Long>   written  = new HashMap<String, Long>();
+    private final Map<String, String> appended = new LinkedHashMap<String, String>();
+
+    /**
+     * @param out
+     *            where the zip is written, left open by close()
+     */
+    public ZipSink( OutputStream out ) {
+        this( new ZipOutputStream( out ) );
+    }
+
+    /**
+     * @param zip
+     *            the zip or jar stream, finished but left open by close()
+     */
+    public ZipSink( ZipOutputStream zip ) {
+        this.zip = zip;
+    }
+
+    @Override
+    public synchronized void write( String fileName, String content ) {
+        if ( appended.containsKey( fileName ) ) {
+            appended.put( fileName, content );
+            return;
+        }
+        addEntry( fileName, content );
+    }
+
+    @Override
+    public synchronized void append( String fileName, String content ) {
+        if ( written.containsKey( fileName ) ) {
+            throw new IllegalStateException( fileName + " is already in the zip." );
+        }
+        String previous = appended.get( fileName );
+        appended.put( fileName, previous == null ? content : previous + content );
+    }
+
+    private void addEntry( String fileName, String content ) {
+        byte[] bytes = content.getBytes( UTF_8 );
+        CRC32 crc = new CRC32();
+        crc.update( bytes );
+
+        Long previous = written.get( fileName );
+        if ( previous != null ) {
+            if ( previous.longValue() != crc.getValue() ) {
+                throw new IllegalStateException( fileName + " is already in the zip with other content." );
+            }
+            return;
+        }
+
+        try {
+            zip.putNextEntry( new ZipEntry( fileName.replace( '\\', '/' ) ) );
+            zip.write( bytes );
+            zip.closeEntry();
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( "Cannot write " + fileName, e );
+        }
+        written.put( fileName, crc.getValue() );
+    }
+
+    /**
+     * Adds the files that were appended to and finishes the zip.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for ( Map.Entry<String, String> entry : appended.entrySet() ) {
+            addEntry( entry.getKey(), entry.getValue() );
+        }
+        appended.clear();
+        zip.finish();
+    }
+}
@@ -0,0 +1,131 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+/**
+ * Checks that every artifact is built once and only after the artifacts it
+ * depends on.
+ * 
+ */
+public class ArtifactSchedulerTest {
+
+    @Test
+    public void testWithDependencies() {
+        assertEquals( EnumSet.of( ArtifactKind.XML, ArtifactKind.BO, ArtifactKind.DAO, ArtifactKind.DOMAIN,
+                ArtifactKind.TEST_BO, ArtifactKind.BO_EXCEPTION, ArtifactKind.PAGE, ArtifactKind.DAO_EXCEPTION,
+                ArtifactKind.SESSION_FACTORY, ArtifactKind.MYBATIS_CONFIG ),
+                ArtifactKind.withDependencies( EnumSet.of( ArtifactKind.TEST_BO ) ) );
+        assertEquals( EnumSet.of( ArtifactKind.DROP_TABLES, ArtifactKind.SQL, ArtifactKind.ALTER_TABLES ),
+                ArtifactKind.withDependencies( EnumSet.of( ArtifactKind.DROP_TABLES ) ) );
+        assertEquals( ArtifactKind.TEST_DAO, ArtifactKind.fromName( " test-dao" ) );
+    }
+
+    @Test
+    public void testRun() {
+        List<String> built = new ArrayList<String>();
+        ArtifactScheduler scheduler = create( EnumSet.allOf( ArtifactKind.class ), built );
+        scheduler.run();
+
+        checkOrder( scheduler, built );
+        // of the ready artifacts the first one is built next
+        assertEquals( "DOMAIN A", built.get( 0 ) );
+        assertEquals( "SQL A", built.get( 1 ) );
+    }
+
+    @Test
+    public void testRunOnWorkers() {
+        List<String> built = Collections.synchronizedList( new ArrayList<String>() );
+        ArtifactScheduler scheduler = create( EnumSet.allOf( ArtifactKind.class ), built );
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try {
+            scheduler.run( executor );
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        checkOrder( scheduler, built );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testMissingDependency() {
+        create( EnumSet.of( ArtifactKind.DAO ), new ArrayList<String>() );
+    }
+
+    private static ArtifactScheduler create( EnumSet<ArtifactKind> kinds, final List<String> built ) {
+        List<Table> tables = new ArrayList<Table>();
+        for ( String domName : new String[] { "A", "B" } ) {
+            Table table = new Table();
+            table.setDomName( domName );
+            tables.add( table );
+        }
+
+        return new ArtifactScheduler( kinds, tables, new ArtifactScheduler.Builder() {
+            public List<String> build( ArtifactKind kind, Table table ) {
+                String name = getName( kind, table );
+                built.add( name );
+                return Collections.singletonList( name );
+            }
+        } );
+    }
+
+    /**
+     * Checks that each artifact was built once, after the artifacts of its
+     * own table or of all tables it depends on.
+     */
+    private static void checkOrder( ArtifactScheduler scheduler, List<String> built ) {
+        assertEquals( scheduler.getArtifacts().size(), built.size() );
+
+        for ( ArtifactScheduler.Artifact artifact : scheduler.getArtifacts() ) {
+            String name = getName( artifact.getKind(), artifact.getTable() );
+            assertEquals( Collections.singletonList( name ), artifact.getPaths() );
+            assertEquals( name, built.lastIndexOf( name ), built.indexOf( name ) );
+
+            for ( ArtifactScheduler.Artifact other : scheduler.getArtifacts() ) {
+                boolean sameTable = other.getTable() == null || artifact.getTable() == null
+                        || other.getTable() == artifact.getTable();
+                if ( sameTable && artifact.getKind().getDependencies().contains( other.getKind() ) ) {
+                    String dependency = getName( other.getKind(), other.getTable() );
+                    assertTrue( name + " after " + dependency, built.indexOf( dependency ) < built.indexOf( name ) );
+                }
+            }
+        }
+    }
+
+    private static String getName( ArtifactKind kind, Table table ) {
+        return table == null ? kind.name() : kind + " " + table.getDomName();
+    }
+}
@@ -0,0 +1,147 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.batgen.generators.MemorySink;
+import org.batgen.generators.SqlAggregator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the library API: generating from readers and from a schema into a
+ * sink, in parallel and for a subset of the artifacts.
+ * 
+ */
+public class BatGenTest {
+    private static final String PKG = "org/sample/";
+
+    @Rule
+    public TemporaryFolder      folder = new TemporaryFolder();
+
+    @Test
+    public void testGenerateToSink() {
+        MemorySink sink = new MemorySink();
+        create( sink ).generate( getConfigs() );
+
+        // 7 files for each table, 4 shared classes, the mybatis config and 3 aggregate sql files
+        assertEquals( 22, sink.size() );
+        assertNotNull( sink.get( "src/main/java/" + PKG + "domain/Parent.java" ) );
+        assertNotNull( sink.get( "src/main/resources/" + PKG + "dao/ChildDao.xml" ) );
+        assertNotNull( sink.get( "src/test/java/" + PKG + "dao/TestChildDao.java" ) );
+        assertNotNull( sink.get( SqlAggregator.CREATE_TABLES ) );
+        // nothing is written to disk
+        assertEquals( 0, folder.getRoot().list().length );
+    }
+
+    @Test
+    public void testSchemaGivesSameFiles() {
+        MemorySink fromReaders = new MemorySink();
+        create( fromReaders ).generate( getConfigs() );
+
+        Parser parser = new Parser();
+        Schema schema = new Schema();
+        schema.addTable( parser.parse( "parent.txt", new StringReader( TableTest.PARENT ) ) );
+        schema.addTable( parser.parse( "child.txt", new StringReader( TableTest.CHILD ) ) );
+        MemorySink fromSchema = new MemorySink();
+        create( fromSchema ).generate( schema );
+
+        assertEquals( fromReaders.getFiles(), fromSchema.getFiles() );
+    }
+
+    @Test
+    public void testParallelGivesSameFiles() {
+        MemorySink sequential = new MemorySink();
+        create( sequential ).generate( getConfigs() );
+
+        MemorySink parallel = new MemorySink();
+        BatGen batGen = create( parallel );
+        batGen.setParallel( true );
+        batGen.generate( getConfigs() );
+
+        assertEquals( sequential.getFiles(), parallel.getFiles() );
+    }
+
+    @Test
+    public void testArtifactsWithDependencies() {
+        MemorySink sink = new MemorySink();
+        BatGen batGen = create( sink );
+        batGen.setArtifacts( EnumSet.of( ArtifactKind.DAO ) );
+        batGen.generate( getConfigs() );
+
+        assertNotNull( sink.get( "src/main/java/" + PKG + "dao/ParentDao.java" ) );
+        assertNotNull( sink.get( "src/main/java/" + PKG + "domain/Parent.java" ) );
+        assertNotNull( sink.get( "src/main/java/" + PKG + "util/DaoException.java" ) );
+        assertFalse( sink.getFiles().containsKey( "src/main/java/" + PKG + "bo/ParentBo.java" ) );
+        assertFalse( sink.getFiles().containsKey( SqlAggregator.CREATE_TABLES ) );
+    }
+
+    @Test
+    public void testDuplicateClassName() {
+        Map<String, Reader> configs = getConfigs();
+        configs.put( "parent2.txt", new StringReader( TableTest.PARENT ) );
+
+        try {
+            create( new MemorySink() ).generate( configs );
+            assertTrue( "no exception", false );
+        }
+        catch ( IllegalArgumentException e ) {
+            assertEquals( "This class name is used multiple times, Parent", e.getMessage() );
+        }
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void testRunWithoutConfigPath() {
+        create( new MemorySink() ).run( new ArrayList<String>() );
+    }
+
+    private BatGen create( MemorySink sink ) {
+        BatGen batGen = new BatGen( "org.sample", DatabaseType.H2 );
+        batGen.setOutputRoot( folder.getRoot().getPath() );
+        batGen.setOutputSink( sink );
+        batGen.setConsole( new PrintStream( new ByteArrayOutputStream() ) );
+        return batGen;
+    }
+
+    private static Map<String, Reader> getConfigs() {
+        Map<String, Reader> configs = new LinkedHashMap<String, Reader>();
+        configs.put( "parent.txt", new StringReader( TableTest.PARENT ) );
+        configs.put( "child.txt", new StringReader( TableTest.CHILD ) );
+        return configs;
+    }
+}
@@ -0,0 +1,169 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the daemon only accepts requests that carry its token.
+ * 
+ */
+public class DaemonTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Daemon         daemon;
+    private Thread         thread;
+    private File           tokenFile;
+
+    @Before
+    public void setUp() throws IOException {
+        File tokenDirectory = new File( folder.getRoot(), "tokens" );
+        daemon = new Daemon( 0, tokenDirectory );
+        tokenFile = Daemon.getTokenFile( tokenDirectory, daemon.getPort() );
+
+        thread = new Thread() {
+            public void run() {
+                try {
+                    daemon.serve();
+                }
+                catch ( IOException e ) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        daemon.shutdown();
+        thread.join( 10000 );
+    }
+
+    @Test
+    public void testTokenFileIsOwnerOnly() throws IOException {
+        assertTrue( tokenFile.isFile() );
+        if ( FileSystems.getDefault().supportedFileAttributeViews().contains( "posix" ) ) {
+            assertEquals( "rw-------",
+                    PosixFilePermissions.toString( Files.getPosixFilePermissions( tokenFile.toPath() ) ) );
+        }
+    }
+
+    @Test
+    public void testRejectsRequestWithoutToken() throws IOException {
+        String answer = last( send( "--validate", getConfigDirectory(), "org.sample" ) );
+
+        assertTrue( answer, answer.startsWith( Daemon.ERROR + " The request has no valid token" ) );
+    }
+
+    @Test
+    public void testRejectsShutdownWithoutToken() throws IOException {
+        String answer = last( send( "wrong", Daemon.SHUTDOWN ) );
+
+        assertTrue( answer, answer.startsWith( Daemon.ERROR ) );
+        // still serving
+        assertEquals( Daemon.OK, last( send( getToken(), "--validate", getConfigDirectory(), "org.sample" ) ) );
+    }
+
+    @Test
+    public void testAcceptsRequestWithToken() throws IOException, InterruptedException {
+        assertEquals( Daemon.OK, last( send( getToken(), "--validate", getConfigDirectory(), "org.sample" ) ) );
+
+        assertEquals( Daemon.OK, last( send( getToken(), Daemon.SHUTDOWN ) ) );
+        thread.join( 10000 );
+        assertFalse( thread.isAlive() );
+        assertFalse( tokenFile.exists() );
+    }
+
+    private String getToken() throws IOException {
+        return new String( Files.readAllBytes( tokenFile.toPath() ), "UTF-8" );
+    }
+
+    private String getConfigDirectory() throws IOException {
+        File dir = new File( folder.getRoot(), "config" );
+        if ( dir.mkdir() ) {
+            FileWriter fw = new FileWriter( new File( dir, "parent.txt" ) );
+            try {
+                fw.write( TableTest.PARENT );
+            }
+            finally {
+                fw.close();
+            }
+        }
+        return dir.getPath();
+    }
+
+    /**
+     * Sends the lines and an empty line, and returns the lines of the answer.
+     */
+    private List<String> send( String... lines ) throws IOException {
+        Socket socket = new Socket( InetAddress.getLoopbackAddress(), daemon.getPort() );
+        try {
+            PrintStream out = new PrintStream( socket.getOutputStream(), true, "UTF-8" );
+            for ( String line : lines ) {
+                out.println( line );
+            }
+            out.println();
+
+            List<String> answer = new ArrayList<String>();
+            BufferedReader in = new BufferedReader( new InputStreamReader( socket.getInputStream(), "UTF-8" ) );
+            String line = in.readLine();
+            while ( line != null ) {
+                answer.add( line );
+                line = in.readLine();
+            }
+            return answer;
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    private static String last( List<String> answer ) {
+        return answer.isEmpty() ? "" : answer.get( answer.size() - 1 );
+    }
+}
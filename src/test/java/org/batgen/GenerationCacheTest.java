@@ -0,0 +1,145 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.batgen.generators.MemorySink;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the files of a table come from the generation cache when the
+ * table and the previous output are unchanged, and that they are the files
+ * the generators write.
+ * 
+ */
+public class GenerationCacheTest {
+    private static final String MARKER = "    // PROTECTED CODE -->\n";
+    private static final String KEPT   = "    // kept\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File           configDir;
+    private String         cacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        configDir = folder.newFolder( "config" );
+        cacheDir = new File( folder.getRoot(), "cache" ).getPath();
+        write( "parent.txt", TableTest.PARENT );
+        write( "child.txt", TableTest.CHILD );
+    }
+
+    @Test
+    public void testLoad() {
+        MemorySink generated = new MemorySink();
+        String counts = run( generated, folder.getRoot().getPath(), cacheDir );
+        assertTrue( counts, counts.contains( "0 files loaded from the generation cache, 14 generated." ) );
+
+        MemorySink loaded = new MemorySink();
+        counts = run( loaded, folder.getRoot().getPath(), cacheDir );
+        assertTrue( counts, counts.contains( "14 files loaded from the generation cache, 0 generated." ) );
+        assertEquals( generated.getFiles(), loaded.getFiles() );
+    }
+
+    @Test
+    public void testChangedTable() throws IOException {
+        run( new MemorySink(), folder.getRoot().getPath(), cacheDir );
+        write( "child.txt", TableTest.CHILD.replace( "LONG(10) parentKey", "LONG(10) parentKey ?" ) );
+
+        MemorySink loaded = new MemorySink();
+        String counts = run( loaded, folder.getRoot().getPath(), cacheDir );
+        assertTrue( counts, counts.contains( "7 files loaded from the generation cache, 7 generated." ) );
+
+        MemorySink generated = new MemorySink();
+        run( generated, folder.getRoot().getPath(), null );
+        assertEquals( generated.getFiles(), loaded.getFiles() );
+    }
+
+    @Test
+    public void testProtectedCode() throws IOException {
+        MemorySink sink = new MemorySink();
+        run( sink, folder.getRoot().getPath(), cacheDir );
+
+        // a checkout whose output has protected code of its own
+        File outputRoot = folder.newFolder( "other" );
+        for ( Map.Entry<String, String> file : sink.getFiles().entrySet() ) {
+            String content = file.getValue().replace( MARKER, MARKER + KEPT );
+            write( new File( outputRoot, file.getKey() ), content );
+        }
+
+        MemorySink other = new MemorySink();
+        String counts = run( other, outputRoot.getPath(), cacheDir );
+        assertTrue( counts, counts.contains( " generated." ) && !counts.contains( "14 files loaded" ) );
+        for ( Map.Entry<String, String> file : other.getFiles().entrySet() ) {
+            if ( sink.get( file.getKey() ).contains( MARKER ) ) {
+                assertTrue( file.getKey(), file.getValue().contains( MARKER + KEPT ) );
+            }
+        }
+
+        // the same output is now a variant of its own
+        MemorySink again = new MemorySink();
+        counts = run( again, outputRoot.getPath(), cacheDir );
+        assertTrue( counts, counts.contains( "14 files loaded from the generation cache, 0 generated." ) );
+        assertEquals( other.getFiles(), again.getFiles() );
+    }
+
+    /**
+     * @return what the run printed
+     */
+    private String run( MemorySink sink, String outputRoot, String cacheDirectory ) {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        BatGen batGen = new BatGen( configDir.getPath(), "org.sample", DatabaseType.H2 );
+        batGen.setOutputRoot( outputRoot );
+        batGen.setOutputSink( sink );
+        batGen.setGenerationCache( cacheDirectory );
+        batGen.setConsole( new PrintStream( console ) );
+        batGen.run( new ArrayList<String>() );
+        return console.toString();
+    }
+
+    private void write( String fileName, String content ) throws IOException {
+        write( new File( configDir, fileName ), content );
+    }
+
+    private static void write( File file, String content ) throws IOException {
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter( file );
+        writer.write( content );
+        writer.close();
+    }
+}
@@ -0,0 +1,158 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks when the manifest of a previous run counts as up to date, and how it
+ * is merged into the manifest of a run over some of the config files.
+ * 
+ */
+public class ManifestTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String         manifestFile;
+    private String         parent;
+    private String         child;
+    private String         parentOutput;
+    private String         childOutput;
+    private String         schemaOutput;
+
+    @Before
+    public void setUp() throws IOException {
+        manifestFile = new File( folder.getRoot(), Manifest.FILE_NAME ).getPath();
+        parent = write( "parent.txt", TableTest.PARENT );
+        child = write( "child.txt", TableTest.CHILD );
+        parentOutput = write( "Parent.java", "class Parent {}\n" );
+        childOutput = write( "Child.java", "class Child {}\n" );
+        schemaOutput = write( "_CreateTables.sql", "CREATE TABLE PARENT;\n" );
+    }
+
+    @Test
+    public void testUpToDate() {
+        assertNull( Manifest.read( manifestFile ) );
+        writeManifest( "1" );
+        Manifest previous = Manifest.read( manifestFile );
+
+        Manifest manifest = create( "1", parent, child );
+        assertTrue( manifest.isUpToDate( previous ) );
+        assertTrue( manifest.isUpToDate( previous, parent ) );
+        assertFalse( manifest.isUpToDate( null ) );
+
+        // another generator version or option
+        assertFalse( create( "2", parent, child ).isUpToDate( previous, parent ) );
+        // another set of tables
+        assertFalse( create( "1", parent ).isUpToDate( previous ) );
+        assertTrue( create( "1", parent ).isUpToDate( previous, parent ) );
+    }
+
+    @Test
+    public void testChangedFiles() throws IOException {
+        writeManifest( "1" );
+        Manifest previous = Manifest.read( manifestFile );
+
+        write( "Child.java", "class Child { int edited; }\n" );
+        Manifest manifest = create( "1", parent, child );
+        assertFalse( manifest.isUpToDate( previous ) );
+        assertTrue( manifest.isUpToDate( previous, parent ) );
+        assertFalse( manifest.isUpToDate( previous, child ) );
+
+        write( "parent.txt", TableTest.PARENT + "STRING(40) nickname\n" );
+        assertFalse( create( "1", parent, child ).isUpToDate( previous, parent ) );
+
+        new File( schemaOutput ).delete();
+        assertFalse( create( "1", parent ).isUpToDate( previous ) );
+    }
+
+    @Test
+    public void testMergeKeepsOtherConfigs() {
+        writeManifest( "1" );
+
+        Manifest manifest = create( "1", parent );
+        manifest.addOutputs( parent, Collections.singletonList( parentOutput ) );
+        manifest.addSchemaOutputs( Collections.singletonList( schemaOutput ) );
+        assertEquals( 0, manifest.merge( Manifest.read( manifestFile ) ).size() );
+        manifest.write( manifestFile );
+
+        // a run over the child only still finds it up to date
+        assertTrue( create( "1", child ).isUpToDate( Manifest.read( manifestFile ), child ) );
+    }
+
+    @Test
+    public void testMergeDropsDeletedConfigs() throws IOException {
+        writeManifest( "1" );
+        new File( child ).delete();
+
+        Manifest manifest = create( "1", parent );
+        manifest.addOutputs( parent, Collections.singletonList( parentOutput ) );
+        assertEquals( Collections.singletonList( childOutput ), manifest.merge( Manifest.read( manifestFile ) ) );
+
+        // an output that was edited since isn't deleted
+        write( "Child.java", "class Child { int edited; }\n" );
+        manifest = create( "1", parent );
+        assertEquals( 0, manifest.merge( Manifest.read( manifestFile ) ).size() );
+        manifest.write( manifestFile );
+
+        assertFalse( create( "1", child ).isUpToDate( Manifest.read( manifestFile ), child ) );
+    }
+
+    private static Manifest create( String version, String... configFiles ) {
+        Manifest manifest = new Manifest( version );
+        for ( String configFile : configFiles ) {
+            manifest.addConfig( configFile );
+        }
+        return manifest;
+    }
+
+    private void writeManifest( String version ) {
+        Manifest manifest = create( version, parent, child );
+        manifest.addOutputs( parent, Collections.singletonList( parentOutput ) );
+        manifest.addOutputs( child, Collections.singletonList( childOutput ) );
+        manifest.addSchemaOutputs( Collections.singletonList( schemaOutput ) );
+        manifest.write( manifestFile );
+    }
+
+    private String write( String fileName, String content ) throws IOException {
+        File file = new File( folder.getRoot(), fileName );
+        FileWriter writer = new FileWriter( file );
+        writer.write( content );
+        writer.close();
+        return file.getPath();
+    }
+}
@@ -0,0 +1,123 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that a table loaded from the model cache is the same as the one the
+ * parser gives, and when the cache is used.
+ * 
+ */
+public class ModelCacheTest {
+    static final String EMPLOYEE = "/**\n* The Employee Table.\n*/\n[Settings]\nCLASS Employee\n\n[Fields]\n"
+                                         + "LONG(10) employeeKey EMPLOYEE_KEY!\nDOUBLE(10,2) salary // Salary\n"
+                                         + "STRING(132) lastName*\nSTRING(132) firstName\n"
+                                         + "LONG(10) supervisorKey SUPERVISOR_KEY?\nDATE hireDate\n"
+                                         + "TIMESTAMP(6) updated ^\nBOOLEAN active\nBLOB photo\nCLOB notes\n"
+                                         + "VSTRING(100) fullName // `FIRST_NAME || ' ' || LAST_NAME`\n\n"
+                                         + "[Indexes]\nname lastName, firstName\n\n[ForeignKeys]\n"
+                                         + "supervisorKey constrainsTo Supervisor.supervisorKey\n";
+
+    @Rule
+    public TemporaryFolder      folder   = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        checkRoundTrip( EMPLOYEE );
+        checkRoundTrip( TableTest.CHILD );
+    }
+
+    @Test
+    public void testRoundTripWithAutoKey() throws IOException {
+        checkRoundTrip( TableTest.PARENT );
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        String configFile = write( "employee.txt", EMPLOYEE );
+        String cacheFile = new File( folder.getRoot(), ModelCache.FILE_NAME ).getPath();
+        Parser parser = new Parser();
+
+        ModelCache cache = ModelCache.read( cacheFile );
+        Table parsed = cache.parse( parser, configFile );
+        Table loaded = cache.parse( parser, configFile );
+        assertNotSame( parsed, loaded );
+        assertEquals( "1 tables loaded from the model cache, 1 parsed.", cache.getCounts() );
+        cache.write( cacheFile );
+
+        cache = ModelCache.read( cacheFile );
+        assertArrayEquals( ModelCache.encode( parsed ), ModelCache.encode( cache.parse( parser, configFile ) ) );
+        assertEquals( "1 tables loaded from the model cache, 0 parsed.", cache.getCounts() );
+
+        write( "employee.txt", EMPLOYEE.replace( "STRING(132) firstName", "STRING(100) firstName" ) );
+        cache.resetCounts();
+        cache.parse( parser, configFile );
+        assertEquals( "0 tables loaded from the model cache, 1 parsed.", cache.getCounts() );
+    }
+
+    /**
+     * Compares a parsed table with the one decoded from its model, including
+     * the lookup of its columns by field and column name.
+     */
+    private static void checkRoundTrip( String config ) throws IOException {
+        Table parsed = new Parser().parse( "config.txt", new StringReader( config ) );
+        byte[] model = ModelCache.encode( parsed );
+        Table decoded = ModelCache.decode( model );
+
+        assertArrayEquals( model, ModelCache.encode( decoded ) );
+        assertEquals( parsed.getSearchList(), decoded.getSearchList() );
+        assertEquals( parsed.getColumns().size(), decoded.getColumns().size() );
+        for ( int i = 0; i < parsed.getColumns().size(); i++ ) {
+            Column column = parsed.getColumn( i );
+            assertSame( column, parsed.getColumnByField( column.getFldName() ) );
+            assertSame( column, parsed.getColumnByName( column.getColName() ) );
+
+            Column other = decoded.getColumn( i );
+            assertSame( column.getClass(), other.getClass() );
+            assertSame( other, decoded.getColumnByField( column.getFldName() ) );
+            assertSame( other, decoded.getColumnByName( column.getColName() ) );
+        }
+    }
+
+    private String write( String fileName, String content ) throws IOException {
+        File file = new File( folder.getRoot(), fileName );
+        FileWriter writer = new FileWriter( file );
+        writer.write( content );
+        writer.close();
+        return file.getPath();
+    }
+}
@@ -0,0 +1,99 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+/**
+ * Checks that a schema rejects duplicate tables and resolves the tables and
+ * columns of its foreign keys.
+ * 
+ */
+public class SchemaTest {
+
+    @Test
+    public void testDuplicateClassName() {
+        Schema schema = new Schema();
+        schema.addTable( createTable( "Parent", "PARENT" ) );
+
+        try {
+            schema.addTable( createTable( "Parent", "OTHER" ) );
+            assertTrue( "no exception", false );
+        }
+        catch ( IllegalArgumentException e ) {
+            assertEquals( "This class name is used multiple times, Parent", e.getMessage() );
+        }
+    }
+
+    @Test
+    public void testDuplicateTableName() {
+        Schema schema = new Schema();
+        schema.addTable( createTable( "Parent", "PARENT" ) );
+
+        try {
+            schema.addTable( createTable( "Other", "parent" ) );
+            assertTrue( "no exception", false );
+        }
+        catch ( IllegalArgumentException e ) {
+            assertEquals( "This table name is used multiple times, parent", e.getMessage() );
+        }
+        assertEquals( 1, schema.getTables().size() );
+    }
+
+    @Test
+    public void testForeignKeyResolution() {
+        Parser parser = new Parser();
+        Table parent = parser.parse( "parent.txt", new StringReader( TableTest.PARENT ) );
+        Table child = parser.parse( "child.txt", new StringReader( TableTest.CHILD ) );
+
+        Schema schema = new Schema();
+        schema.addTable( child );
+        schema.addTable( parent );
+
+        assertEquals( "[Child, Parent]", schema.getClassNames().toString() );
+        assertSame( parent, schema.getTableByName( "parent" ) );
+        assertNull( schema.getTableByName( "OTHER" ) );
+
+        assertEquals( 1, schema.getForeignKeyList().size() );
+        ForeignNode node = schema.getForeignKeyList().get( 0 );
+        assertSame( child, schema.getTable( node.getFromTable() ) );
+        assertSame( child.getColumnByField( "parentKey" ),
+                schema.getTable( node.getFromTable() ).getColumnByField( node.getFromField() ) );
+        assertSame( parent.getColumn( 0 ), schema.getTable( node.getToTable() ).getColumnByField( node.getToField() ) );
+    }
+
+    private static Table createTable( String domName, String tableName ) {
+        Table table = new Table();
+        table.setDomName( domName );
+        table.setTableName( tableName );
+        return table;
+    }
+}
@@ -0,0 +1,107 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.batgen.generators.MemorySink;
+import org.batgen.generators.SqlGenerator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the columns of a table, in particular the key BatGen adds to a table
+ * that doesn't declare one.
+ * 
+ */
+public class TableTest {
+    static final String PARENT = "[Settings]\nCLASS Parent\n\n[Fields]\nSTRING(40) name\n";
+    static final String CHILD  = "[Settings]\nCLASS Child\n\n[Fields]\nLONG(10) childKey !\nLONG(10) parentKey\n\n"
+                                       + "[ForeignKeys]\nparentKey constrainsTo Parent.key\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAutoKeyIsFirstAndFound() {
+        Table table = new Parser().parse( "parent.txt", new StringReader( PARENT ) );
+
+        Column key = table.getColumn( 0 );
+        assertTrue( key.isKey() );
+        assertSame( key, table.getColumnByField( "key" ) );
+        assertSame( key, table.getColumnByName( "KEY" ) );
+        assertSame( key, table.getColumnByName( "key" ) );
+    }
+
+    @Test
+    public void testDeclaredKeyIsMovedFirst() {
+        Table table = new Parser().parse( "child.txt",
+                new StringReader( "[Settings]\nCLASS Child\n\n[Fields]\nLONG(10) parentKey\nLONG(10) childKey !\n" ) );
+
+        assertSame( table.getColumnByField( "childKey" ), table.getColumn( 0 ) );
+        assertNotNull( table.getColumnByField( "parentKey" ) );
+    }
+
+    @Test
+    public void testSymbolMaps() {
+        Table table = new Parser().parse( "child.txt", new StringReader(
+                "[Settings]\nCLASS Child\n\n[Fields]\nLONG(10) childKey CHILD_ID !\nSTRING(20) lastName\n" ) );
+
+        Column key = table.getColumnByField( "childKey" );
+        assertSame( key, table.getColumnByName( "CHILD_ID" ) );
+        assertSame( key, table.getColumnByName( "child_id" ) );
+        assertNull( table.getColumnByName( "CHILD_KEY" ) );
+        assertSame( table.getColumnByField( "lastName" ), table.getColumnByName( "LAST_NAME" ) );
+        assertNull( table.getColumnByField( "lastname" ) );
+        assertNull( table.getColumnByField( "key" ) );
+    }
+
+    @Test
+    public void testForeignKeyToAutoKey() {
+        Map<String, Reader> configs = new LinkedHashMap<String, Reader>();
+        configs.put( "parent.txt", new StringReader( PARENT ) );
+        configs.put( "child.txt", new StringReader( CHILD ) );
+
+        MemorySink sink = new MemorySink();
+        BatGen batGen = new BatGen( "org.sample", DatabaseType.H2 );
+        batGen.setOutputRoot( folder.getRoot().getPath() );
+        batGen.setOutputSink( sink );
+        batGen.setConsole( new PrintStream( new ByteArrayOutputStream() ) );
+        batGen.generate( configs );
+
+        String alter = sink.get( SqlGenerator.PREFIX + "_AlterTables.sql" );
+        assertTrue( alter, alter.contains( "FOREIGN KEY (PARENT_KEY) REFERENCES PARENT(KEY);" ) );
+    }
+}
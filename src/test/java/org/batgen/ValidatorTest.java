@@ -0,0 +1,96 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the validator resolves foreign keys across the config files and
+ * reports each error with its file and line.
+ * 
+ */
+public class ValidatorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testForeignKeyToAutoKey() throws IOException {
+        List<String> files = new ArrayList<String>();
+        files.add( write( "parent.txt", TableTest.PARENT ) );
+        files.add( write( "child.txt", TableTest.CHILD ) );
+
+        List<Diagnostic> diagnostics = new Validator().validate( files );
+
+        assertTrue( diagnostics.toString(), diagnostics.isEmpty() );
+    }
+
+    @Test
+    public void testUnknownForeignKeyField() throws IOException {
+        List<String> files = new ArrayList<String>();
+        files.add( write( "parent.txt", TableTest.PARENT ) );
+        files.add( write( "child.txt", TableTest.CHILD.replace( "Parent.key", "Parent.nope" ) ) );
+
+        List<Diagnostic> diagnostics = new Validator().validate( files );
+
+        assertEquals( 1, diagnostics.size() );
+        assertEquals( files.get( 1 ), diagnostics.get( 0 ).getFileName() );
+        assertEquals( 9, diagnostics.get( 0 ).getLine() );
+        assertEquals( "Unknown field in foreign key: Parent.nope", diagnostics.get( 0 ).getMessage() );
+    }
+
+    @Test
+    public void testDuplicateTableName() throws IOException {
+        List<String> files = new ArrayList<String>();
+        files.add( write( "parent.txt", TableTest.PARENT ) );
+        files.add( write( "other.txt", TableTest.PARENT ) );
+
+        List<Diagnostic> diagnostics = new Validator().validate( files );
+
+        assertEquals( 1, diagnostics.size() );
+        assertEquals( files.get( 1 ), diagnostics.get( 0 ).getFileName() );
+    }
+
+    private String write( String name, String content ) throws IOException {
+        File file = new File( folder.getRoot(), name );
+        FileWriter fw = new FileWriter( file );
+        try {
+            fw.write( content );
+        }
+        finally {
+            fw.close();
+        }
+        return file.getPath();
+    }
+}
@@ -0,0 +1,106 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.batgen.DatabaseType;
+import org.batgen.Table;
+import org.batgen.generators.BoGenerator;
+import org.batgen.generators.DaoGenerator;
+import org.batgen.generators.DomainGenerator;
+import org.batgen.generators.SqlGenerator;
+import org.batgen.generators.TestBoGenerator;
+import org.batgen.generators.TestDaoGenerator;
+import org.batgen.generators.XmlGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures each generator over all tables of the schema. The generated files
+ * are kept in memory.
+ * 
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+public class GeneratorBenchmark {
+
+    @Benchmark
+    public void createXml( SchemaState state, Blackhole bh ) {
+        for ( Table table : state.tables ) {
+            bh.consume( new XmlGenerator( table, DatabaseType.H2 ).createXml() );
+        }
+    }
+
+    @Benchmark
+    public void createBo( SchemaState state, Blackhole bh ) {
+        for ( Table table : state.tables ) {
+            bh.consume( new BoGenerator( table ).createBo() );
+        }
+    }
+
+    @Benchmark
+    public void createDao( SchemaState state, Blackhole bh ) {
+        for ( Table table : state.tables ) {
+            bh.consume( new DaoGenerator( table ).createDao() );
+        }
+    }
+
+    @Benchmark
+    public void createDomain( SchemaState state, Blackhole bh ) {
+        for ( Table table : state.tables ) {
+            bh.consume( new DomainGenerator( table ).createDomain() );
+        }
+    }
+
+    @Benchmark
+    public void createSql( SchemaState state, Blackhole bh ) {
+        for ( Table table : state.tables ) {
+            bh.consume( new SqlGenerator( table ).createSql() );
+        }
+    }
+
+    @Benchmark
+    public void createTestDao( SchemaState state, Blackhole bh ) {
+        for ( Table table : state.tables ) {
+            bh.consume( new TestDaoGenerator( table ).createTestDao() );
+        }
+    }
+
+    @Benchmark
+    public void createTestBo( SchemaState state, Blackhole bh ) {
+        for ( Table table : state.tables ) {
+            bh.consume( new TestBoGenerator( table ).createTestBo() );
+        }
+    }
+}
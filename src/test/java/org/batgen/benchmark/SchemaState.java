@@ -0,0 +1,107 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.batgen.Parser;
+import org.batgen.Table;
+import org.batgen.generators.GenUtil;
+import org.batgen.generators.MemorySink;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A synthetic schema shared by the benchmarks: its config files on disk,
+ * their text and the parsed tables. Generated files go to a MemorySink.
+ * 
+ */
+@State( Scope.Benchmark )
+public class SchemaState {
+    public static final String PACKAGE = "org.batgen.benchmark.generated";
+
+    @Param( { SyntheticSchema.SMALL, SyntheticSchema.WIDE, SyntheticSchema.HUGE } )
+    public String              schema;
+
+    public File                dir;
+    public List<String>        files;
+    public List<String>        configs = new ArrayList<String>();
+    public List<Table>         tables  = new ArrayList<Table>();
+    public MemorySink          sink    = new MemorySink();
+
+    @Setup( Level.Trial )
+    public void setup() throws IOException {
+        dir = File.createTempFile( "batgen", "" );
+        dir.delete();
+        files = SyntheticSchema.write( schema, dir );
+
+        Parser parser = new Parser();
+        for ( String file : files ) {
+            configs.add( read( file ) );
+
+            Table table = parser.parse( file );
+            table.setPackage( PACKAGE );
+            tables.add( table );
+        }
+
+        GenUtil.setOutputSink( sink );
+    }
+
+    @TearDown( Level.Iteration )
+    public void clearSink() {
+        sink.clear();
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() {
+        GenUtil.setOutputSink( null );
+        for ( String file : files ) {
+            new File( file ).delete();
+        }
+        dir.delete();
+    }
+
+    private static String read( String fileName ) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+
+        while ( ( line = br.readLine() ) != null ) {
+            sb.append( line );
+            sb.append( "\n" );
+        }
+        br.close();
+
+        return sb.toString();
+    }
+}
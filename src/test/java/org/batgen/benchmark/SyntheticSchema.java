@@ -0,0 +1,116 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.benchmark;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes synthetic config files for the benchmarks. Every table has a key, a
+ * search field, required fields, comments, an index and a foreign key to the
+ * table before it.
+ * 
+ */
+public class SyntheticSchema {
+    public static final String   SMALL = "small";
+    public static final String   WIDE  = "wide";
+    public static final String   HUGE  = "huge";
+
+    private static final String[] TYPES = { "STRING(40)", "LONG(10)", "INTEGER(5)", "DOUBLE(8,2)", "DATE",
+            "BOOLEAN", "TIMESTAMP(6)", "CLOB", "BLOB" };
+
+    /**
+     * Writes the config files of a schema into dir.
+     * 
+     * @param size
+     *            small (3 tables of 10 fields), wide (1 table of 300 fields)
+     *            or huge (5,000 tables of 10 fields)
+     * @param dir
+     * @return the names of the config files, in table order
+     */
+    public static List<String> write( String size, File dir ) throws FileNotFoundException {
+        if ( SMALL.equals( size ) ) {
+            return write( 3, 10, dir );
+        }
+        else if ( WIDE.equals( size ) ) {
+            return write( 1, 300, dir );
+        }
+        else if ( HUGE.equals( size ) ) {
+            return write( 5000, 10, dir );
+        }
+        throw new IllegalArgumentException( "Unknown schema size: " + size );
+    }
+
+    private static List<String> write( int tables, int fields, File dir ) throws FileNotFoundException {
+        List<String> files = new ArrayList<String>();
+
+        dir.mkdirs();
+        for ( int i = 0; i < tables; i++ ) {
+            File file = new File( dir, "Table" + i + ".txt" );
+            PrintWriter pw = new PrintWriter( file );
+            pw.write( createConfig( i, fields ) );
+            pw.close();
+            files.add( file.getPath() );
+        }
+        return files;
+    }
+
+    /**
+     * @return the config of table number i with the given number of fields,
+     *         not counting its key and foreign key.
+     */
+    public static String createConfig( int i, int fields ) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append( "/**\n * Synthetic table " ).append( i ).append( ".\n */\n" );
+        sb.append( "[Settings]\nCLASS Table" ).append( i ).append( "\n\n[Fields]\n" );
+        sb.append( "LONG(10)        table" ).append( i ).append( "Key !\n" );
+
+        for ( int c = 0; c < fields; c++ ) {
+            sb.append( TYPES[c % TYPES.length] ).append( "    field" ).append( c );
+            if ( c == 1 ) {
+                sb.append( " ?" );
+            }
+            else if ( c % 4 == 0 ) {
+                sb.append( "*" );
+            }
+            sb.append( "    // Field " ).append( c ).append( " of table " ).append( i ).append( "\n" );
+        }
+
+        if ( i > 0 ) {
+            sb.append( "LONG(10)        parentKey\n" );
+        }
+
+        sb.append( "\n[Indexes]\nindex" ).append( i ).append( "    field0, field1\n" );
+
+        if ( i > 0 ) {
+            sb.append( "\n[ForeignKeys]\nparentKey constrainsTo Table" ).append( i - 1 ).append( ".table" )
+                    .append( i - 1 ).append( "Key\n" );
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,72 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.generators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Checks that the sink keeps what the generators write.
+ * 
+ */
+public class MemorySinkTest {
+
+    @Test
+    public void testWriteAndAppend() {
+        MemorySink sink = new MemorySink();
+        sink.write( "b.sql", "drop" );
+        sink.append( "a.sql", "create a;\n" );
+        sink.append( "a.sql", "create b;\n" );
+
+        assertEquals( "create a;\ncreate b;\n", sink.get( "a.sql" ) );
+        assertEquals( "drop", sink.get( "b.sql" ) );
+        assertNull( sink.get( "c.sql" ) );
+        assertEquals( 2, sink.size() );
+
+        sink.write( "a.sql", "create c;\n" );
+        assertEquals( "create c;\n", sink.get( "a.sql" ) );
+    }
+
+    @Test
+    public void testFilesAreSortedCopies() {
+        MemorySink sink = new MemorySink();
+        sink.write( "b.sql", "b" );
+        sink.write( "a.sql", "a" );
+
+        Map<String, String> files = sink.getFiles();
+        assertEquals( "[a.sql, b.sql]", files.keySet().toString() );
+
+        files.clear();
+        sink.append( "a.sql", "b" );
+        assertEquals( "ab", sink.get( "a.sql" ) );
+
+        sink.clear();
+        assertEquals( 0, sink.size() );
+        assertNull( sink.get( "a.sql" ) );
+    }
+}
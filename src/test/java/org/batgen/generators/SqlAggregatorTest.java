@@ -0,0 +1,84 @@
+/***
+ * The MIT License (MIT) 
+ * 
+ * Copyright (c) 2014 SimonComputing, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.batgen.generators;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.batgen.ForeignNode;
+import org.batgen.Table;
+import org.junit.Test;
+
+/**
+ * Checks the order in which the aggregate sql files create the tables.
+ * 
+ */
+public class SqlAggregatorTest {
+
+    @Test
+    public void testKeepsSchemaOrderWithoutForeignKeys() {
+        List<Table> tables = createTables( "A", "B", "C" );
+        assertEquals( "[A, B, C]", names( SqlAggregator.orderByDependency( tables, new ArrayList<ForeignNode>() ) ) );
+    }
+
+    @Test
+    public void testReferencedTablesComeFirst() {
+        List<Table> tables = createTables( "A", "B", "C", "D" );
+        List<ForeignNode> foreignKeys = Arrays.asList( new ForeignNode( "A", "cKey", "C", "cKey" ), new ForeignNode(
+                "C", "dKey", "D", "dKey" ), new ForeignNode( "B", "bKey", "B", "key" ) );
+
+        // a table referencing itself doesn't wait for itself
+        assertEquals( "[B, D, C, A]", names( SqlAggregator.orderByDependency( tables, foreignKeys ) ) );
+    }
+
+    @Test
+    public void testCycleKeepsSchemaOrderAtTheEnd() {
+        List<Table> tables = createTables( "A", "B", "C" );
+        List<ForeignNode> foreignKeys = Arrays.asList( new ForeignNode( "A", "bKey", "B", "bKey" ), new ForeignNode(
+                "B", "aKey", "A", "aKey" ), new ForeignNode( "A", "xKey", "Unknown", "xKey" ) );
+
+        assertEquals( "[C, A, B]", names( SqlAggregator.orderByDependency( tables, foreignKeys ) ) );
+    }
+
+    private static List<Table> createTables( String... domNames ) {
+        List<Table> tables = new ArrayList<Table>();
+        for ( String domName : domNames ) {
+            Table table = new Table();
+            table.setDomName( domName );
+            tables.add( table );
+        }
+        return tables;
+    }
+
+    private static String names( List<Table> tables ) {
+        List<String> names = new ArrayList<String>();
+        for ( Table table : tables ) {
+            names.add( table.getDomName() );
+        }
+        return names.toString();
+    }
+}